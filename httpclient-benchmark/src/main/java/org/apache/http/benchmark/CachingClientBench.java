@@ -0,0 +1,120 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.builder.HttpClientBuilder;
+import org.apache.http.impl.client.cache.CacheConfig;
+import org.apache.http.impl.client.cache.CachingHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures {@link CachingHttpClient} serving a fresh entry from the cache
+ * and forwarding a request for an uncacheable resource to the origin
+ * server.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Threads(4)
+public class CachingClientBench {
+
+    private CloseableHttpClient backend;
+    private CachingHttpClient client;
+
+    @State(Scope.Thread)
+    public static class UriSequence {
+
+        private long next;
+
+        String nextUri() {
+            return "/content/" + this.next++;
+        }
+
+    }
+
+    @Setup
+    public void setup(final LocalServer server) throws IOException {
+        this.backend = HttpClientBuilder.create()
+                .setMaxConnTotal(8)
+                .setMaxConnPerRoute(8)
+                .build();
+        this.client = new CachingHttpClient(this.backend, new CacheConfig());
+        execute(server, "/cached/");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        this.backend.close();
+    }
+
+    private int execute(final LocalServer server, final String uri) throws IOException {
+        HttpResponse response = this.client.execute(server.getTarget(), new HttpGet(uri));
+        EntityUtils.consume(response.getEntity());
+        return response.getStatusLine().getStatusCode();
+    }
+
+    @Benchmark
+    public int hit(final LocalServer server) throws IOException {
+        return execute(server, "/cached/");
+    }
+
+    @Benchmark
+    public int miss(final LocalServer server, final UriSequence uris) throws IOException {
+        return execute(server, uris.nextUri());
+    }
+
+    public static void main(final String[] args) throws Exception {
+        Options opts = new OptionsBuilder()
+                .include(CachingClientBench.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+        new Runner(opts).run();
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.params.CookiePolicy;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.client.protocol.RequestAddCookies;
+import org.apache.http.client.protocol.ResponseProcessCookies;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.cookie.CookieSpecRegistry;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.cookie.BasicClientCookie;
+import org.apache.http.impl.cookie.BestMatchSpecFactory;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the cookie protocol interceptors in isolation: selection and
+ * formatting of cookies sent with a request by {@link RequestAddCookies}
+ * and parsing and validation of <code>Set-Cookie</code> headers by
+ * {@link ResponseProcessCookies}. The end to end cost is covered by
+ * {@link ClientExecBench#cookies(LocalServer)}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class CookieProcessingBench {
+
+    @Param({"1", "20"})
+    public int cookieCount;
+
+    private RequestAddCookies requestCookies;
+    private ResponseProcessCookies responseCookies;
+    private HttpContext context;
+    private HttpGet request;
+    private HttpResponse response;
+
+    @Setup
+    public void setup() throws Exception {
+        HttpHost target = new HttpHost("www.example.com", 80, "http");
+        BasicCookieStore cookieStore = new BasicCookieStore();
+        for (int i = 0; i < this.cookieCount; i++) {
+            BasicClientCookie cookie = new BasicClientCookie("name" + i, "value" + i);
+            cookie.setDomain(i % 2 == 0 ? "www.example.com" : ".example.com");
+            cookie.setPath(i % 4 == 0 ? "/app" : "/");
+            cookieStore.addCookie(cookie);
+        }
+        CookieSpecRegistry registry = new CookieSpecRegistry();
+        registry.register(CookiePolicy.BEST_MATCH, new BestMatchSpecFactory());
+
+        this.context = new BasicHttpContext();
+        this.context.setAttribute(ClientContext.COOKIE_STORE, cookieStore);
+        this.context.setAttribute(ClientContext.COOKIESPEC_REGISTRY, registry);
+        this.context.setAttribute(ExecutionContext.HTTP_TARGET_HOST, target);
+        this.context.setAttribute(ClientContext.ROUTE, new HttpRoute(target));
+
+        this.requestCookies = new RequestAddCookies();
+        this.responseCookies = new ResponseProcessCookies();
+        this.request = new HttpGet("http://www.example.com/app/index.html");
+        this.response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        this.response.addHeader("Set-Cookie", "session=4a6f8c2e1b; Path=/");
+        this.response.addHeader("Set-Cookie", "pref=compact; Path=/app; Domain=.example.com");
+        this.response.addHeader("Set-Cookie2", "track=1; Version=1; Path=/app");
+        // Sets up the cookie spec and origin expected by the response interceptor
+        this.requestCookies.process(this.request, this.context);
+    }
+
+    @Benchmark
+    public HttpGet addCookies() throws HttpException, IOException {
+        this.request.removeHeaders("Cookie");
+        this.request.removeHeaders("Cookie2");
+        this.requestCookies.process(this.request, this.context);
+        return this.request;
+    }
+
+    @Benchmark
+    public HttpContext processCookies() throws HttpException, IOException {
+        this.responseCookies.process(this.response, this.context);
+        return this.context;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        Options opts = new OptionsBuilder()
+                .include(CookieProcessingBench.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+        new Runner(opts).run();
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MIME;
+import org.apache.http.entity.mime.MultipartEntity;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+import org.apache.http.entity.mime.content.FileBody;
+import org.apache.http.impl.io.AbstractSessionOutputBuffer;
+import org.apache.http.impl.io.ContentLengthOutputStream;
+import org.apache.http.params.BasicHttpParams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the throughput of {@link MultipartEntity#writeTo(OutputStream)}
+ * with a file part, writing into a {@link ContentLengthOutputStream} over a
+ * session buffer the way the request executor does, so the content is
+ * copied through the {@link FileBody} buffer. The 4 KB copy used by earlier
+ * versions is measured for comparison, as is a plain file copy where the
+ * content is transferred through the file channel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class FileBodyBench {
+
+    @Param({"1048576", "67108864"})
+    public int fileSize;
+
+    private File src;
+    private File dst;
+    private MultipartEntity entity;
+    private MultipartEntity legacyEntity;
+
+    @Setup
+    public void setup() throws IOException {
+        this.src = File.createTempFile("filebody", ".src");
+        this.dst = File.createTempFile("filebody", ".dst");
+        byte[] tmp = new byte[8192];
+        for (int i = 0; i < tmp.length; i++) {
+            tmp[i] = (byte) i;
+        }
+        OutputStream out = new FileOutputStream(this.src);
+        try {
+            for (int n = 0; n < this.fileSize; n += tmp.length) {
+                out.write(tmp, 0, Math.min(tmp.length, this.fileSize - n));
+            }
+        } finally {
+            out.close();
+        }
+        this.entity = new MultipartEntity();
+        this.entity.addPart("file", new FileBody(this.src));
+        this.legacyEntity = new MultipartEntity();
+        this.legacyEntity.addPart("file", new LegacyFileBody(this.src));
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.src.delete();
+        this.dst.delete();
+    }
+
+    @Benchmark
+    public long upload() throws IOException {
+        return writeEntity(this.entity);
+    }
+
+    @Benchmark
+    public long legacyUpload() throws IOException {
+        return writeEntity(this.legacyEntity);
+    }
+
+    @Benchmark
+    public long fileTransfer() throws IOException {
+        FileOutputStream out = new FileOutputStream(this.dst);
+        try {
+            new FileBody(this.src).writeTo(out);
+        } finally {
+            out.close();
+        }
+        return this.dst.length();
+    }
+
+    private static long writeEntity(final MultipartEntity entity) throws IOException {
+        DiscardingSessionOutputBuffer outbuffer = new DiscardingSessionOutputBuffer();
+        OutputStream out = new ContentLengthOutputStream(outbuffer, entity.getContentLength());
+        try {
+            entity.writeTo(out);
+        } finally {
+            out.close();
+        }
+        outbuffer.flush();
+        return outbuffer.getMetrics().getBytesTransferred();
+    }
+
+    static class DiscardingSessionOutputBuffer extends AbstractSessionOutputBuffer {
+
+        DiscardingSessionOutputBuffer() {
+            super();
+            init(new OutputStream() {
+
+                @Override
+                public void write(final int b) {
+                }
+
+                @Override
+                public void write(final byte[] b, final int off, final int len) {
+                }
+
+            }, 8 * 1024, new BasicHttpParams());
+        }
+
+    }
+
+    /**
+     * File body copied through a 4 KB buffer, as done by earlier versions.
+     */
+    static class LegacyFileBody extends AbstractContentBody {
+
+        private final File file;
+
+        LegacyFileBody(final File file) {
+            super(ContentType.DEFAULT_BINARY);
+            this.file = file;
+        }
+
+        public void writeTo(final OutputStream out) throws IOException {
+            InputStream in = new FileInputStream(this.file);
+            try {
+                byte[] tmp = new byte[4096];
+                int l;
+                while ((l = in.read(tmp)) != -1) {
+                    out.write(tmp, 0, l);
+                }
+                out.flush();
+            } finally {
+                in.close();
+            }
+        }
+
+        public String getFilename() {
+            return this.file.getName();
+        }
+
+        public String getTransferEncoding() {
+            return MIME.ENC_BINARY;
+        }
+
+        public long getContentLength() {
+            return this.file.length();
+        }
+
+    }
+
+    public static void main(final String[] args) throws Exception {
+        Options opts = new OptionsBuilder()
+                .include(FileBodyBench.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+        new Runner(opts).run();
+    }
+
+}
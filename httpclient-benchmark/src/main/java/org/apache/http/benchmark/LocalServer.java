@@ -0,0 +1,131 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.benchmark;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.localserver.LocalTestServer;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * In-process HTTP server shared by all threads of a benchmark trial.
+ * The following handlers are registered:
+ * <pre>
+ * URL pattern      Response
+ * -----------      --------
+ * /content/*       1 KB of uncacheable content
+ * /cached/*        1 KB of content fresh for an hour
+ * /redirect/*      302 to /content/
+ * /cookies/*       1 KB of content with two session cookies
+ * </pre>
+ */
+@State(Scope.Benchmark)
+public class LocalServer {
+
+    static final int CONTENT_LENGTH = 1024;
+
+    private LocalTestServer server;
+    private HttpHost target;
+
+    static class ContentHandler implements HttpRequestHandler {
+
+        private final byte[] content;
+        private final String[][] headers;
+
+        ContentHandler(final String[]... headers) {
+            super();
+            this.content = new byte[CONTENT_LENGTH];
+            for (int i = 0; i < this.content.length; i++) {
+                this.content[i] = (byte) ('a' + i % 26);
+            }
+            this.headers = headers;
+        }
+
+        public void handle(
+                final HttpRequest request,
+                final HttpResponse response,
+                final HttpContext context) throws HttpException, IOException {
+            response.setStatusCode(HttpStatus.SC_OK);
+            for (String[] header: this.headers) {
+                response.addHeader(header[0], header[1]);
+            }
+            response.setEntity(new ByteArrayEntity(this.content, ContentType.APPLICATION_OCTET_STREAM));
+        }
+
+    }
+
+    static class RedirectHandler implements HttpRequestHandler {
+
+        public void handle(
+                final HttpRequest request,
+                final HttpResponse response,
+                final HttpContext context) throws HttpException, IOException {
+            response.setStatusCode(HttpStatus.SC_MOVED_TEMPORARILY);
+            response.addHeader("Location", "/content/");
+        }
+
+    }
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        this.server = new LocalTestServer(null, null);
+        this.server.register("/content/*", new ContentHandler());
+        this.server.register("/cached/*", new ContentHandler(
+                new String[] { "Cache-Control", "max-age=3600" }));
+        this.server.register("/redirect/*", new RedirectHandler());
+        this.server.register("/cookies/*", new ContentHandler(
+                new String[] { "Set-Cookie", "session=4a6f8c2e1b; Path=/" },
+                new String[] { "Set-Cookie", "pref=compact; Path=/cookies" }));
+        this.server.start();
+        InetSocketAddress address = this.server.getServiceAddress();
+        this.target = new HttpHost(address.getHostName(), address.getPort(), "http");
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        this.server.stop();
+    }
+
+    public HttpHost getTarget() {
+        return this.target;
+    }
+
+}
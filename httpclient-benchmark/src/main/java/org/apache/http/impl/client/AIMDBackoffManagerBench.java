@@ -0,0 +1,181 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.client;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.BackoffManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures throughput of {@link AIMDBackoffManager#backOff(HttpRoute)} and
+ * {@link AIMDBackoffManager#probe(HttpRoute)} called by many threads across
+ * many routes, compared with the monitor based implementation of earlier
+ * versions.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Threads(8)
+public class AIMDBackoffManagerBench {
+
+    /**
+     * Back-off manager as implemented up to 4.2, serializing all updates
+     * on the pool control.
+     */
+    static class LockingBackoffManager implements BackoffManager {
+
+        private final ConnPoolControl<HttpRoute> connPerRoute;
+        private final Map<HttpRoute, Long> lastRouteProbes;
+        private final Map<HttpRoute, Long> lastRouteBackoffs;
+        private final long coolDown;
+
+        LockingBackoffManager(final ConnPoolControl<HttpRoute> connPerRoute, long coolDown) {
+            this.connPerRoute = connPerRoute;
+            this.lastRouteProbes = new HashMap<HttpRoute, Long>();
+            this.lastRouteBackoffs = new HashMap<HttpRoute, Long>();
+            this.coolDown = coolDown;
+        }
+
+        public void backOff(final HttpRoute route) {
+            synchronized (connPerRoute) {
+                int curr = connPerRoute.getMaxPerRoute(route);
+                long lastUpdate = getLastUpdate(lastRouteBackoffs, route);
+                long now = System.currentTimeMillis();
+                if (now - lastUpdate < coolDown) return;
+                connPerRoute.setMaxPerRoute(route, curr <= 1 ? 1 : curr / 2);
+                lastRouteBackoffs.put(route, Long.valueOf(now));
+            }
+        }
+
+        public void probe(final HttpRoute route) {
+            synchronized (connPerRoute) {
+                int curr = connPerRoute.getMaxPerRoute(route);
+                int max = (curr >= 10) ? 10 : curr + 1;
+                long lastProbe = getLastUpdate(lastRouteProbes, route);
+                long lastBackoff = getLastUpdate(lastRouteBackoffs, route);
+                long now = System.currentTimeMillis();
+                if (now - lastProbe < coolDown || now - lastBackoff < coolDown) return;
+                connPerRoute.setMaxPerRoute(route, max);
+                lastRouteProbes.put(route, Long.valueOf(now));
+            }
+        }
+
+        private long getLastUpdate(final Map<HttpRoute, Long> updates, final HttpRoute route) {
+            Long lastUpdate = updates.get(route);
+            return lastUpdate != null ? lastUpdate.longValue() : 0L;
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class RouteSelector {
+
+        private int next;
+
+        @Setup
+        public void setup() {
+            this.next = (int) Thread.currentThread().getId();
+        }
+
+        HttpRoute next(final HttpRoute[] routes) {
+            this.next++;
+            return routes[(this.next & 0x7fffffff) % routes.length];
+        }
+
+    }
+
+    @Param({"1", "64"})
+    public int routeCount;
+
+    @Param({"1", "5000"})
+    public long coolDown;
+
+    private HttpRoute[] routes;
+    private BackoffManager lockFree;
+    private BackoffManager locking;
+
+    @Setup
+    public void setup() {
+        this.routes = new HttpRoute[this.routeCount];
+        for (int i = 0; i < this.routes.length; i++) {
+            this.routes[i] = new HttpRoute(new HttpHost("host" + i, 80));
+        }
+        AIMDBackoffManager manager = new AIMDBackoffManager(new MockConnPoolControl());
+        manager.setCooldownMillis(this.coolDown);
+        manager.setPerHostConnectionCap(10);
+        this.lockFree = manager;
+        this.locking = new LockingBackoffManager(new MockConnPoolControl(), this.coolDown);
+    }
+
+    @Benchmark
+    public void backOffLockFree(final RouteSelector selector) {
+        this.lockFree.backOff(selector.next(this.routes));
+    }
+
+    @Benchmark
+    public void backOffLocking(final RouteSelector selector) {
+        this.locking.backOff(selector.next(this.routes));
+    }
+
+    @Benchmark
+    public void probeLockFree(final RouteSelector selector) {
+        this.lockFree.probe(selector.next(this.routes));
+    }
+
+    @Benchmark
+    public void probeLocking(final RouteSelector selector) {
+        this.locking.probe(selector.next(this.routes));
+    }
+
+    public static void main(final String[] args) throws Exception {
+        Options opts = new OptionsBuilder()
+                .include(AIMDBackoffManagerBench.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+        new Runner(opts).run();
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.client.builder;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the cost of calls through {@link HttpResponseProxy} with calls
+ * through a {@link java.lang.reflect.Proxy} based response proxy as used by
+ * earlier versions.
+ * <p/>
+ * Run with <code>-prof gc</code> to compare allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class HttpResponseProxyBench {
+
+    static class ReflectiveProxy implements InvocationHandler {
+
+        private final HttpResponse original;
+
+        ReflectiveProxy(final HttpResponse original) {
+            super();
+            this.original = original;
+        }
+
+        public Object invoke(
+                final Object proxy, final Method method, final Object[] args) throws Throwable {
+            String mname = method.getName();
+            if (mname.equals("close")) {
+                return null;
+            } else {
+                try {
+                    return method.invoke(this.original, args);
+                } catch (InvocationTargetException ex) {
+                    throw ex.getCause();
+                }
+            }
+        }
+
+    }
+
+    private CloseableHttpResponse reflective;
+    private CloseableHttpResponse concrete;
+
+    @Setup
+    public void setup() throws Exception {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        response.addHeader("Content-Type", "text/plain");
+        response.addHeader("Cache-Control", "max-age=60");
+        response.setEntity(new StringEntity("stuff"));
+        this.reflective = (CloseableHttpResponse) Proxy.newProxyInstance(
+                HttpResponseProxyBench.class.getClassLoader(),
+                new Class<?>[] { CloseableHttpResponse.class },
+                new ReflectiveProxy(response));
+        this.concrete = new HttpResponseProxy(response, null);
+    }
+
+    @Benchmark
+    public StatusLine getStatusLineReflective() {
+        return this.reflective.getStatusLine();
+    }
+
+    @Benchmark
+    public StatusLine getStatusLineConcrete() {
+        return this.concrete.getStatusLine();
+    }
+
+    @Benchmark
+    public Header getFirstHeaderReflective() {
+        return this.reflective.getFirstHeader("Cache-Control");
+    }
+
+    @Benchmark
+    public Header getFirstHeaderConcrete() {
+        return this.concrete.getFirstHeader("Cache-Control");
+    }
+
+    public static void main(final String[] args) throws Exception {
+        Options opts = new OptionsBuilder()
+                .include(HttpResponseProxyBench.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+        new Runner(opts).run();
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures lease and release of pooled connections by {@link CPool}
+ * with connections that never go stale, so that only the cost of
+ * the pool bookkeeping is measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Threads(8)
+public class CPoolBench {
+
+    @Param({"1", "16"})
+    public int routeCount;
+
+    @Param({"4", "16"})
+    public int maxPerRoute;
+
+    private HttpRoute[] routes;
+    private CPool pool;
+
+    static class OpenConnection extends DefaultClientConnection {
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public boolean isStale() {
+            return false;
+        }
+
+    }
+
+    static class BenchPool extends CPool {
+
+        BenchPool(int maxPerRoute, int maxTotal) {
+            super(maxPerRoute, maxTotal, -1, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        protected CPoolEntry createEntry(final HttpRoute route, final DefaultClientConnection conn) {
+            return new CPoolEntry(LogFactory.getLog(getClass()), "bench", route, new OpenConnection(),
+                    -1, TimeUnit.MILLISECONDS);
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class RouteSelector {
+
+        private int next;
+
+        HttpRoute next(final HttpRoute[] routes) {
+            HttpRoute route = routes[this.next];
+            this.next = (this.next + 1) % routes.length;
+            return route;
+        }
+
+    }
+
+    @Setup
+    public void setup() {
+        this.routes = new HttpRoute[this.routeCount];
+        for (int i = 0; i < this.routes.length; i++) {
+            this.routes[i] = new HttpRoute(new HttpHost("host" + i, 80, "http"));
+        }
+        this.pool = new BenchPool(this.maxPerRoute, this.maxPerRoute * this.routeCount);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        this.pool.shutdown();
+    }
+
+    @Benchmark
+    public CPoolEntry leaseRelease(final RouteSelector selector)
+            throws InterruptedException, ExecutionException {
+        CPoolEntry entry = this.pool.lease(selector.next(this.routes), null).get();
+        this.pool.release(entry, true);
+        return entry;
+    }
+
+    @Benchmark
+    public CPoolEntry leaseReleaseAsync(final RouteSelector selector)
+            throws InterruptedException, ExecutionException {
+        CPoolEntry entry = this.pool.leaseAsync(selector.next(this.routes), null, null).get();
+        this.pool.release(entry, true);
+        return entry;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        Options opts = new OptionsBuilder()
+                .include(CPoolBench.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+        new Runner(opts).run();
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.conn;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.HttpSSLConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.protocol.HttpContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the cost of calls through {@link CPoolProxy} with calls through
+ * a {@link java.lang.reflect.Proxy} based connection proxy as used by
+ * earlier versions.
+ * <p/>
+ * Run with <code>-prof gc</code> to compare allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class CPoolProxyBench {
+
+    static class ReflectiveProxy implements InvocationHandler {
+
+        private final CPoolEntry poolEntry;
+
+        ReflectiveProxy(final CPoolEntry poolEntry) {
+            super();
+            this.poolEntry = poolEntry;
+        }
+
+        public Object invoke(
+                final Object proxy, final Method method, final Object[] args) throws Throwable {
+            String mname = method.getName();
+            HttpClientConnection conn = this.poolEntry.getConnection();
+            if (mname.equals("isStale")) {
+                return Boolean.valueOf(conn.isStale());
+            } else {
+                try {
+                    return method.invoke(conn, args);
+                } catch (InvocationTargetException ex) {
+                    throw ex.getCause();
+                }
+            }
+        }
+
+    }
+
+    private HttpClientConnection reflective;
+    private HttpClientConnection concrete;
+
+    @Setup
+    public void setup() {
+        HttpRoute route = new HttpRoute(new HttpHost("localhost"));
+        CPoolEntry entry = new CPoolEntry(LogFactory.getLog(getClass()), "id", route,
+                new DefaultClientConnection(), -1, TimeUnit.MILLISECONDS);
+        this.reflective = (HttpClientConnection) Proxy.newProxyInstance(
+                CPoolProxyBench.class.getClassLoader(),
+                new Class<?>[] { HttpClientConnection.class, HttpSSLConnection.class, HttpContext.class },
+                new ReflectiveProxy(entry));
+        this.concrete = CPoolProxy.newProxy(entry);
+        ((HttpContext) this.reflective).setAttribute("attr", "value");
+    }
+
+    @Benchmark
+    public boolean isStaleReflective() {
+        return this.reflective.isStale();
+    }
+
+    @Benchmark
+    public boolean isStaleConcrete() {
+        return this.concrete.isStale();
+    }
+
+    @Benchmark
+    public int getSocketTimeoutReflective() {
+        return this.reflective.getSocketTimeout();
+    }
+
+    @Benchmark
+    public int getSocketTimeoutConcrete() {
+        return this.concrete.getSocketTimeout();
+    }
+
+    @Benchmark
+    public Object getAttributeReflective() {
+        return ((HttpContext) this.reflective).getAttribute("attr");
+    }
+
+    @Benchmark
+    public Object getAttributeConcrete() {
+        return ((HttpContext) this.concrete).getAttribute("attr");
+    }
+
+    public static void main(final String[] args) throws Exception {
+        Options opts = new OptionsBuilder()
+                .include(CPoolProxyBench.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+        new Runner(opts).run();
+    }
+
+}
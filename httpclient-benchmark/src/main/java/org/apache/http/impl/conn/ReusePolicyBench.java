@@ -0,0 +1,161 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * Shows the effect of {@link PoolReusePolicy} on the number of connections
+ * kept open by the pool. The pool is first filled by a burst of concurrent
+ * requests and then serves a light steady load while connections idle longer
+ * than {@link #MAX_IDLE} are evicted.
+ */
+public class ReusePolicyBench {
+
+    private final static HttpRoute ROUTE = new HttpRoute(new HttpHost("localhost"));
+
+    private final static int BURST = 50;
+    private final static int WORKERS = 4;
+    private final static long DURATION = 3000;
+    private final static long MAX_IDLE = 200;
+
+    static class OpenConnection extends DefaultClientConnection {
+
+        private volatile boolean open = true;
+
+        @Override
+        public boolean isOpen() {
+            return this.open;
+        }
+
+        @Override
+        public void close() {
+            this.open = false;
+        }
+
+        @Override
+        public void shutdown() {
+            this.open = false;
+        }
+
+    }
+
+    static class BenchPool extends CPool {
+
+        BenchPool() {
+            super(BURST, BURST, -1, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        protected CPoolEntry createEntry(final HttpRoute route, final DefaultClientConnection conn) {
+            return new CPoolEntry(LogFactory.getLog(getClass()), "bench", route, new OpenConnection(),
+                    -1, TimeUnit.MILLISECONDS);
+        }
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (PoolReusePolicy policy: PoolReusePolicy.values()) {
+            run(policy);
+        }
+    }
+
+    static void run(final PoolReusePolicy policy) throws Exception {
+        final BenchPool pool = new BenchPool();
+        pool.setReusePolicy(policy);
+
+        // Burst: open as many connections as the pool permits
+        CPoolEntry[] entries = new CPoolEntry[BURST];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = pool.lease(ROUTE, null).get(1, TimeUnit.SECONDS);
+        }
+        for (CPoolEntry entry: entries) {
+            entry.updateExpiry(-1, TimeUnit.MILLISECONDS);
+            pool.release(entry, true);
+        }
+
+        final Map<CPoolEntry, Boolean> used = Collections.synchronizedMap(
+                new IdentityHashMap<CPoolEntry, Boolean>());
+        final long deadline = System.currentTimeMillis() + DURATION;
+        Thread[] workers = new Thread[WORKERS];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        while (System.currentTimeMillis() < deadline) {
+                            CPoolEntry entry = pool.lease(ROUTE, null).get(1, TimeUnit.SECONDS);
+                            used.put(entry, Boolean.TRUE);
+                            Thread.sleep(1);
+                            entry.updateExpiry(-1, TimeUnit.MILLISECONDS);
+                            pool.release(entry, true);
+                            Thread.sleep(2);
+                        }
+                    } catch (Exception ex) {
+                        ex.printStackTrace();
+                    }
+                }
+
+            };
+        }
+        for (Thread worker: workers) {
+            worker.start();
+        }
+        int samples = 0;
+        long openTotal = 0;
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(MAX_IDLE / 2);
+            pool.closeIdle(MAX_IDLE, TimeUnit.MILLISECONDS);
+            PoolStats stats = pool.getTotalStats();
+            openTotal += stats.getLeased() + stats.getAvailable();
+            samples++;
+        }
+        for (Thread worker: workers) {
+            worker.join();
+        }
+        PoolStats stats = pool.getTotalStats();
+        System.out.print("Reuse policy:\t\t");
+        System.out.println(policy);
+        System.out.print("Distinct connections used:\t");
+        System.out.println(used.size());
+        System.out.print("Average open connections:\t");
+        System.out.println(samples > 0 ? openTotal / samples : 0);
+        System.out.print("Open connections at end:\t");
+        System.out.println(stats.getLeased() + stats.getAvailable());
+        pool.shutdown();
+    }
+
+}
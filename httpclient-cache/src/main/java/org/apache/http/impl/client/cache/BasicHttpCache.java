@@ -72,7 +72,7 @@ class BasicHttpCache implements HttpCache {
     }
 
     public BasicHttpCache(CacheConfig config) {
-        this(new HeapResourceFactory(), new BasicHttpCacheStorage(config), config);
+        this(new HeapResourceFactory(), new ConcurrentHttpCacheStorage(config), config);
     }
 
     public BasicHttpCache() {
@@ -39,8 +39,10 @@ import org.apache.http.client.cache.HttpCacheUpdateCallback;
  * {@link LinkedHashMap}. In other words, cache entries and the cached
  * response bodies are held in-memory. This cache does NOT deallocate
  * resources associated with the cache entries; it is intended for use
- * with {@link HeapResource} and similar. This is the default cache
- * storage backend used by {@link CachingHttpClient}.
+ * with {@link HeapResource} and similar. All operations are serialized
+ * on a single lock; {@link ConcurrentHttpCacheStorage}, the default cache
+ * storage backend used by {@link CachingHttpClient}, should be preferred
+ * for caches shared by many threads.
  *
  * @since 4.1
  */
@@ -51,7 +53,7 @@ public class BasicHttpCacheStorage implements HttpCacheStorage {
 
     public BasicHttpCacheStorage(CacheConfig config) {
         super();
-        this.entries = new CacheMap(config.getMaxCacheEntries());
+        this.entries = new CacheMap(config.getMaxCacheEntries(), config.getMaxCacheBytes());
     }
 
     /**
@@ -94,4 +96,22 @@ public class BasicHttpCacheStorage implements HttpCacheStorage {
         entries.put(url, callback.update(existingEntry));
     }
 
+    /**
+     * Returns the total size of the cache entries in bytes.
+     *
+     * @since 4.3
+     */
+    public synchronized long getWeight() {
+        return this.entries.getWeight();
+    }
+
+    /**
+     * Returns the number of entries evicted from the cache so far.
+     *
+     * @since 4.3
+     */
+    public synchronized long getEvictionCount() {
+        return this.entries.getEvictionCount();
+    }
+
 }
@@ -43,7 +43,8 @@ package org.apache.http.impl.client.cache;
  *
  * <p><b>Cache size.</b> If the backend storage supports these limits, you
  * can specify the {@link CacheConfig#setMaxCacheEntries maximum number of
- * cache entries} as well as the {@link CacheConfig#setMaxObjectSizeBytes
+ * cache entries}, the {@link CacheConfig#setMaxCacheBytes maximum total size
+ * of cache entries} as well as the {@link CacheConfig#setMaxObjectSizeBytes
  * maximum cacheable response body size}.</p>
  *
  * <p><b>Public/private caching.</b> By default, the caching module considers
@@ -80,6 +81,13 @@ package org.apache.http.impl.client.cache;
  * can be idle before being reclaimed}. You can also control the {@link
  * CacheConfig#setRevalidationQueueSize(int) size of the queue} used for
  * revalidations when there aren't enough workers to keep up with demand.</b>
+ *
+ * <p><b>Request collapsing</b>. When a popular entry is missing or has to
+ * be revalidated, concurrent requests for it can be collapsed into a single
+ * backend request. The other requests wait for the first one to complete
+ * and are then served from the cache. You can enable this by setting the
+ * {@link CacheConfig#setRequestCollapsingTimeout(long) maximum time to
+ * wait} for the first request.</p>
  */
 public class CacheConfig {
 
@@ -93,6 +101,11 @@ public class CacheConfig {
      */
     public final static int DEFAULT_MAX_CACHE_ENTRIES = 1000;
 
+    /** Default setting for the maximum total size of cache entries
+     * that will be retained, in bytes. Zero means no limit.
+     */
+    public final static long DEFAULT_MAX_CACHE_BYTES = 0;
+
     /** Default setting for the number of retries on a failed
      * cache update
      */
@@ -131,8 +144,14 @@ public class CacheConfig {
      */
     public static final int DEFAULT_REVALIDATION_QUEUE_SIZE = 100;
 
+    /** Default maximum time in milliseconds a request waits for a collapsed
+     * backend request. Zero means requests are not collapsed.
+     */
+    public static final long DEFAULT_REQUEST_COLLAPSING_TIMEOUT = 0;
+
     private long maxObjectSize = DEFAULT_MAX_OBJECT_SIZE_BYTES;
     private int maxCacheEntries = DEFAULT_MAX_CACHE_ENTRIES;
+    private long maxCacheBytes = DEFAULT_MAX_CACHE_BYTES;
     private int maxUpdateRetries = DEFAULT_MAX_UPDATE_RETRIES;
     private boolean heuristicCachingEnabled = false;
     private float heuristicCoefficient = DEFAULT_HEURISTIC_COEFFICIENT;
@@ -142,6 +161,7 @@ public class CacheConfig {
     private int asynchronousWorkersCore = DEFAULT_ASYNCHRONOUS_WORKERS_CORE;
     private int asynchronousWorkerIdleLifetimeSecs = DEFAULT_ASYNCHRONOUS_WORKER_IDLE_LIFETIME_SECS;
     private int revalidationQueueSize = DEFAULT_REVALIDATION_QUEUE_SIZE;
+    private long requestCollapsingTimeout = DEFAULT_REQUEST_COLLAPSING_TIMEOUT;
 
     /**
      * Returns the current maximum response body size that will be cached.
@@ -222,6 +242,29 @@ public class CacheConfig {
         this.maxCacheEntries = maxCacheEntries;
     }
 
+    /**
+     * Returns the maximum total size of cache entries the cache will retain.
+     * @return size in bytes, non-positive if not limited
+     *
+     * @since 4.3
+     */
+    public long getMaxCacheBytes() {
+        return maxCacheBytes;
+    }
+
+    /**
+     * Sets the maximum total size of cache entries the cache will retain.
+     * The size of an entry is the length of its response body plus the
+     * size of its status line and headers. Non-positive values disable
+     * size based eviction.
+     * @param maxCacheBytes size in bytes
+     *
+     * @since 4.3
+     */
+    public void setMaxCacheBytes(long maxCacheBytes) {
+        this.maxCacheBytes = maxCacheBytes;
+    }
+
     /**
      * Returns the number of times to retry a cache update on failure
      */
@@ -367,5 +410,28 @@ public class CacheConfig {
         this.revalidationQueueSize = size;
     }
 
+    /**
+     * Returns the maximum time a request waits for a backend request
+     * for the same cache entry that is already in progress.
+     * @return timeout in milliseconds, non-positive if requests
+     *   are not collapsed
+     *
+     * @since 4.3
+     */
+    public long getRequestCollapsingTimeout() {
+        return requestCollapsingTimeout;
+    }
+
+    /**
+     * Sets the maximum time a request waits for a backend request for the
+     * same cache entry that is already in progress before calling the
+     * backend itself. Non-positive values disable request collapsing.
+     * @param millis timeout in milliseconds
+     *
+     * @since 4.3
+     */
+    public void setRequestCollapsingTimeout(long millis) {
+        this.requestCollapsingTimeout = millis;
+    }
 
 }
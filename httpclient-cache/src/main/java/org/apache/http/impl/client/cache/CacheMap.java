@@ -26,25 +26,124 @@
  */
 package org.apache.http.impl.client.cache;
 
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import org.apache.http.Header;
 import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.client.cache.Resource;
 
+/**
+ * Access ordered map of cache entries bounded by the number of entries
+ * and optionally by their total weight as computed by
+ * {@link #weigh(HttpCacheEntry)}. Once either limit has been exceeded
+ * the least recently used entries are evicted.
+ */
 final class CacheMap extends LinkedHashMap<String, HttpCacheEntry> {
 
     private static final long serialVersionUID = -7750025207539768511L;
 
     private final int maxEntries;
+    private final long maxBytes;
 
-    CacheMap(int maxEntries) {
+    private long weight;
+    private long evictionCount;
+
+    CacheMap(int maxEntries, long maxBytes) {
         super(20, 0.75f, true);
         this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    CacheMap(int maxEntries) {
+        this(maxEntries, 0);
+    }
+
+    /**
+     * Returns the approximate number of bytes held by the entry: the length
+     * of its resource plus the size of its status line and headers as they
+     * would be sent over the wire.
+     */
+    static long weigh(final HttpCacheEntry entry) {
+        if (entry == null) {
+            return 0;
+        }
+        long len = 0;
+        Resource resource = entry.getResource();
+        if (resource != null) {
+            len += resource.length();
+        }
+        // HTTP/1.1 200 OK\r\n
+        String reason = entry.getReasonPhrase();
+        len += 15 + (reason != null ? reason.length() : 0);
+        for (Header header: entry.getAllHeaders()) {
+            // name: value\r\n
+            String value = header.getValue();
+            len += header.getName().length() + (value != null ? value.length() : 0) + 4;
+        }
+        return len;
+    }
+
+    /**
+     * Returns the total weight of the entries in the map.
+     */
+    long getWeight() {
+        return this.weight;
+    }
+
+    /**
+     * Returns the number of entries evicted from the map so far.
+     */
+    long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    @Override
+    public HttpCacheEntry put(final String key, final HttpCacheEntry value) {
+        this.weight += weigh(value);
+        HttpCacheEntry previous = super.put(key, value);
+        this.weight -= weigh(previous);
+        if (this.maxBytes > 0) {
+            Iterator<HttpCacheEntry> it = values().iterator();
+            while (this.weight > this.maxBytes && it.hasNext()) {
+                HttpCacheEntry eldest = it.next();
+                it.remove();
+                this.weight -= weigh(eldest);
+                this.evictionCount++;
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    public void putAll(final Map<? extends String, ? extends HttpCacheEntry> m) {
+        for (Map.Entry<? extends String, ? extends HttpCacheEntry> entry: m.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public HttpCacheEntry remove(final Object key) {
+        HttpCacheEntry removed = super.remove(key);
+        this.weight -= weigh(removed);
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        this.weight = 0;
     }
 
     @Override
     protected boolean removeEldestEntry(final Map.Entry<String, HttpCacheEntry> eldest) {
-        return size() > this.maxEntries;
+        if (size() > this.maxEntries) {
+            this.weight -= weigh(eldest.getValue());
+            this.evictionCount++;
+            return true;
+        }
+        return false;
     }
 
 }
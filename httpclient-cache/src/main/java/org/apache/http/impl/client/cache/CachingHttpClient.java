@@ -146,6 +146,8 @@ public class CachingHttpClient implements HttpClient {
 
     private final AsynchronousValidator asynchRevalidator;
 
+    private final RequestCollapser requestCollapser;
+
     private final Log log = LogFactory.getLog(getClass());
 
     CachingHttpClient(
@@ -177,6 +179,7 @@ public class CachingHttpClient implements HttpClient {
         this.requestCompliance = new RequestProtocolCompliance();
 
         this.asynchRevalidator = makeAsynchronousValidator(config);
+        this.requestCollapser = makeRequestCollapser(config);
     }
 
     /**
@@ -289,6 +292,7 @@ public class CachingHttpClient implements HttpClient {
         this.responseCompliance = responseCompliance;
         this.requestCompliance = requestCompliance;
         this.asynchRevalidator = makeAsynchronousValidator(config);
+        this.requestCollapser = makeRequestCollapser(config);
     }
 
     private AsynchronousValidator makeAsynchronousValidator(
@@ -299,6 +303,13 @@ public class CachingHttpClient implements HttpClient {
         return null;
     }
 
+    private RequestCollapser makeRequestCollapser(CacheConfig config) {
+        if (config.getRequestCollapsingTimeout() > 0) {
+            return new RequestCollapser(config.getRequestCollapsingTimeout());
+        }
+        return null;
+    }
+
     /**
      * Reports the number of times that the cache successfully responded
      * to an {@link HttpRequest} without contacting the origin server.
@@ -482,6 +493,22 @@ public class CachingHttpClient implements HttpClient {
 
                 return resp;
             }
+            if (requestCollapser != null) {
+                String key = requestCollapser.getVariantURI(target, request, entry);
+                if (!requestCollapser.lead(key)) {
+                    HttpCacheEntry updated = awaitCollapsedRequest(key, target, request, entry);
+                    if (updated != null) {
+                        log.debug("Serving entry revalidated by collapsed request");
+                        return generateCachedResponse(request, context, updated, getCurrentDate());
+                    }
+                    return revalidateCacheEntry(target, request, context, entry);
+                }
+                try {
+                    return revalidateCacheEntry(target, request, context, entry);
+                } finally {
+                    requestCollapser.complete(key);
+                }
+            }
             return revalidateCacheEntry(target, request, context, entry);
         } catch (IOException ioex) {
             return handleRevalidationFailure(request, context, entry, now);
@@ -505,9 +532,46 @@ public class CachingHttpClient implements HttpClient {
             return negotiateResponseFromVariants(target, request, context, variants);
         }
 
+        if (requestCollapser != null) {
+            String key = requestCollapser.getURI(target, request);
+            if (!requestCollapser.lead(key)) {
+                HttpCacheEntry entry = awaitCollapsedRequest(key, target, request, null);
+                if (entry != null) {
+                    log.debug("Serving entry cached by collapsed request");
+                    return handleCacheHit(target, request, context, entry);
+                }
+                return callBackend(target, request, context);
+            }
+            try {
+                return callBackend(target, request, context);
+            } finally {
+                requestCollapser.complete(key);
+            }
+        }
+
         return callBackend(target, request, context);
     }
 
+    /**
+     * Waits for the backend request in progress for the given key and
+     * returns the cache entry it produced if the entry can be used to
+     * satisfy the request.
+     */
+    private HttpCacheEntry awaitCollapsedRequest(String key, HttpHost target,
+            HttpRequest request, HttpCacheEntry stale) {
+        if (!requestCollapser.await(key)) {
+            return null;
+        }
+        HttpCacheEntry entry = satisfyFromCache(target, request);
+        if (entry == null || entry == stale) {
+            return null;
+        }
+        if (!suitabilityChecker.canCachedResponseBeUsed(target, request, entry, getCurrentDate())) {
+            return null;
+        }
+        return entry;
+    }
+
     private HttpCacheEntry satisfyFromCache(HttpHost target, HttpRequest request) {
         HttpCacheEntry entry = null;
         try {
@@ -0,0 +1,296 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.annotation.GuardedBy;
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.client.cache.HttpCacheStorage;
+import org.apache.http.client.cache.HttpCacheUpdateCallback;
+import org.apache.http.client.cache.HttpCacheUpdateException;
+
+/**
+ * {@link HttpCacheStorage} implementation that holds cache entries in memory
+ * partitioned into a number of segments, each guarded by its own lock. Cache
+ * lookups and updates of entries falling into different segments do not
+ * contend with each other. The total number of entries is bounded by
+ * {@link CacheConfig#getMaxCacheEntries()} and, optionally, their total size
+ * by {@link CacheConfig#getMaxCacheBytes()}; once a limit has been exceeded
+ * the least recently used entry of a segment is evicted, segments being
+ * visited in a round-robin fashion.
+ * <p/>
+ * {@link #updateEntry(String, HttpCacheUpdateCallback)} invokes the callback
+ * without holding any lock and stores its result only if the entry has not
+ * been replaced in the meantime. The update is retried up to
+ * {@link CacheConfig#getMaxUpdateRetries()} times.
+ * <p/>
+ * Like {@link BasicHttpCacheStorage} this cache does NOT deallocate resources
+ * associated with the cache entries; it is intended for use with
+ * {@link HeapResource} and similar.
+ *
+ * @since 4.3
+ */
+@ThreadSafe
+public class ConcurrentHttpCacheStorage implements HttpCacheStorage {
+
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final int maxUpdateRetries;
+    private final AtomicInteger count;
+    private final AtomicLong weight;
+    private final AtomicLong evictionCount;
+    private final AtomicInteger evictionCursor;
+
+    public ConcurrentHttpCacheStorage(final CacheConfig config, int concurrencyLevel) {
+        super();
+        if (config == null) {
+            throw new IllegalArgumentException("Cache config may not be null");
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Concurrency level may not be negative or zero");
+        }
+        int n = 1;
+        while (n < concurrencyLevel) {
+            n <<= 1;
+        }
+        this.segments = new Segment[n];
+        for (int i = 0; i < n; i++) {
+            this.segments[i] = new Segment();
+        }
+        this.segmentMask = n - 1;
+        this.maxEntries = config.getMaxCacheEntries();
+        this.maxBytes = config.getMaxCacheBytes();
+        this.maxUpdateRetries = config.getMaxUpdateRetries();
+        this.count = new AtomicInteger(0);
+        this.weight = new AtomicLong(0);
+        this.evictionCount = new AtomicLong(0);
+        this.evictionCursor = new AtomicInteger(0);
+    }
+
+    public ConcurrentHttpCacheStorage(final CacheConfig config) {
+        this(config, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    private Segment segmentFor(final String url) {
+        // Spread the bits of the hash code so that keys differing only
+        // in the upper bits do not end up in the same segment
+        int h = url.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return this.segments[h & this.segmentMask];
+    }
+
+    public void putEntry(final String url, final HttpCacheEntry entry) throws IOException {
+        if (url == null) {
+            throw new IllegalArgumentException("URL may not be null");
+        }
+        if (entry == null) {
+            throw new IllegalArgumentException("Cache entry may not be null");
+        }
+        Segment segment = segmentFor(url);
+        segment.lock.lock();
+        try {
+            segment.store(url, entry);
+        } finally {
+            segment.lock.unlock();
+        }
+        evictIfNecessary();
+    }
+
+    public HttpCacheEntry getEntry(final String url) throws IOException {
+        if (url == null) {
+            throw new IllegalArgumentException("URL may not be null");
+        }
+        Segment segment = segmentFor(url);
+        segment.lock.lock();
+        try {
+            return segment.get(url);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public void removeEntry(final String url) throws IOException {
+        if (url == null) {
+            throw new IllegalArgumentException("URL may not be null");
+        }
+        Segment segment = segmentFor(url);
+        segment.lock.lock();
+        try {
+            segment.store(url, null);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public void updateEntry(
+            final String url,
+            final HttpCacheUpdateCallback callback) throws IOException, HttpCacheUpdateException {
+        if (url == null) {
+            throw new IllegalArgumentException("URL may not be null");
+        }
+        if (callback == null) {
+            throw new IllegalArgumentException("Callback may not be null");
+        }
+        Segment segment = segmentFor(url);
+        int numRetries = 0;
+        do {
+            HttpCacheEntry existing = getEntry(url);
+            HttpCacheEntry updated = callback.update(existing);
+            boolean replaced;
+            segment.lock.lock();
+            try {
+                replaced = segment.get(url) == existing;
+                if (replaced) {
+                    segment.store(url, updated);
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+            if (replaced) {
+                evictIfNecessary();
+                return;
+            }
+            numRetries++;
+        } while (numRetries <= this.maxUpdateRetries);
+        throw new HttpCacheUpdateException("Failed to update");
+    }
+
+    /**
+     * Returns the total number of entries held by the cache.
+     */
+    public int getEntryCount() {
+        return this.count.get();
+    }
+
+    /**
+     * Returns the total size of the cache entries in bytes.
+     */
+    public long getWeight() {
+        return this.weight.get();
+    }
+
+    /**
+     * Returns the number of entries evicted from the cache so far.
+     */
+    public long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+    private boolean isOverLimit() {
+        return this.count.get() > this.maxEntries
+            || (this.maxBytes > 0 && this.weight.get() > this.maxBytes);
+    }
+
+    private void evictIfNecessary() {
+        int attempts = 0;
+        while (isOverLimit() && attempts < this.segments.length) {
+            int i = this.evictionCursor.getAndIncrement() & this.segmentMask;
+            Segment segment = this.segments[i];
+            segment.lock.lock();
+            try {
+                if (segment.evictEldest()) {
+                    attempts = 0;
+                } else {
+                    attempts++;
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Access ordered map of the entries falling into the same segment.
+     * All methods must be called while holding {@link #lock}.
+     */
+    private class Segment {
+
+        final ReentrantLock lock;
+        @GuardedBy("lock")
+        private final LinkedHashMap<String, HttpCacheEntry> map;
+
+        Segment() {
+            super();
+            this.lock = new ReentrantLock();
+            this.map = new LinkedHashMap<String, HttpCacheEntry>(16, 0.75f, true);
+        }
+
+        HttpCacheEntry get(final String url) {
+            return this.map.get(url);
+        }
+
+        /**
+         * Stores the entry under the given key or removes the key
+         * if the entry is <code>null</code>.
+         */
+        void store(final String url, final HttpCacheEntry entry) {
+            HttpCacheEntry previous;
+            if (entry != null) {
+                weight.addAndGet(CacheMap.weigh(entry));
+                previous = this.map.put(url, entry);
+                if (previous == null) {
+                    count.incrementAndGet();
+                }
+            } else {
+                previous = this.map.remove(url);
+                if (previous != null) {
+                    count.decrementAndGet();
+                }
+            }
+            if (previous != null) {
+                weight.addAndGet(-CacheMap.weigh(previous));
+            }
+        }
+
+        boolean evictEldest() {
+            Iterator<HttpCacheEntry> it = this.map.values().iterator();
+            if (!it.hasNext()) {
+                return false;
+            }
+            HttpCacheEntry eldest = it.next();
+            it.remove();
+            count.decrementAndGet();
+            weight.addAndGet(-CacheMap.weigh(eldest));
+            evictionCount.incrementAndGet();
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,613 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.GuardedBy;
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.client.cache.HttpCacheEntrySerializer;
+import org.apache.http.client.cache.HttpCacheStorage;
+import org.apache.http.client.cache.HttpCacheUpdateCallback;
+import org.apache.http.client.cache.Resource;
+import org.apache.http.util.EncodingUtils;
+
+/**
+ * {@link HttpCacheStorage} implementation that persists cache entries in
+ * a directory, so that the cache survives restarts. Entries are held in
+ * memory and every modification is appended to a journal file in the
+ * cache directory. The journal is replayed upon construction; records
+ * truncated or corrupted by a crash are discarded.
+ * <p/>
+ * This storage is intended for use with a {@link FileResourceFactory}
+ * writing response bodies into the same directory. The journal only
+ * records the location of the body files, not their content. Once the
+ * journal has grown well beyond the number of live entries, it is
+ * compacted in the background: it is rewritten from the live entries and
+ * the body files no longer referenced by any entry are deleted. The cache
+ * directory must therefore not be used for any other purpose.
+ * <p/>
+ * The cache can be shut down using {@link #shutdown()} method, which closes
+ * the journal but keeps all the files in place.
+ *
+ * @since 4.3
+ */
+@ThreadSafe
+public class FileHttpCacheStorage implements HttpCacheStorage {
+
+    static final String JOURNAL_NAME = "journal";
+    static final String JOURNAL_TMP_NAME = "journal.tmp";
+    static final String JOURNAL_BACKUP_NAME = "journal.bak";
+
+    /** Number of journal records below which the journal is not compacted. */
+    static final int COMPACTION_THRESHOLD = 1000;
+
+    /**
+     * Body files modified more recently than that are never deleted
+     * as their entries may not have been stored yet.
+     */
+    static final long ORPHAN_GRACE_PERIOD = 60 * 1000;
+
+    private static final int MAGIC = 0x48434a31;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    private final File cacheDir;
+    private final File journalFile;
+    private final HttpCacheEntrySerializer serializer;
+    private final CacheMap entries;
+    private final ReferenceQueue<HttpCacheEntry> morque;
+    private final Set<ResourceReference> resources;
+    private final ExecutorService compactor;
+
+    private final Log log = LogFactory.getLog(getClass());
+
+    @GuardedBy("this")
+    private DataOutputStream journal;
+    @GuardedBy("this")
+    private int journalRecords;
+    @GuardedBy("this")
+    private List<byte[]> pendingRecords;
+    @GuardedBy("this")
+    private boolean compactionScheduled;
+
+    private volatile boolean shutdown;
+
+    public FileHttpCacheStorage(
+            final File cacheDir,
+            final CacheConfig config,
+            final HttpCacheEntrySerializer serializer) throws IOException {
+        super();
+        if (cacheDir == null) {
+            throw new IllegalArgumentException("Cache directory may not be null");
+        }
+        if (config == null) {
+            throw new IllegalArgumentException("Cache config may not be null");
+        }
+        if (serializer == null) {
+            throw new IllegalArgumentException("Serializer may not be null");
+        }
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            throw new IOException("Unable to create cache directory " + cacheDir);
+        }
+        this.cacheDir = cacheDir;
+        this.journalFile = new File(cacheDir, JOURNAL_NAME);
+        this.serializer = serializer;
+        this.entries = new CacheMap(config.getMaxCacheEntries(), config.getMaxCacheBytes());
+        this.morque = new ReferenceQueue<HttpCacheEntry>();
+        this.resources = new HashSet<ResourceReference>();
+        this.compactor = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            public Thread newThread(final Runnable r) {
+                Thread t = new Thread(r, "httpclient-cache-compactor");
+                t.setDaemon(true);
+                return t;
+            }
+
+        });
+        boolean compact;
+        synchronized (this) {
+            load();
+            compact = isCompactionNeeded();
+        }
+        if (compact) {
+            scheduleCompaction();
+        }
+    }
+
+    public FileHttpCacheStorage(final File cacheDir, final CacheConfig config) throws IOException {
+        this(cacheDir, config, new DefaultHttpCacheEntrySerializer());
+    }
+
+    private void ensureValidState() throws IllegalStateException {
+        if (this.shutdown) {
+            throw new IllegalStateException("Cache has been shut down");
+        }
+    }
+
+    private static byte[] encodeRecord(byte type, final String key, final byte[] data) {
+        byte[] k = EncodingUtils.getBytes(key, "UTF-8");
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(k.length + data.length + 32);
+        DataOutputStream out = new DataOutputStream(buffer);
+        try {
+            out.writeByte(type);
+            out.writeInt(k.length);
+            out.write(k);
+            out.writeInt(data.length);
+            out.write(data);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.toByteArray());
+            out.writeLong(crc.getValue());
+        } catch (IOException ex) {
+            // Should never happen
+            throw new IllegalStateException(ex.getMessage());
+        }
+        return buffer.toByteArray();
+    }
+
+    private byte[] serialize(final HttpCacheEntry entry) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        this.serializer.writeTo(entry, buffer);
+        return buffer.toByteArray();
+    }
+
+    private DataOutputStream openJournal(boolean append) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(this.journalFile, append)));
+    }
+
+    /**
+     * Replays the journal. Records following a truncated or corrupted
+     * record are discarded and the journal is truncated accordingly.
+     */
+    private void load() throws IOException {
+        // Leftovers of an interrupted compaction
+        new File(this.cacheDir, JOURNAL_TMP_NAME).delete();
+        File backupFile = new File(this.cacheDir, JOURNAL_BACKUP_NAME);
+        if (backupFile.exists()) {
+            if (this.journalFile.exists()) {
+                // The new journal has already been put in place
+                backupFile.delete();
+            } else {
+                backupFile.renameTo(this.journalFile);
+            }
+        }
+        if (!this.journalFile.exists()) {
+            this.journal = openJournal(false);
+            this.journal.writeInt(MAGIC);
+            this.journal.flush();
+            return;
+        }
+        long fileLen = this.journalFile.length();
+        long valid = 0;
+        int records = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(this.journalFile)));
+        try {
+            if (in.readInt() == MAGIC) {
+                valid = 4;
+                for (;;) {
+                    int type = in.read();
+                    if (type == -1) {
+                        break;
+                    }
+                    CRC32 crc = new CRC32();
+                    crc.update(type);
+                    byte[] k = readChunk(in, crc, fileLen);
+                    byte[] data = readChunk(in, crc, fileLen);
+                    if (in.readLong() != crc.getValue()) {
+                        this.log.warn("Corrupted record in cache journal " + this.journalFile);
+                        break;
+                    }
+                    replay((byte) type, EncodingUtils.getString(k, "UTF-8"), data);
+                    valid += 1 + 4 + k.length + 4 + data.length + 8;
+                    records++;
+                }
+            } else {
+                this.log.warn("Ignoring cache journal of unknown format " + this.journalFile);
+            }
+        } catch (EOFException ex) {
+            this.log.warn("Truncated record in cache journal " + this.journalFile);
+        } finally {
+            in.close();
+        }
+        if (valid == 0) {
+            this.journal = openJournal(false);
+            this.journal.writeInt(MAGIC);
+            this.journal.flush();
+            return;
+        }
+        if (valid < fileLen) {
+            RandomAccessFile raf = new RandomAccessFile(this.journalFile, "rw");
+            try {
+                raf.setLength(valid);
+            } finally {
+                raf.close();
+            }
+        }
+        this.journal = openJournal(true);
+        this.journalRecords = records;
+    }
+
+    /**
+     * Reopens the journal after a failed compaction. Should the journal
+     * have gone missing, a new one is written from the entries held by
+     * the cache. Must be called while holding the lock.
+     */
+    private void reopenJournal() throws IOException {
+        if (this.journalFile.exists()) {
+            this.journal = openJournal(true);
+            return;
+        }
+        this.journal = openJournal(false);
+        this.journal.writeInt(MAGIC);
+        for (Map.Entry<String, HttpCacheEntry> entry: this.entries.entrySet()) {
+            this.journal.write(encodeRecord(PUT, entry.getKey(), serialize(entry.getValue())));
+        }
+        this.journal.flush();
+        this.journalRecords = this.entries.size();
+    }
+
+    private static byte[] readChunk(
+            final DataInputStream in, final CRC32 crc, long maxLen) throws IOException {
+        int len = in.readInt();
+        // A corrupted length must not cause an attempt to allocate a huge buffer
+        if (len < 0 || len > maxLen) {
+            throw new EOFException();
+        }
+        crc.update(len >>> 24);
+        crc.update(len >>> 16);
+        crc.update(len >>> 8);
+        crc.update(len);
+        byte[] b = new byte[len];
+        in.readFully(b);
+        crc.update(b);
+        return b;
+    }
+
+    private void replay(byte type, final String key, final byte[] data) {
+        if (type == PUT) {
+            HttpCacheEntry entry;
+            try {
+                entry = this.serializer.readFrom(new ByteArrayInputStream(data));
+            } catch (IOException ex) {
+                this.log.warn("Unable to restore cache entry for " + key, ex);
+                this.entries.remove(key);
+                return;
+            }
+            Resource resource = entry.getResource();
+            if (resource instanceof FileResource && !((FileResource) resource).getFile().exists()) {
+                this.entries.remove(key);
+                return;
+            }
+            this.entries.put(key, entry);
+            keepResourceReference(entry);
+        } else {
+            this.entries.remove(key);
+        }
+    }
+
+    private void keepResourceReference(final HttpCacheEntry entry) {
+        if (entry.getResource() instanceof FileResource) {
+            this.resources.add(new ResourceReference(entry, this.morque));
+        }
+        ResourceReference ref;
+        while ((ref = (ResourceReference) this.morque.poll()) != null) {
+            this.resources.remove(ref);
+        }
+    }
+
+    private void appendRecord(final byte[] record) throws IOException {
+        this.journal.write(record);
+        this.journal.flush();
+        this.journalRecords++;
+        if (this.pendingRecords != null) {
+            this.pendingRecords.add(record);
+        }
+    }
+
+    private boolean isCompactionNeeded() {
+        return !this.compactionScheduled
+            && this.journalRecords > COMPACTION_THRESHOLD
+            && this.journalRecords > 2 * this.entries.size();
+    }
+
+    private void scheduleCompaction() {
+        synchronized (this) {
+            if (this.compactionScheduled) {
+                return;
+            }
+            this.compactionScheduled = true;
+        }
+        try {
+            this.compactor.execute(new Runnable() {
+
+                public void run() {
+                    try {
+                        compact();
+                    } catch (IOException ex) {
+                        log.warn("Unable to compact cache journal", ex);
+                    } finally {
+                        synchronized (FileHttpCacheStorage.this) {
+                            compactionScheduled = false;
+                        }
+                    }
+                }
+
+            });
+        } catch (RejectedExecutionException ex) {
+            synchronized (this) {
+                this.compactionScheduled = false;
+            }
+        }
+    }
+
+    public void putEntry(final String url, final HttpCacheEntry entry) throws IOException {
+        if (url == null) {
+            throw new IllegalArgumentException("URL may not be null");
+        }
+        if (entry == null) {
+            throw new IllegalArgumentException("Cache entry may not be null");
+        }
+        ensureValidState();
+        byte[] record = encodeRecord(PUT, url, serialize(entry));
+        boolean compact;
+        synchronized (this) {
+            ensureValidState();
+            appendRecord(record);
+            this.entries.put(url, entry);
+            keepResourceReference(entry);
+            compact = isCompactionNeeded();
+        }
+        if (compact) {
+            scheduleCompaction();
+        }
+    }
+
+    public HttpCacheEntry getEntry(final String url) throws IOException {
+        if (url == null) {
+            throw new IllegalArgumentException("URL may not be null");
+        }
+        ensureValidState();
+        synchronized (this) {
+            return this.entries.get(url);
+        }
+    }
+
+    public void removeEntry(final String url) throws IOException {
+        if (url == null) {
+            throw new IllegalArgumentException("URL may not be null");
+        }
+        ensureValidState();
+        // The entry may have been evicted from memory but still be
+        // present in the journal, so the removal is always recorded
+        byte[] record = encodeRecord(REMOVE, url, new byte[0]);
+        boolean compact;
+        synchronized (this) {
+            ensureValidState();
+            appendRecord(record);
+            this.entries.remove(url);
+            compact = isCompactionNeeded();
+        }
+        if (compact) {
+            scheduleCompaction();
+        }
+    }
+
+    public void updateEntry(
+            final String url,
+            final HttpCacheUpdateCallback callback) throws IOException {
+        if (url == null) {
+            throw new IllegalArgumentException("URL may not be null");
+        }
+        if (callback == null) {
+            throw new IllegalArgumentException("Callback may not be null");
+        }
+        ensureValidState();
+        boolean compact;
+        synchronized (this) {
+            ensureValidState();
+            HttpCacheEntry existing = this.entries.get(url);
+            HttpCacheEntry updated = callback.update(existing);
+            if (updated != null) {
+                appendRecord(encodeRecord(PUT, url, serialize(updated)));
+                this.entries.put(url, updated);
+                keepResourceReference(updated);
+            } else {
+                appendRecord(encodeRecord(REMOVE, url, new byte[0]));
+                this.entries.remove(url);
+            }
+            compact = isCompactionNeeded();
+        }
+        if (compact) {
+            scheduleCompaction();
+        }
+    }
+
+    /**
+     * Rewrites the journal from the entries currently held by the cache and
+     * deletes body files no longer referenced by any entry. Modifications
+     * made while the journal is being rewritten are carried over to the new
+     * journal. This method is invoked in the background automatically, but
+     * can also be called directly.
+     */
+    public void compact() throws IOException {
+        List<String> keys;
+        List<HttpCacheEntry> values;
+        synchronized (this) {
+            if (this.shutdown || this.pendingRecords != null) {
+                return;
+            }
+            keys = new ArrayList<String>(this.entries.size());
+            values = new ArrayList<HttpCacheEntry>(this.entries.size());
+            for (Map.Entry<String, HttpCacheEntry> entry: this.entries.entrySet()) {
+                keys.add(entry.getKey());
+                values.add(entry.getValue());
+            }
+            this.pendingRecords = new ArrayList<byte[]>();
+        }
+        long cutoff = System.currentTimeMillis() - ORPHAN_GRACE_PERIOD;
+        File tmpFile = new File(this.cacheDir, JOURNAL_TMP_NAME);
+        Set<String> referenced;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmpFile, false)));
+        try {
+            out.writeInt(MAGIC);
+            for (int i = 0; i < keys.size(); i++) {
+                out.write(encodeRecord(PUT, keys.get(i), serialize(values.get(i))));
+            }
+            synchronized (this) {
+                if (this.shutdown) {
+                    return;
+                }
+                for (byte[] record: this.pendingRecords) {
+                    out.write(record);
+                }
+                out.close();
+                this.journal.close();
+                // The old journal is kept until the new one is in place,
+                // as not all platforms can rename over an existing file
+                File backupFile = new File(this.cacheDir, JOURNAL_BACKUP_NAME);
+                backupFile.delete();
+                if (!this.journalFile.renameTo(backupFile)) {
+                    reopenJournal();
+                    throw new IOException("Unable to rename " + this.journalFile + " to " + backupFile);
+                }
+                if (!tmpFile.renameTo(this.journalFile)) {
+                    backupFile.renameTo(this.journalFile);
+                    reopenJournal();
+                    throw new IOException("Unable to rename " + tmpFile + " to " + this.journalFile);
+                }
+                backupFile.delete();
+                this.journal = openJournal(true);
+                this.journalRecords = keys.size() + this.pendingRecords.size();
+                referenced = getReferencedFiles();
+            }
+        } finally {
+            synchronized (this) {
+                this.pendingRecords = null;
+            }
+            out.close();
+            tmpFile.delete();
+        }
+        deleteOrphans(referenced, cutoff);
+    }
+
+    /**
+     * Returns the paths of body files referenced by entries that are
+     * in the cache or may still be in use. Must be called while holding
+     * the lock.
+     */
+    private Set<String> getReferencedFiles() throws IOException {
+        ResourceReference ref;
+        while ((ref = (ResourceReference) this.morque.poll()) != null) {
+            this.resources.remove(ref);
+        }
+        Set<String> referenced = new HashSet<String>(this.resources.size());
+        for (ResourceReference resourceRef: this.resources) {
+            referenced.add(((FileResource) resourceRef.getResource()).getFile().getCanonicalPath());
+        }
+        return referenced;
+    }
+
+    private void deleteOrphans(final Set<String> referenced, long cutoff) throws IOException {
+        File[] files = this.cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file: files) {
+            String name = file.getName();
+            if (name.equals(JOURNAL_NAME) || name.equals(JOURNAL_TMP_NAME)
+                    || name.equals(JOURNAL_BACKUP_NAME)
+                    || !file.isFile() || file.lastModified() > cutoff) {
+                continue;
+            }
+            if (!referenced.contains(file.getCanonicalPath())) {
+                if (this.log.isDebugEnabled()) {
+                    this.log.debug("Deleting orphaned cache file " + file);
+                }
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries held by the cache.
+     */
+    public synchronized int getEntryCount() {
+        return this.entries.size();
+    }
+
+    /**
+     * Shuts down the cache. The journal is closed, but the cache entries
+     * and their body files are retained, so that the cache can be restored
+     * by a new instance using the same directory.
+     */
+    public void shutdown() {
+        if (this.shutdown) {
+            return;
+        }
+        this.shutdown = true;
+        this.compactor.shutdown();
+        synchronized (this) {
+            try {
+                this.journal.close();
+            } catch (IOException ex) {
+                this.log.debug("I/O error closing cache journal", ex);
+            }
+        }
+    }
+
+}
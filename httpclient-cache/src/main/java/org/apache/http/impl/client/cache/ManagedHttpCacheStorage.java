@@ -47,8 +47,8 @@ import org.apache.http.client.cache.Resource;
  * resource deallocation. The cache can be permanently shut down using {@link #shutdown()}
  * method. All resources associated with the entries used by the cache will be deallocated.
  *
- * This {@link HttpCacheStorage} implementation is intended for use with {@link FileResource}
- * and similar.
+ * This {@link HttpCacheStorage} implementation is intended for use with {@link FileResource},
+ * {@link OffHeapResource} and similar.
  *
  * @since 4.1
  */
@@ -63,7 +63,7 @@ public class ManagedHttpCacheStorage implements HttpCacheStorage {
 
     public ManagedHttpCacheStorage(final CacheConfig config) {
         super();
-        this.entries = new CacheMap(config.getMaxCacheEntries());
+        this.entries = new CacheMap(config.getMaxCacheEntries(), config.getMaxCacheBytes());
         this.morque = new ReferenceQueue<HttpCacheEntry>();
         this.resources = new HashSet<ResourceReference>();
     }
@@ -168,4 +168,22 @@ public class ManagedHttpCacheStorage implements HttpCacheStorage {
         }
     }
 
+    /**
+     * Returns the total size of the cache entries in bytes.
+     *
+     * @since 4.3
+     */
+    public synchronized long getWeight() {
+        return this.entries.getWeight();
+    }
+
+    /**
+     * Returns the number of entries evicted from the cache so far.
+     *
+     * @since 4.3
+     */
+    public synchronized long getEvictionCount() {
+        return this.entries.getEvictionCount();
+    }
+
 }
@@ -0,0 +1,185 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.http.annotation.GuardedBy;
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * Preallocated arena of direct memory divided into blocks of equal size.
+ * The memory is allocated in slabs of at most {@link #MAX_SLAB_SIZE} bytes
+ * upon construction and is never returned to the operating system; blocks
+ * are handed out and taken back through a free list.
+ *
+ * @since 4.3
+ */
+@ThreadSafe
+class OffHeapArena {
+
+    static final int MAX_SLAB_SIZE = 1 << 30;
+
+    private final ByteBuffer[] slabs;
+    private final int blockSize;
+    private final int blocksPerSlab;
+    private final int blockCount;
+
+    @GuardedBy("this")
+    private final int[] free;
+    @GuardedBy("this")
+    private int freeCount;
+
+    private final ReferenceQueue<Object> streamQueue;
+    @GuardedBy("streams")
+    private final Set<Reference<?>> streams;
+
+    OffHeapArena(long capacity, int blockSize) {
+        super();
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size may not be negative or zero");
+        }
+        long count = capacity / blockSize;
+        if (count <= 0) {
+            throw new IllegalArgumentException("Capacity may not be less than block size");
+        }
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many blocks: " + count);
+        }
+        this.blockSize = blockSize;
+        this.blockCount = (int) count;
+        this.blocksPerSlab = Math.max(1, MAX_SLAB_SIZE / blockSize);
+        int slabCount = (this.blockCount + this.blocksPerSlab - 1) / this.blocksPerSlab;
+        this.slabs = new ByteBuffer[slabCount];
+        int remaining = this.blockCount;
+        for (int i = 0; i < slabCount; i++) {
+            int n = Math.min(remaining, this.blocksPerSlab);
+            this.slabs[i] = ByteBuffer.allocateDirect(n * blockSize);
+            remaining -= n;
+        }
+        this.free = new int[this.blockCount];
+        for (int i = 0; i < this.blockCount; i++) {
+            // Hand out blocks in ascending order
+            this.free[i] = this.blockCount - 1 - i;
+        }
+        this.freeCount = this.blockCount;
+        this.streamQueue = new ReferenceQueue<Object>();
+        this.streams = new HashSet<Reference<?>>();
+    }
+
+    int getBlockSize() {
+        return this.blockSize;
+    }
+
+    long getCapacity() {
+        return (long) this.blockCount * this.blockSize;
+    }
+
+    synchronized long getAvailable() {
+        return (long) this.freeCount * this.blockSize;
+    }
+
+    /**
+     * Returns the index of a free block or <code>-1</code> if the arena
+     * has been exhausted.
+     */
+    synchronized int allocate() {
+        if (this.freeCount == 0) {
+            return -1;
+        }
+        this.freeCount--;
+        return this.free[this.freeCount];
+    }
+
+    /**
+     * Returns <code>len</code> blocks of the given array starting at
+     * <code>off</code> to the arena.
+     */
+    synchronized void free(final int[] blocks, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            this.free[this.freeCount] = blocks[i];
+            this.freeCount++;
+        }
+    }
+
+    /**
+     * Returns the byte at the given offset of the given block.
+     */
+    byte get(int index, int offset) {
+        return this.slabs[index / this.blocksPerSlab].get(
+                (index % this.blocksPerSlab) * this.blockSize + offset);
+    }
+
+    ReferenceQueue<Object> getStreamQueue() {
+        return this.streamQueue;
+    }
+
+    /**
+     * Keeps the reference to an input stream holding on to blocks reachable
+     * until it is unregistered.
+     */
+    void register(final Reference<?> ref) {
+        synchronized (this.streams) {
+            this.streams.add(ref);
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the reference has been registered and
+     *   not unregistered yet.
+     */
+    boolean unregister(final Reference<?> ref) {
+        synchronized (this.streams) {
+            return this.streams.remove(ref);
+        }
+    }
+
+    /**
+     * Returns the reference to an input stream that has been garbage
+     * collected, if any.
+     */
+    Reference<?> pollStream() {
+        return this.streamQueue.poll();
+    }
+
+    /**
+     * Returns a view of the given block. The position of the view is set
+     * to the beginning of the block and its limit to the end of the block.
+     */
+    ByteBuffer block(int index) {
+        ByteBuffer buf = this.slabs[index / this.blocksPerSlab].duplicate();
+        int offset = (index % this.blocksPerSlab) * this.blockSize;
+        buf.limit(offset + this.blockSize);
+        buf.position(offset);
+        return buf;
+    }
+
+}
@@ -0,0 +1,227 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectStreamException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
+
+import org.apache.http.annotation.GuardedBy;
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.client.cache.Resource;
+
+/**
+ * Cache resource backed by blocks of direct memory allocated by
+ * {@link OffHeapResourceFactory}. The blocks are returned to the factory
+ * once the resource has been disposed of and all input streams obtained
+ * from it have been closed. Blocks held by streams that are never closed
+ * are reclaimed by the factory after the streams have been garbage
+ * collected. The resource is serialized as a {@link HeapResource}.
+ *
+ * @since 4.3
+ */
+@ThreadSafe
+public class OffHeapResource implements Resource {
+
+    private static final long serialVersionUID = -1757224683412375744L;
+
+    private final transient OffHeapArena arena;
+    private final transient int[] blocks;
+    private final long length;
+
+    @GuardedBy("this")
+    private transient int refCount;
+    @GuardedBy("this")
+    private transient boolean disposed;
+
+    OffHeapResource(final OffHeapArena arena, final int[] blocks, long length) {
+        super();
+        this.arena = arena;
+        this.blocks = blocks;
+        this.length = length;
+        this.refCount = 1;
+    }
+
+    public synchronized InputStream getInputStream() throws IOException {
+        if (this.disposed) {
+            throw new IOException("Resource has been disposed");
+        }
+        this.refCount++;
+        BlockInputStream stream = new BlockInputStream();
+        stream.ref = new StreamReference(stream, this);
+        return stream;
+    }
+
+    public long length() {
+        return this.length;
+    }
+
+    public synchronized void dispose() {
+        if (this.disposed) {
+            return;
+        }
+        this.disposed = true;
+        release();
+    }
+
+    private synchronized void release() {
+        this.refCount--;
+        if (this.refCount == 0) {
+            this.arena.free(this.blocks, 0, this.blocks.length);
+        }
+    }
+
+    /**
+     * Releases the blocks held by input streams that have been garbage
+     * collected without having been closed.
+     */
+    static void reclaimStreams(final OffHeapArena arena) {
+        Reference<?> ref;
+        while ((ref = arena.pollStream()) != null) {
+            ((StreamReference) ref).release();
+        }
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        try {
+            InputStream instream = getInputStream();
+            try {
+                byte[] b = new byte[(int) this.length];
+                int off = 0;
+                while (off < b.length) {
+                    off += instream.read(b, off, b.length - off);
+                }
+                return new HeapResource(b);
+            } finally {
+                instream.close();
+            }
+        } catch (IOException ex) {
+            throw new NotSerializableException(ex.getMessage());
+        }
+    }
+
+    static class StreamReference extends PhantomReference<InputStream> {
+
+        private final OffHeapResource resource;
+
+        StreamReference(final InputStream stream, final OffHeapResource resource) {
+            super(stream, resource.arena.getStreamQueue());
+            this.resource = resource;
+            resource.arena.register(this);
+        }
+
+        /**
+         * Releases the stream's hold on the resource, at most once.
+         */
+        void release() {
+            if (this.resource.arena.unregister(this)) {
+                this.resource.release();
+            }
+        }
+
+    }
+
+    class BlockInputStream extends InputStream {
+
+        private StreamReference ref;
+        private long pos;
+        private boolean closed;
+
+        BlockInputStream() {
+            super();
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (this.closed) {
+                throw new IOException("Stream has been closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            if (this.pos >= length) {
+                return -1;
+            }
+            int blockSize = arena.getBlockSize();
+            int total = 0;
+            while (total < len && this.pos < length) {
+                int offset = (int) (this.pos % blockSize);
+                int n = (int) Math.min(Math.min(len - total, blockSize - offset), length - this.pos);
+                ByteBuffer buf = arena.block(blocks[(int) (this.pos / blockSize)]);
+                buf.position(buf.position() + offset);
+                buf.get(b, off + total, n);
+                total += n;
+                this.pos += n;
+            }
+            return total;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (this.closed) {
+                throw new IOException("Stream has been closed");
+            }
+            if (this.pos >= length) {
+                return -1;
+            }
+            int blockSize = arena.getBlockSize();
+            int b = arena.get(blocks[(int) (this.pos / blockSize)], (int) (this.pos % blockSize));
+            this.pos++;
+            return b & 0xff;
+        }
+
+        @Override
+        public long skip(final long n) {
+            if (n <= 0) {
+                return 0;
+            }
+            long skipped = Math.min(n, length - this.pos);
+            this.pos += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(length - this.pos, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void close() {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.ref.release();
+        }
+
+    }
+
+}
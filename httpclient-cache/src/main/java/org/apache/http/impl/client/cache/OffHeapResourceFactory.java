@@ -0,0 +1,173 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.client.cache.InputLimit;
+import org.apache.http.client.cache.Resource;
+import org.apache.http.client.cache.ResourceFactory;
+
+/**
+ * Generates {@link Resource} instances whose body is stored outside of the
+ * Java heap in blocks of direct memory preallocated upon construction. The
+ * blocks of a resource are reclaimed when the resource is disposed of;
+ * this factory is therefore intended for use with
+ * {@link ManagedHttpCacheStorage}. Blocks still held by input streams
+ * that have been garbage collected without being closed are reclaimed
+ * whenever a new resource is generated.
+ * <p/>
+ * If the memory has been exhausted while reading a response body, the
+ * factory reports the input limit as reached, so that the response is
+ * passed through without being cached. If a {@link ManagedHttpCacheStorage}
+ * is given, its {@link ManagedHttpCacheStorage#cleanResources()} method is
+ * invoked to reclaim the memory of the entries no longer in use before
+ * giving up.
+ *
+ * @since 4.3
+ */
+@ThreadSafe
+public class OffHeapResourceFactory implements ResourceFactory {
+
+    public static final int DEFAULT_BLOCK_SIZE = 8 * 1024;
+
+    private final OffHeapArena arena;
+    private final ManagedHttpCacheStorage storage;
+
+    /**
+     * @param capacity total amount of direct memory to allocate in bytes
+     * @param blockSize allocation unit in bytes
+     * @param storage the storage to reclaim memory from, or <code>null</code>
+     */
+    public OffHeapResourceFactory(long capacity, int blockSize, final ManagedHttpCacheStorage storage) {
+        super();
+        this.arena = new OffHeapArena(capacity, blockSize);
+        this.storage = storage;
+    }
+
+    public OffHeapResourceFactory(long capacity, final ManagedHttpCacheStorage storage) {
+        this(capacity, DEFAULT_BLOCK_SIZE, storage);
+    }
+
+    public OffHeapResourceFactory(long capacity) {
+        this(capacity, DEFAULT_BLOCK_SIZE, null);
+    }
+
+    /**
+     * Returns the total amount of memory in bytes.
+     */
+    public long getCapacity() {
+        return this.arena.getCapacity();
+    }
+
+    /**
+     * Returns the amount of memory in bytes not used by any resource.
+     */
+    public long getAvailable() {
+        return this.arena.getAvailable();
+    }
+
+    public Resource generate(
+            final String requestId,
+            final InputStream instream,
+            final InputLimit limit) throws IOException {
+        OffHeapResource.reclaimStreams(this.arena);
+        int blockSize = this.arena.getBlockSize();
+        int[] blocks = new int[4];
+        int blockCount = 0;
+        boolean cleaned = false;
+        ByteBuffer current = null;
+        byte[] buf = new byte[blockSize];
+        long total = 0;
+        try {
+            for (;;) {
+                if (current == null || !current.hasRemaining()) {
+                    int block = this.arena.allocate();
+                    if (block == -1 && this.storage != null && !cleaned) {
+                        cleaned = true;
+                        this.storage.cleanResources();
+                        block = this.arena.allocate();
+                    }
+                    if (block == -1) {
+                        if (limit == null) {
+                            throw new IOException("Off-heap cache memory exhausted");
+                        }
+                        limit.reached();
+                        break;
+                    }
+                    if (blockCount == blocks.length) {
+                        int[] tmp = new int[blocks.length * 2];
+                        System.arraycopy(blocks, 0, tmp, 0, blockCount);
+                        blocks = tmp;
+                    }
+                    blocks[blockCount] = block;
+                    blockCount++;
+                    current = this.arena.block(block);
+                }
+                // Never read more than fits into the current block, so that
+                // no data is lost if the next block cannot be allocated
+                int l = instream.read(buf, 0, current.remaining());
+                if (l == -1) {
+                    break;
+                }
+                current.put(buf, 0, l);
+                total += l;
+                if (limit != null && total > limit.getValue()) {
+                    limit.reached();
+                    break;
+                }
+            }
+        } catch (IOException ex) {
+            this.arena.free(blocks, 0, blockCount);
+            throw ex;
+        } catch (RuntimeException ex) {
+            this.arena.free(blocks, 0, blockCount);
+            throw ex;
+        }
+        int used = (int) ((total + blockSize - 1) / blockSize);
+        // Return the block allocated for data that never came
+        this.arena.free(blocks, used, blockCount - used);
+        int[] resourceBlocks = new int[used];
+        System.arraycopy(blocks, 0, resourceBlocks, 0, used);
+        return new OffHeapResource(this.arena, resourceBlocks, total);
+    }
+
+    public Resource copy(
+            final String requestId,
+            final Resource resource) throws IOException {
+        InputStream instream = resource.getInputStream();
+        try {
+            return generate(requestId, instream, null);
+        } finally {
+            instream.close();
+        }
+    }
+
+}
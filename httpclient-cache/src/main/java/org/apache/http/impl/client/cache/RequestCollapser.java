@@ -0,0 +1,115 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.client.cache.HttpCacheEntry;
+
+/**
+ * Keeps track of backend requests in progress, so that concurrent requests
+ * for the same cache entry can wait for the first one to populate the cache
+ * instead of calling the backend themselves.
+ *
+ * @since 4.3
+ */
+@ThreadSafe
+class RequestCollapser {
+
+    private final ConcurrentMap<String, CountDownLatch> inFlight;
+    private final CacheKeyGenerator cacheKeyGenerator;
+    private final long timeout;
+
+    /**
+     * @param timeout maximum time in milliseconds to wait for a backend
+     *   request in progress
+     */
+    RequestCollapser(long timeout) {
+        super();
+        this.inFlight = new ConcurrentHashMap<String, CountDownLatch>();
+        this.cacheKeyGenerator = new CacheKeyGenerator();
+        this.timeout = timeout;
+    }
+
+    String getURI(final HttpHost target, final HttpRequest request) {
+        return this.cacheKeyGenerator.getURI(target, request);
+    }
+
+    String getVariantURI(final HttpHost target, final HttpRequest request, final HttpCacheEntry entry) {
+        return this.cacheKeyGenerator.getVariantURI(target, request, entry);
+    }
+
+    /**
+     * Registers the caller as executing the backend request for the given
+     * key. The caller MUST invoke {@link #complete(String)} once the request
+     * has been completed.
+     *
+     * @return <code>true</code> if the caller has been registered,
+     *   <code>false</code> if another request for the key is in progress.
+     */
+    boolean lead(final String key) {
+        return this.inFlight.putIfAbsent(key, new CountDownLatch(1)) == null;
+    }
+
+    /**
+     * Waits for the backend request for the given key to complete.
+     *
+     * @return <code>true</code> if the request has been completed,
+     *   <code>false</code> if the timeout has expired or the thread
+     *   has been interrupted.
+     */
+    boolean await(final String key) {
+        CountDownLatch latch = this.inFlight.get(key);
+        if (latch == null) {
+            return true;
+        }
+        try {
+            return latch.await(this.timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Marks the backend request for the given key as completed and wakes up
+     * requests waiting for it.
+     */
+    void complete(final String key) {
+        CountDownLatch latch = this.inFlight.remove(key);
+        if (latch != null) {
+            latch.countDown();
+        }
+    }
+
+}
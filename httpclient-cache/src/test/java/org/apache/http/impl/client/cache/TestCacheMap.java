@@ -0,0 +1,101 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import org.apache.http.Header;
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.message.BasicHeader;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCacheMap {
+
+    private static HttpCacheEntry makeEntry(int len) {
+        return HttpTestUtils.makeCacheEntry(
+                new Header[] { new BasicHeader("Server", "MockServer/1.0") }, new byte[len]);
+    }
+
+    @Test
+    public void testWeigh() {
+        HttpCacheEntry entry = makeEntry(1000);
+        // HTTP/1.1 200 OK\r\n + Server: MockServer/1.0\r\n + body
+        Assert.assertEquals(17 + 24 + 1000, CacheMap.weigh(entry));
+        Assert.assertEquals(0, CacheMap.weigh(null));
+    }
+
+    @Test
+    public void testWeightIsTracked() {
+        CacheMap map = new CacheMap(10, 0);
+        HttpCacheEntry entry1 = makeEntry(100);
+        HttpCacheEntry entry2 = makeEntry(200);
+        map.put("foo", entry1);
+        map.put("bar", entry2);
+        Assert.assertEquals(CacheMap.weigh(entry1) + CacheMap.weigh(entry2), map.getWeight());
+        map.put("foo", entry2);
+        Assert.assertEquals(2 * CacheMap.weigh(entry2), map.getWeight());
+        map.remove("foo");
+        Assert.assertEquals(CacheMap.weigh(entry2), map.getWeight());
+        map.clear();
+        Assert.assertEquals(0, map.getWeight());
+        Assert.assertEquals(0, map.getEvictionCount());
+    }
+
+    @Test
+    public void testEvictsByEntryCount() {
+        CacheMap map = new CacheMap(2, 0);
+        map.put("a", makeEntry(10));
+        map.put("b", makeEntry(10));
+        map.get("a");
+        map.put("c", makeEntry(10));
+        Assert.assertEquals(2, map.size());
+        Assert.assertNotNull(map.get("a"));
+        Assert.assertNull(map.get("b"));
+        Assert.assertEquals(1, map.getEvictionCount());
+        Assert.assertEquals(2 * CacheMap.weigh(makeEntry(10)), map.getWeight());
+    }
+
+    @Test
+    public void testEvictsByWeight() {
+        long weight = CacheMap.weigh(makeEntry(1000));
+        CacheMap map = new CacheMap(100, 3 * weight);
+        map.put("a", makeEntry(1000));
+        map.put("b", makeEntry(1000));
+        map.put("c", makeEntry(1000));
+        map.get("a");
+        Assert.assertEquals(0, map.getEvictionCount());
+        Assert.assertEquals(3 * weight, map.getWeight());
+
+        map.put("d", makeEntry(1500));
+        Assert.assertEquals(2, map.getEvictionCount());
+        Assert.assertNull(map.get("b"));
+        Assert.assertNull(map.get("c"));
+        Assert.assertNotNull(map.get("a"));
+        Assert.assertNotNull(map.get("d"));
+        Assert.assertTrue(map.getWeight() <= 3 * weight);
+    }
+
+}
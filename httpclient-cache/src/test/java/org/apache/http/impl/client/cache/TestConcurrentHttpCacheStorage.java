@@ -0,0 +1,225 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.client.cache.HttpCacheUpdateCallback;
+import org.apache.http.client.cache.HttpCacheUpdateException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestConcurrentHttpCacheStorage {
+
+    private CacheConfig config;
+    private ConcurrentHttpCacheStorage impl;
+
+    @Before
+    public void setUp() {
+        config = new CacheConfig();
+        config.setMaxCacheEntries(100);
+        config.setMaxUpdateRetries(1);
+        impl = new ConcurrentHttpCacheStorage(config, 4);
+    }
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        Assert.assertNull(impl.getEntry("foo"));
+        impl.putEntry("foo", entry);
+        Assert.assertSame(entry, impl.getEntry("foo"));
+        Assert.assertEquals(1, impl.getEntryCount());
+        impl.removeEntry("foo");
+        Assert.assertNull(impl.getEntry("foo"));
+        Assert.assertEquals(0, impl.getEntryCount());
+    }
+
+    @Test
+    public void testUpdateEntry() throws Exception {
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry entry2 = HttpTestUtils.makeCacheEntry();
+        impl.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            public HttpCacheEntry update(final HttpCacheEntry existing) {
+                Assert.assertNull(existing);
+                return entry1;
+            }
+
+        });
+        Assert.assertSame(entry1, impl.getEntry("foo"));
+        impl.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            public HttpCacheEntry update(final HttpCacheEntry existing) {
+                Assert.assertSame(entry1, existing);
+                return entry2;
+            }
+
+        });
+        Assert.assertSame(entry2, impl.getEntry("foo"));
+        impl.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            public HttpCacheEntry update(final HttpCacheEntry existing) {
+                return null;
+            }
+
+        });
+        Assert.assertNull(impl.getEntry("foo"));
+        Assert.assertEquals(0, impl.getEntryCount());
+    }
+
+    @Test
+    public void testUpdateEntryRetriesOnConflict() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        final AtomicInteger calls = new AtomicInteger(0);
+        impl.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            public HttpCacheEntry update(final HttpCacheEntry existing) throws IOException {
+                if (calls.getAndIncrement() == 0) {
+                    impl.putEntry("foo", HttpTestUtils.makeCacheEntry());
+                }
+                return entry;
+            }
+
+        });
+        Assert.assertEquals(2, calls.get());
+        Assert.assertSame(entry, impl.getEntry("foo"));
+    }
+
+    @Test(expected=HttpCacheUpdateException.class)
+    public void testUpdateEntryFailsAfterMaxRetries() throws Exception {
+        impl.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            public HttpCacheEntry update(final HttpCacheEntry existing) throws IOException {
+                impl.putEntry("foo", HttpTestUtils.makeCacheEntry());
+                return HttpTestUtils.makeCacheEntry();
+            }
+
+        });
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedEntries() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            impl.putEntry("http://localhost/" + i, HttpTestUtils.makeCacheEntry());
+            Assert.assertTrue(impl.getEntryCount() <= 100);
+        }
+        Assert.assertEquals(100, impl.getEntryCount());
+        int present = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (impl.getEntry("http://localhost/" + i) != null) {
+                present++;
+            }
+        }
+        Assert.assertEquals(100, present);
+        Assert.assertNotNull(impl.getEntry("http://localhost/999"));
+        Assert.assertNull(impl.getEntry("http://localhost/0"));
+    }
+
+    @Test
+    public void testEvictsByWeight() throws Exception {
+        HttpCacheEntry entry = HttpTestUtils.makeCacheEntry(new byte[1000]);
+        long weight = CacheMap.weigh(entry);
+        config.setMaxCacheBytes(10 * weight);
+        impl = new ConcurrentHttpCacheStorage(config, 4);
+        for (int i = 0; i < 50; i++) {
+            impl.putEntry("http://localhost/" + i, entry);
+            Assert.assertTrue(impl.getWeight() <= 10 * weight);
+        }
+        Assert.assertEquals(10, impl.getEntryCount());
+        Assert.assertEquals(10 * weight, impl.getWeight());
+        Assert.assertEquals(40, impl.getEvictionCount());
+        Assert.assertNotNull(impl.getEntry("http://localhost/49"));
+
+        for (int i = 0; i < 50; i++) {
+            impl.removeEntry("http://localhost/" + i);
+        }
+        Assert.assertEquals(0, impl.getEntryCount());
+        Assert.assertEquals(0, impl.getWeight());
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+        final int threadCount = 8;
+        final int updateCount = 500;
+        config.setMaxUpdateRetries(Integer.MAX_VALUE - 1);
+        impl = new ConcurrentHttpCacheStorage(config, 4);
+        final HttpCacheEntry[] entries = new HttpCacheEntry[threadCount * updateCount + 1];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = HttpTestUtils.makeCacheEntry();
+        }
+        impl.putEntry("foo", entries[0]);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<Exception> exceptions = new ArrayList<Exception>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread t = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        latch.await();
+                        for (int n = 0; n < updateCount; n++) {
+                            impl.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+                                public HttpCacheEntry update(final HttpCacheEntry existing) {
+                                    for (int k = 0; k < entries.length - 1; k++) {
+                                        if (entries[k] == existing) {
+                                            return entries[k + 1];
+                                        }
+                                    }
+                                    throw new IllegalStateException("Unexpected entry");
+                                }
+
+                            });
+                        }
+                    } catch (Exception ex) {
+                        synchronized (exceptions) {
+                            exceptions.add(ex);
+                        }
+                    }
+                }
+
+            };
+            threads.add(t);
+            t.start();
+        }
+        latch.countDown();
+        for (Thread t: threads) {
+            t.join(30000);
+        }
+        Assert.assertTrue(exceptions.toString(), exceptions.isEmpty());
+        Assert.assertSame(entries[entries.length - 1], impl.getEntry("foo"));
+    }
+
+}
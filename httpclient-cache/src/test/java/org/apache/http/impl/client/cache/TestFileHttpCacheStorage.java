@@ -0,0 +1,276 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Date;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.client.cache.HttpCacheUpdateCallback;
+import org.apache.http.client.cache.Resource;
+import org.apache.http.message.BasicStatusLine;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestFileHttpCacheStorage {
+
+    private File cacheDir;
+    private CacheConfig config;
+    private FileResourceFactory resourceFactory;
+    private FileHttpCacheStorage impl;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = File.createTempFile("httpclient-cache", null);
+        cacheDir.delete();
+        cacheDir.mkdirs();
+        config = new CacheConfig();
+        config.setMaxCacheEntries(100);
+        resourceFactory = new FileResourceFactory(cacheDir);
+        impl = new FileHttpCacheStorage(cacheDir, config);
+    }
+
+    @After
+    public void tearDown() {
+        impl.shutdown();
+        File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File file: files) {
+                file.delete();
+            }
+        }
+        cacheDir.delete();
+    }
+
+    private HttpCacheEntry makeEntry(final String requestId, final byte[] body) throws IOException {
+        Resource resource = resourceFactory.generate(requestId, new ByteArrayInputStream(body), null);
+        Date now = new Date();
+        return new HttpCacheEntry(now, now,
+                new BasicStatusLine(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"),
+                HttpTestUtils.getStockHeaders(now), resource);
+    }
+
+    private FileHttpCacheStorage restart() throws IOException {
+        impl.shutdown();
+        impl = new FileHttpCacheStorage(cacheDir, config);
+        return impl;
+    }
+
+    private static byte[] readBody(final HttpCacheEntry entry) throws IOException {
+        InputStream in = entry.getResource().getInputStream();
+        try {
+            byte[] b = new byte[(int) entry.getResource().length()];
+            int off = 0;
+            while (off < b.length) {
+                int n = in.read(b, off, b.length - off);
+                if (n == -1) {
+                    break;
+                }
+                off += n;
+            }
+            return b;
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testEntriesSurviveRestart() throws Exception {
+        byte[] body = HttpTestUtils.getRandomBytes(256);
+        HttpCacheEntry entry = makeEntry("foo", body);
+        impl.putEntry("foo", entry);
+        impl.putEntry("bar", makeEntry("bar", HttpTestUtils.getRandomBytes(16)));
+
+        restart();
+        Assert.assertEquals(2, impl.getEntryCount());
+        HttpCacheEntry restored = impl.getEntry("foo");
+        Assert.assertNotNull(restored);
+        Assert.assertEquals(entry.getStatusCode(), restored.getStatusCode());
+        Assert.assertEquals(entry.getAllHeaders().length, restored.getAllHeaders().length);
+        Assert.assertArrayEquals(body, readBody(restored));
+    }
+
+    @Test
+    public void testRemovalsAndUpdatesSurviveRestart() throws Exception {
+        impl.putEntry("foo", makeEntry("foo", HttpTestUtils.getRandomBytes(16)));
+        impl.putEntry("bar", makeEntry("bar", HttpTestUtils.getRandomBytes(16)));
+        impl.removeEntry("foo");
+        final HttpCacheEntry updated = makeEntry("bar", HttpTestUtils.getRandomBytes(32));
+        impl.updateEntry("bar", new HttpCacheUpdateCallback() {
+
+            public HttpCacheEntry update(final HttpCacheEntry existing) {
+                Assert.assertNotNull(existing);
+                return updated;
+            }
+
+        });
+
+        restart();
+        Assert.assertNull(impl.getEntry("foo"));
+        HttpCacheEntry restored = impl.getEntry("bar");
+        Assert.assertNotNull(restored);
+        Assert.assertEquals(32, restored.getResource().length());
+    }
+
+    @Test
+    public void testEntryWithMissingBodyFileIsDropped() throws Exception {
+        HttpCacheEntry entry = makeEntry("foo", HttpTestUtils.getRandomBytes(16));
+        impl.putEntry("foo", entry);
+        impl.shutdown();
+        Assert.assertTrue(((FileResource) entry.getResource()).getFile().delete());
+
+        restart();
+        Assert.assertNull(impl.getEntry("foo"));
+    }
+
+    @Test
+    public void testTruncatedJournalIsRecovered() throws Exception {
+        impl.putEntry("foo", makeEntry("foo", HttpTestUtils.getRandomBytes(16)));
+        impl.shutdown();
+        File journal = new File(cacheDir, FileHttpCacheStorage.JOURNAL_NAME);
+        long len = journal.length();
+        impl = new FileHttpCacheStorage(cacheDir, config);
+        impl.putEntry("bar", makeEntry("bar", HttpTestUtils.getRandomBytes(16)));
+        impl.shutdown();
+        RandomAccessFile raf = new RandomAccessFile(journal, "rw");
+        try {
+            raf.setLength(raf.length() - 5);
+        } finally {
+            raf.close();
+        }
+
+        restart();
+        Assert.assertNotNull(impl.getEntry("foo"));
+        Assert.assertNull(impl.getEntry("bar"));
+        Assert.assertEquals(len, journal.length());
+
+        impl.putEntry("bar", makeEntry("bar", HttpTestUtils.getRandomBytes(16)));
+        restart();
+        Assert.assertNotNull(impl.getEntry("foo"));
+        Assert.assertNotNull(impl.getEntry("bar"));
+    }
+
+    @Test
+    public void testCorruptedJournalTailIsDiscarded() throws Exception {
+        impl.putEntry("foo", makeEntry("foo", HttpTestUtils.getRandomBytes(16)));
+        impl.shutdown();
+        File journal = new File(cacheDir, FileHttpCacheStorage.JOURNAL_NAME);
+        long len = journal.length();
+        FileOutputStream out = new FileOutputStream(journal, true);
+        try {
+            out.write(HttpTestUtils.getRandomBytes(64));
+        } finally {
+            out.close();
+        }
+
+        restart();
+        Assert.assertNotNull(impl.getEntry("foo"));
+        Assert.assertEquals(len, journal.length());
+    }
+
+    @Test
+    public void testCompactionShrinksJournal() throws Exception {
+        HttpCacheEntry entry = makeEntry("foo", HttpTestUtils.getRandomBytes(16));
+        for (int i = 0; i < 20; i++) {
+            impl.putEntry("foo", entry);
+        }
+        impl.putEntry("bar", makeEntry("bar", HttpTestUtils.getRandomBytes(16)));
+        impl.removeEntry("bar");
+        File journal = new File(cacheDir, FileHttpCacheStorage.JOURNAL_NAME);
+        long len = journal.length();
+
+        impl.compact();
+        Assert.assertTrue(journal.length() < len / 10);
+        Assert.assertFalse(new File(cacheDir, FileHttpCacheStorage.JOURNAL_TMP_NAME).exists());
+
+        restart();
+        Assert.assertEquals(1, impl.getEntryCount());
+        Assert.assertNotNull(impl.getEntry("foo"));
+    }
+
+    @Test
+    public void testInterruptedCompactionIsRecovered() throws Exception {
+        impl.putEntry("foo", makeEntry("foo", HttpTestUtils.getRandomBytes(16)));
+        impl.shutdown();
+        // Crash after the old journal has been moved aside, but before
+        // the new one has been put in place
+        File journal = new File(cacheDir, FileHttpCacheStorage.JOURNAL_NAME);
+        File backup = new File(cacheDir, FileHttpCacheStorage.JOURNAL_BACKUP_NAME);
+        File tmp = new File(cacheDir, FileHttpCacheStorage.JOURNAL_TMP_NAME);
+        Assert.assertTrue(journal.renameTo(backup));
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            out.write(HttpTestUtils.getRandomBytes(10));
+        } finally {
+            out.close();
+        }
+
+        restart();
+        Assert.assertNotNull(impl.getEntry("foo"));
+        Assert.assertTrue(journal.exists());
+        Assert.assertFalse(backup.exists());
+        Assert.assertFalse(tmp.exists());
+    }
+
+    @Test
+    public void testCompactionDeletesOrphanedFiles() throws Exception {
+        HttpCacheEntry entry = makeEntry("foo", HttpTestUtils.getRandomBytes(16));
+        impl.putEntry("foo", entry);
+        File referenced = ((FileResource) entry.getResource()).getFile();
+        long old = System.currentTimeMillis() - 2 * FileHttpCacheStorage.ORPHAN_GRACE_PERIOD;
+        referenced.setLastModified(old);
+
+        File orphan = new File(cacheDir, "orphan");
+        FileOutputStream out = new FileOutputStream(orphan);
+        out.close();
+        orphan.setLastModified(old);
+        File recent = new File(cacheDir, "recent");
+        out = new FileOutputStream(recent);
+        out.close();
+
+        impl.compact();
+        Assert.assertTrue(referenced.exists());
+        Assert.assertFalse(orphan.exists());
+        Assert.assertTrue(recent.exists());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testPutAfterShutdown() throws Exception {
+        impl.shutdown();
+        impl.putEntry("foo", HttpTestUtils.makeCacheEntry());
+    }
+
+}
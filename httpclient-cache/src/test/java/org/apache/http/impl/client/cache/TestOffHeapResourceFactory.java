@@ -0,0 +1,201 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.apache.http.client.cache.InputLimit;
+import org.apache.http.client.cache.Resource;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestOffHeapResourceFactory {
+
+    private static byte[] makeBytes(int len) {
+        byte[] b = new byte[len];
+        for (int i = 0; i < len; i++) {
+            b[i] = (byte) (i * 31);
+        }
+        return b;
+    }
+
+    private static byte[] readAll(final Resource resource) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtils.copyAndClose(resource.getInputStream(), out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testGenerate() throws Exception {
+        OffHeapResourceFactory factory = new OffHeapResourceFactory(64 * 1024, 1024, null);
+        Assert.assertEquals(64 * 1024, factory.getCapacity());
+        byte[] b = makeBytes(10000);
+        InputLimit limit = new InputLimit(20000);
+        Resource resource = factory.generate("foo", new ByteArrayInputStream(b), limit);
+        Assert.assertFalse(limit.isReached());
+        Assert.assertEquals(10000, resource.length());
+        Assert.assertArrayEquals(b, readAll(resource));
+        Assert.assertEquals(54 * 1024, factory.getAvailable());
+
+        resource.dispose();
+        resource.dispose();
+        Assert.assertEquals(64 * 1024, factory.getAvailable());
+    }
+
+    @Test
+    public void testGenerateEmpty() throws Exception {
+        OffHeapResourceFactory factory = new OffHeapResourceFactory(4096, 1024, null);
+        Resource resource = factory.generate("foo", new ByteArrayInputStream(new byte[0]), null);
+        Assert.assertEquals(0, resource.length());
+        Assert.assertEquals(-1, resource.getInputStream().read());
+        Assert.assertEquals(4096, factory.getAvailable());
+    }
+
+    @Test
+    public void testGenerateLimitReached() throws Exception {
+        OffHeapResourceFactory factory = new OffHeapResourceFactory(64 * 1024, 1024, null);
+        InputLimit limit = new InputLimit(5000);
+        Resource resource = factory.generate("foo", new ByteArrayInputStream(makeBytes(10000)), limit);
+        Assert.assertTrue(limit.isReached());
+        Assert.assertTrue(resource.length() > 5000);
+        Assert.assertTrue(resource.length() < 10000);
+    }
+
+    @Test
+    public void testGenerateMemoryExhausted() throws Exception {
+        OffHeapResourceFactory factory = new OffHeapResourceFactory(4096, 1024, null);
+        byte[] b = makeBytes(10000);
+        InputLimit limit = new InputLimit(20000);
+        InputStream instream = new ByteArrayInputStream(b);
+        Resource resource = factory.generate("foo", instream, limit);
+        Assert.assertTrue(limit.isReached());
+        Assert.assertEquals(4096, resource.length());
+        Assert.assertEquals(0, factory.getAvailable());
+
+        // The data read so far must be complete
+        byte[] head = readAll(resource);
+        for (int i = 0; i < head.length; i++) {
+            Assert.assertEquals(b[i], head[i]);
+        }
+        Assert.assertEquals(10000 - 4096, instream.available());
+
+        try {
+            factory.generate("bar", new ByteArrayInputStream(b), null);
+            Assert.fail("IOException should have been thrown");
+        } catch (IOException expected) {
+        }
+        resource.dispose();
+        Assert.assertEquals(4096, factory.getAvailable());
+    }
+
+    @Test
+    public void testDisposeWaitsForOpenStreams() throws Exception {
+        OffHeapResourceFactory factory = new OffHeapResourceFactory(4096, 1024, null);
+        Resource resource = factory.generate("foo", new ByteArrayInputStream(makeBytes(2000)), null);
+        InputStream instream = resource.getInputStream();
+        resource.dispose();
+        Assert.assertEquals(2048, factory.getAvailable());
+        Assert.assertEquals(2000, instream.skip(5000) + instream.available());
+        instream.close();
+        instream.close();
+        Assert.assertEquals(4096, factory.getAvailable());
+        try {
+            resource.getInputStream();
+            Assert.fail("IOException should have been thrown");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testReadSingleBytes() throws Exception {
+        OffHeapResourceFactory factory = new OffHeapResourceFactory(4096, 1024, null);
+        byte[] b = makeBytes(2000);
+        Resource resource = factory.generate("foo", new ByteArrayInputStream(b), null);
+        InputStream instream = resource.getInputStream();
+        for (int i = 0; i < b.length; i++) {
+            Assert.assertEquals(b[i] & 0xff, instream.read());
+        }
+        Assert.assertEquals(-1, instream.read());
+        instream.close();
+    }
+
+    private static void readPartially(final Resource resource) throws IOException {
+        InputStream instream = resource.getInputStream();
+        Assert.assertTrue(instream.read() != -1);
+    }
+
+    @Test
+    public void testUnclosedStreamReclaimed() throws Exception {
+        OffHeapResourceFactory factory = new OffHeapResourceFactory(4096, 1024, null);
+        Resource resource = factory.generate("foo", new ByteArrayInputStream(makeBytes(2000)), null);
+        readPartially(resource);
+        resource.dispose();
+        Assert.assertEquals(2048, factory.getAvailable());
+
+        // Blocks pinned by the abandoned stream are reclaimed upon generation
+        for (int i = 0; i < 50 && factory.getAvailable() < 4096; i++) {
+            System.gc();
+            Thread.sleep(20);
+            factory.generate("bar", new ByteArrayInputStream(new byte[0]), null).dispose();
+        }
+        Assert.assertEquals(4096, factory.getAvailable());
+    }
+
+    @Test
+    public void testCopy() throws Exception {
+        OffHeapResourceFactory factory = new OffHeapResourceFactory(64 * 1024, 1024, null);
+        byte[] b = makeBytes(3000);
+        Resource copy = factory.copy("foo", new HeapResource(b));
+        Assert.assertEquals(3000, copy.length());
+        Assert.assertArrayEquals(b, readAll(copy));
+        Resource copy2 = factory.copy("bar", copy);
+        copy.dispose();
+        Assert.assertArrayEquals(b, readAll(copy2));
+    }
+
+    @Test
+    public void testSerializedAsHeapResource() throws Exception {
+        OffHeapResourceFactory factory = new OffHeapResourceFactory(4096, 1024, null);
+        byte[] b = makeBytes(3000);
+        Resource resource = factory.generate("foo", new ByteArrayInputStream(b), null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(resource);
+        oos.close();
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()));
+        Object obj = ois.readObject();
+        Assert.assertTrue(obj instanceof HeapResource);
+        Assert.assertArrayEquals(b, readAll((Resource) obj));
+        Assert.assertEquals(1024, factory.getAvailable());
+    }
+
+}
@@ -0,0 +1,229 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.cache.CacheResponseStatus;
+import org.apache.http.impl.cookie.DateUtils;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRequestCollapser {
+
+    @Test
+    public void testLeadAndComplete() throws Exception {
+        RequestCollapser collapser = new RequestCollapser(100);
+        Assert.assertTrue(collapser.lead("foo"));
+        Assert.assertFalse(collapser.lead("foo"));
+        Assert.assertTrue(collapser.lead("bar"));
+        Assert.assertFalse(collapser.await("foo"));
+        collapser.complete("foo");
+        Assert.assertTrue(collapser.await("foo"));
+        Assert.assertTrue(collapser.lead("foo"));
+    }
+
+    @Test
+    public void testAwaitIsWokenUpOnCompletion() throws Exception {
+        final RequestCollapser collapser = new RequestCollapser(10000);
+        Assert.assertTrue(collapser.lead("foo"));
+        Thread t = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ex) {
+                }
+                collapser.complete("foo");
+            }
+
+        };
+        t.start();
+        long start = System.currentTimeMillis();
+        Assert.assertTrue(collapser.await("foo"));
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        t.join();
+    }
+
+    static class SlowBackend extends DummyHttpClient {
+
+        private final AtomicInteger count = new AtomicInteger(0);
+        private volatile HttpResponse response;
+
+        void setNextResponse(final HttpResponse response) {
+            this.response = response;
+        }
+
+        int getCount() {
+            return this.count.get();
+        }
+
+        @Override
+        public HttpResponse execute(final HttpHost target, final HttpRequest request,
+                final HttpContext context) throws IOException {
+            this.count.incrementAndGet();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ex) {
+                throw new IOException("Interrupted");
+            }
+            return this.response;
+        }
+
+    }
+
+    private static List<Throwable> executeConcurrently(
+            final CachingHttpClient client, final HttpHost target,
+            final List<CacheResponseStatus> statuses, int threadCount) throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<Throwable> exceptions = new ArrayList<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread t = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        latch.await();
+                        HttpContext context = new BasicHttpContext();
+                        HttpResponse response = client.execute(
+                                target, HttpTestUtils.makeDefaultRequest(), context);
+                        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+                        synchronized (statuses) {
+                            statuses.add((CacheResponseStatus) context.getAttribute(
+                                    CachingHttpClient.CACHE_RESPONSE_STATUS));
+                        }
+                    } catch (Throwable ex) {
+                        synchronized (exceptions) {
+                            exceptions.add(ex);
+                        }
+                    }
+                }
+
+            };
+            threads.add(t);
+            t.start();
+        }
+        latch.countDown();
+        for (Thread t: threads) {
+            t.join(30000);
+        }
+        return exceptions;
+    }
+
+    @Test
+    public void testConcurrentCacheMissesAreCollapsed() throws Exception {
+        SlowBackend backend = new SlowBackend();
+        backend.setNextResponse(HttpTestUtils.make200Response(new Date(), "max-age=3600"));
+        CacheConfig config = new CacheConfig();
+        config.setRequestCollapsingTimeout(10000);
+        CachingHttpClient client = new CachingHttpClient(backend, config);
+        HttpHost target = new HttpHost("foo.example.com");
+
+        List<CacheResponseStatus> statuses = new ArrayList<CacheResponseStatus>();
+        List<Throwable> exceptions = executeConcurrently(client, target, statuses, 5);
+        Assert.assertTrue(exceptions.toString(), exceptions.isEmpty());
+        Assert.assertEquals(1, backend.getCount());
+        Assert.assertEquals(5, statuses.size());
+        int hits = 0;
+        for (CacheResponseStatus status: statuses) {
+            if (status == CacheResponseStatus.CACHE_HIT) {
+                hits++;
+            }
+        }
+        Assert.assertEquals(4, hits);
+    }
+
+    @Test
+    public void testConcurrentCacheMissesAreNotCollapsedByDefault() throws Exception {
+        SlowBackend backend = new SlowBackend();
+        backend.setNextResponse(HttpTestUtils.make200Response(new Date(), "max-age=3600"));
+        CachingHttpClient client = new CachingHttpClient(backend, new CacheConfig());
+        HttpHost target = new HttpHost("foo.example.com");
+
+        List<CacheResponseStatus> statuses = new ArrayList<CacheResponseStatus>();
+        List<Throwable> exceptions = executeConcurrently(client, target, statuses, 5);
+        Assert.assertTrue(exceptions.toString(), exceptions.isEmpty());
+        Assert.assertEquals(5, backend.getCount());
+    }
+
+    @Test
+    public void testCollapsedRequestFallsBackToBackendOnTimeout() throws Exception {
+        SlowBackend backend = new SlowBackend();
+        backend.setNextResponse(HttpTestUtils.make200Response(new Date(), "max-age=3600"));
+        CacheConfig config = new CacheConfig();
+        config.setRequestCollapsingTimeout(1);
+        CachingHttpClient client = new CachingHttpClient(backend, config);
+        HttpHost target = new HttpHost("foo.example.com");
+
+        List<CacheResponseStatus> statuses = new ArrayList<CacheResponseStatus>();
+        List<Throwable> exceptions = executeConcurrently(client, target, statuses, 3);
+        Assert.assertTrue(exceptions.toString(), exceptions.isEmpty());
+        Assert.assertEquals(3, backend.getCount());
+    }
+
+    @Test
+    public void testConcurrentRevalidationsAreCollapsed() throws Exception {
+        SlowBackend backend = new SlowBackend();
+        Date tenSecondsAgo = new Date(System.currentTimeMillis() - 10 * 1000L);
+        backend.setNextResponse(HttpTestUtils.make200Response(tenSecondsAgo, "max-age=5"));
+        CacheConfig config = new CacheConfig();
+        config.setRequestCollapsingTimeout(10000);
+        CachingHttpClient client = new CachingHttpClient(backend, config);
+        HttpHost target = new HttpHost("foo.example.com");
+        client.execute(target, HttpTestUtils.makeDefaultRequest());
+        Assert.assertEquals(1, backend.getCount());
+
+        HttpResponse notModified = new BasicHttpResponse(
+                HttpVersion.HTTP_1_1, HttpStatus.SC_NOT_MODIFIED, "Not Modified");
+        notModified.setHeader("Date", DateUtils.formatDate(new Date()));
+        notModified.setHeader("Cache-Control", "max-age=3600");
+        notModified.setHeader("Etag", "\"etag\"");
+        backend.setNextResponse(notModified);
+
+        List<CacheResponseStatus> statuses = new ArrayList<CacheResponseStatus>();
+        List<Throwable> exceptions = executeConcurrently(client, target, statuses, 5);
+        Assert.assertTrue(exceptions.toString(), exceptions.isEmpty());
+        Assert.assertEquals(2, backend.getCount());
+        Assert.assertEquals(5, statuses.size());
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.client;
+
+import org.apache.http.conn.routing.HttpRoute;
+
+/**
+ * {@link BackoffManager} that adjusts the size of the connection pool
+ * based on latency measurements in addition to backoff signals.
+ *
+ * @since 4.3
+ */
+public interface LatencyAwareBackoffManager extends BackoffManager {
+
+    /**
+     * Called instead of {@link #probe(HttpRoute)} when a request has
+     * succeeded, with the time it took to obtain a connection from the pool
+     * and the time it took to receive the response once the connection was
+     * obtained. Times are expressed in nanoseconds.
+     *
+     * @param route the route of the request.
+     * @param responseTime time taken to receive the response, excluding
+     *   the time spent waiting for a connection.
+     * @param leaseTime time spent waiting for a connection.
+     */
+    void probe(HttpRoute route, long responseTime, long leaseTime);
+
+}
@@ -109,6 +109,15 @@ public interface ClientContext {
     @Deprecated
     public static final String AUTH_SCHEME_PREF      = "http.auth.scheme-pref";
 
+    /**
+     * Attribute name of a {@link java.lang.Long} object that represents
+     * the time in nanoseconds spent waiting for a connection from
+     * the connection manager.
+     *
+     * @since 4.3
+     */
+    public static final String CONNECTION_LEASE_TIME = "http.connection-lease-time";
+
     /**
      * Attribute name of a {@link java.lang.Object} object that represents
      * the actual user identity such as user {@link java.security.Principal}.
@@ -0,0 +1,95 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.conn;
+
+import org.apache.http.conn.routing.HttpRoute;
+
+/**
+ * Users may implement this interface to collect connection pool usage
+ * metrics. Methods of this interface are called by request execution threads
+ * outside of the pool lock. Implementations are expected to be thread safe
+ * and must not block. All times are expressed in nanoseconds.
+ *
+ * @since 4.3
+ */
+public interface ConnPoolMetrics {
+
+    /**
+     * Called when a connection has been leased from the pool.
+     *
+     * @param route the route of the connection.
+     * @param waitTime time spent waiting for the connection.
+     * @param reused <code>true</code> if an already open connection was
+     *   leased, <code>false</code> if the connection is yet to be opened.
+     */
+    void leased(HttpRoute route, long waitTime, boolean reused);
+
+    /**
+     * Called when a lease request has timed out waiting for a connection.
+     *
+     * @param route the requested route.
+     * @param waitTime time spent waiting for the connection.
+     */
+    void leaseTimedOut(HttpRoute route, long waitTime);
+
+    /**
+     * Called when a lease request has been rejected because the maximum
+     * number of pending lease requests has been reached.
+     *
+     * @param route the requested route.
+     */
+    void leaseRejected(HttpRoute route);
+
+    /**
+     * Called when a connection has been opened. For secure connections
+     * established directly with the target the time includes the TLS
+     * handshake.
+     *
+     * @param route the route of the connection.
+     * @param connectTime time taken to open the connection.
+     */
+    void connected(HttpRoute route, long connectTime);
+
+    /**
+     * Called when a layered protocol such as TLS has been established over
+     * an open connection.
+     *
+     * @param route the route of the connection.
+     * @param handshakeTime time taken to establish the layered protocol.
+     */
+    void upgraded(HttpRoute route, long handshakeTime);
+
+    /**
+     * Called when the pool has closed a persistent connection because it
+     * expired, went idle for too long, turned out to be stale or its slot
+     * was needed by another route.
+     *
+     * @param route the route of the connection.
+     */
+    void evicted(HttpRoute route);
+
+}
@@ -0,0 +1,63 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.conn;
+
+import org.apache.http.annotation.Immutable;
+
+/**
+ * Signals that a request for a connection has been rejected without waiting
+ * because the connection manager already has the maximum number of pending
+ * connection requests.
+ * <p/>
+ * This exception extends {@link ConnectionPoolTimeoutException} so that it
+ * can be thrown by {@link ConnectionRequest#get(long, java.util.concurrent.TimeUnit)}
+ * and gets handled like a pool timeout by code unaware of request limits.
+ *
+ * @since 4.3
+ */
+@Immutable
+public class ConnectionRequestRejectedException extends ConnectionPoolTimeoutException {
+
+    private static final long serialVersionUID = 3415498341521437582L;
+
+    /**
+     * Creates a ConnectionRequestRejectedException with a <tt>null</tt> detail message.
+     */
+    public ConnectionRequestRejectedException() {
+        super();
+    }
+
+    /**
+     * Creates a ConnectionRequestRejectedException with the specified detail message.
+     *
+     * @param message The exception detail message
+     */
+    public ConnectionRequestRejectedException(String message) {
+        super(message);
+    }
+
+}
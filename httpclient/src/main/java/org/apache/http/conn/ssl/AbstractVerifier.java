@@ -76,6 +76,9 @@ public abstract class AbstractVerifier implements X509HostnameVerifier {
         Arrays.sort(BAD_COUNTRY_2LDS);
     }
 
+    static final int DNS_SUBJECT_ALT = 2;
+    static final int IP_SUBJECT_ALT = 7;
+
     public AbstractVerifier() {
         super();
     }
@@ -85,7 +88,14 @@ public abstract class AbstractVerifier implements X509HostnameVerifier {
         if(host == null) {
             throw new NullPointerException("host to verify is null");
         }
+        verify(host, getPeerCertificate(ssl));
+    }
 
+    /**
+     * Returns the end entity certificate of the peer of the given socket,
+     * performing the handshake if necessary.
+     */
+    static X509Certificate getPeerCertificate(final SSLSocket ssl) throws IOException {
         SSLSession session = ssl.getSession();
         if(session == null) {
             // In our experience this only happens under IBM 1.4.x when
@@ -124,8 +134,7 @@ public abstract class AbstractVerifier implements X509HostnameVerifier {
         }
 
         Certificate[] certs = session.getPeerCertificates();
-        X509Certificate x509 = (X509Certificate) certs[0];
-        verify(host, x509);
+        return (X509Certificate) certs[0];
     }
 
     public final boolean verify(String host, SSLSession session) {
@@ -195,21 +204,22 @@ public abstract class AbstractVerifier implements X509HostnameVerifier {
             // The CN better have at least two dots if it wants wildcard
             // action.  It also can't be [*.co.uk] or [*.co.jp] or
             // [*.org.uk], etc...
-            String parts[] = cn.split("\\.");
-            boolean doWildcard = parts.length >= 3 &&
-                                 parts[0].endsWith("*") &&
+            int firstDot = cn.indexOf('.');
+            boolean doWildcard = countLabels(cn) >= 3 &&
+                                 firstDot > 0 && cn.charAt(firstDot - 1) == '*' &&
                                  acceptableCountryWildcard(cn) &&
                                  !isIPAddress(host);
 
             if(doWildcard) {
-                String firstpart = parts[0];
-                if (firstpart.length() > 1) { // e.g. server*
-                    String prefix = firstpart.substring(0, firstpart.length() - 1); // e.g. server
-                    String suffix = cn.substring(firstpart.length()); // skip wildcard part from cn
-                    String hostSuffix = hostName.substring(prefix.length()); // skip wildcard part from host
-                    match = hostName.startsWith(prefix) && hostSuffix.endsWith(suffix);
+                int prefixLen = firstDot - 1; // e.g. server of server*
+                if (prefixLen > 0) {
+                    int suffixLen = cn.length() - firstDot; // skip wildcard part from cn
+                    match = hostName.length() >= prefixLen + suffixLen &&
+                            hostName.regionMatches(0, cn, 0, prefixLen) &&
+                            hostName.regionMatches(hostName.length() - suffixLen, cn, firstDot, suffixLen);
                 } else {
-                    match = hostName.endsWith(cn.substring(1));
+                    int suffixLen = cn.length() - 1;
+                    match = hostName.regionMatches(hostName.length() - suffixLen, cn, 1, suffixLen);
                 }
                 if(match && strictWithSubDomains) {
                     // If we're in strict mode, then [*.foo.com] is not
@@ -229,11 +239,41 @@ public abstract class AbstractVerifier implements X509HostnameVerifier {
     }
 
     public static boolean acceptableCountryWildcard(String cn) {
-        String parts[] = cn.split("\\.");
-        if (parts.length != 3 || parts[2].length() != 2) {
+        if (countLabels(cn) != 3) {
             return true; // it's not an attempt to wildcard a 2TLD within a country code
         }
-        return Arrays.binarySearch(BAD_COUNTRY_2LDS, parts[1]) < 0;
+        int end = cn.length();
+        while (cn.charAt(end - 1) == '.') {
+            end--;
+        }
+        int firstDot = cn.indexOf('.');
+        int secondDot = cn.indexOf('.', firstDot + 1);
+        if (end - secondDot - 1 != 2) {
+            return true;
+        }
+        return Arrays.binarySearch(BAD_COUNTRY_2LDS, cn.substring(firstDot + 1, secondDot)) < 0;
+    }
+
+    /**
+     * Counts the dot separated labels of the name the way
+     * <code>name.split("\\.").length</code> does, that is ignoring trailing
+     * empty labels, without using regular expressions.
+     */
+    static int countLabels(final String name) {
+        int end = name.length();
+        while (end > 0 && name.charAt(end - 1) == '.') {
+            end--;
+        }
+        if (end == 0) {
+            return name.length() == 0 ? 1 : 0;
+        }
+        int count = 1;
+        for (int i = 0; i < end; i++) {
+            if (name.charAt(i) == '.') {
+                count++;
+            }
+        }
+        return count;
     }
 
     public static String[] getCNs(X509Certificate cert) {
@@ -288,13 +328,14 @@ public abstract class AbstractVerifier implements X509HostnameVerifier {
      */
     private static String[] getSubjectAlts(
             final X509Certificate cert, final String hostname) {
-        int subjectType;
-        if (isIPAddress(hostname)) {
-            subjectType = 7;
-        } else {
-            subjectType = 2;
-        }
+        return getSubjectAlts(cert, isIPAddress(hostname) ? IP_SUBJECT_ALT : DNS_SUBJECT_ALT);
+    }
 
+    /**
+     * Returns the subject alternative names of the given type,
+     * {@link #DNS_SUBJECT_ALT} or {@link #IP_SUBJECT_ALT}.
+     */
+    static String[] getSubjectAlts(final X509Certificate cert, int subjectType) {
         LinkedList<String> subjectAltList = new LinkedList<String>();
         Collection<List<?>> c = null;
         try {
@@ -354,7 +395,7 @@ public abstract class AbstractVerifier implements X509HostnameVerifier {
         return count;
     }
 
-    private static boolean isIPAddress(final String hostname) {
+    static boolean isIPAddress(final String hostname) {
         return hostname != null &&
             (InetAddressUtils.isIPv4Address(hostname) ||
                     InetAddressUtils.isIPv6Address(hostname));
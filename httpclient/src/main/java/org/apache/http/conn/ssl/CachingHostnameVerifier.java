@@ -0,0 +1,175 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.conn.ssl;
+
+import java.io.IOException;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+
+import org.apache.http.annotation.GuardedBy;
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * {@link X509HostnameVerifier} that caches the common names and subject
+ * alternative names extracted from server certificates, so that they are
+ * not parsed again each time a connection to the same server is verified.
+ * Certificates are keyed by their encoded form, so a certificate presented
+ * again in a new handshake hits the cache. Host names are matched against
+ * the cached names by the given verifier.
+ *
+ * @since 4.3
+ */
+@ThreadSafe
+public class CachingHostnameVerifier implements X509HostnameVerifier {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    static class CertificateNames {
+
+        final String[] cns;
+        final String[] dnsSubjectAlts;
+        final String[] ipSubjectAlts;
+
+        CertificateNames(final X509Certificate cert) {
+            super();
+            this.cns = AbstractVerifier.getCNs(cert);
+            this.dnsSubjectAlts = AbstractVerifier.getSubjectAlts(cert, AbstractVerifier.DNS_SUBJECT_ALT);
+            this.ipSubjectAlts = AbstractVerifier.getSubjectAlts(cert, AbstractVerifier.IP_SUBJECT_ALT);
+        }
+
+    }
+
+    private final X509HostnameVerifier verifier;
+
+    @GuardedBy("this")
+    private final Map<X509Certificate, CertificateNames> cache;
+
+    private volatile long hits;
+    private volatile long misses;
+
+    /**
+     * @param verifier the verifier used to match host names.
+     * @param maxEntries the maximum number of certificates to cache names of.
+     */
+    public CachingHostnameVerifier(final X509HostnameVerifier verifier, final int maxEntries) {
+        super();
+        if (verifier == null) {
+            throw new IllegalArgumentException("Hostname verifier may not be null");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries may not be negative or zero");
+        }
+        this.verifier = verifier;
+        this.cache = new LinkedHashMap<X509Certificate, CertificateNames>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<X509Certificate, CertificateNames> eldest) {
+                return size() > maxEntries;
+            }
+
+        };
+    }
+
+    public CachingHostnameVerifier(final X509HostnameVerifier verifier) {
+        this(verifier, DEFAULT_MAX_ENTRIES);
+    }
+
+    CertificateNames getNames(final X509Certificate cert) {
+        synchronized (this) {
+            CertificateNames names = this.cache.get(cert);
+            if (names != null) {
+                this.hits++;
+                return names;
+            }
+        }
+        // Parse outside the lock, a concurrent miss at worst parses twice
+        CertificateNames names = new CertificateNames(cert);
+        synchronized (this) {
+            this.misses++;
+            this.cache.put(cert, names);
+        }
+        return names;
+    }
+
+    public boolean verify(final String host, final SSLSession session) {
+        try {
+            Certificate[] certs = session.getPeerCertificates();
+            verify(host, (X509Certificate) certs[0]);
+            return true;
+        } catch (SSLException ex) {
+            return false;
+        }
+    }
+
+    public void verify(final String host, final SSLSocket ssl) throws IOException {
+        if (host == null) {
+            throw new NullPointerException("host to verify is null");
+        }
+        verify(host, AbstractVerifier.getPeerCertificate(ssl));
+    }
+
+    public void verify(final String host, final X509Certificate cert) throws SSLException {
+        CertificateNames names = getNames(cert);
+        verify(host, names.cns, AbstractVerifier.isIPAddress(host) ?
+                names.ipSubjectAlts : names.dnsSubjectAlts);
+    }
+
+    public void verify(
+            final String host,
+            final String[] cns,
+            final String[] subjectAlts) throws SSLException {
+        this.verifier.verify(host, cns, subjectAlts);
+    }
+
+    /**
+     * Returns the number of verifications served from the cache.
+     */
+    public long getHitCount() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of certificates whose names had to be parsed.
+     */
+    public long getMissCount() {
+        return this.misses;
+    }
+
+    @Override
+    public String toString() {
+        return "CACHING(" + this.verifier + ")";
+    }
+
+}
@@ -42,6 +42,8 @@ import org.apache.http.params.HttpParams;
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
@@ -63,6 +65,9 @@ import java.security.NoSuchProviderException;
 import java.security.SecureRandom;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Layered socket factory for TLS/SSL connections.
@@ -100,6 +105,15 @@ import java.security.cert.CertificateException;
  * The target HTTPS server will in its turn verify the certificate presented
  * by the client in order to establish client's authenticity
  * <p>
+ * SSL sessions negotiated by sockets of this factory are cached by the client
+ * session context of the SSL context per target host and port, so that
+ * subsequent connections to the same host and port can resume the session
+ * with an abbreviated handshake. The size and timeout of the session cache
+ * can be set with {@link #setSessionCacheSize(int)} and
+ * {@link #setSessionTimeout(int)}. The number of full and resumed handshakes
+ * is reported by {@link #getFullHandshakeCount()} and
+ * {@link #getResumedHandshakeCount()}.
+ * <p>
  * Use the following sequence of actions to generate a key-store file
  * </p>
  *   <ul>
@@ -208,6 +222,10 @@ public class SSLSocketFactory implements SchemeLayeredSocketFactory,
     private final HostNameResolver nameResolver;
     // TODO: make final
     private volatile X509HostnameVerifier hostnameVerifier;
+    private final SSLSessionContext sessionContext;
+    private final AtomicLong fullHandshakes;
+    private final AtomicLong resumedHandshakes;
+    private final Map<SSLSession, Boolean> seenSessions;
 
     private static SSLContext createSSLContext(
             String algorithm,
@@ -473,6 +491,10 @@ public class SSLSocketFactory implements SchemeLayeredSocketFactory,
         this.socketfactory = sslContext.getSocketFactory();
         this.hostnameVerifier = BROWSER_COMPATIBLE_HOSTNAME_VERIFIER;
         this.nameResolver = nameResolver;
+        this.sessionContext = sslContext.getClientSessionContext();
+        this.fullHandshakes = new AtomicLong();
+        this.resumedHandshakes = new AtomicLong();
+        this.seenSessions = new WeakHashMap<SSLSession, Boolean>();
     }
 
     /**
@@ -487,6 +509,10 @@ public class SSLSocketFactory implements SchemeLayeredSocketFactory,
         this.socketfactory = sslContext.getSocketFactory();
         this.hostnameVerifier = hostnameVerifier;
         this.nameResolver = null;
+        this.sessionContext = sslContext.getClientSessionContext();
+        this.fullHandshakes = new AtomicLong();
+        this.resumedHandshakes = new AtomicLong();
+        this.seenSessions = new WeakHashMap<SSLSession, Boolean>();
     }
 
     /**
@@ -501,6 +527,10 @@ public class SSLSocketFactory implements SchemeLayeredSocketFactory,
         this.socketfactory = socketfactory;
         this.hostnameVerifier = hostnameVerifier;
         this.nameResolver = null;
+        this.sessionContext = null;
+        this.fullHandshakes = new AtomicLong();
+        this.resumedHandshakes = new AtomicLong();
+        this.seenSessions = new WeakHashMap<SSLSession, Boolean>();
     }
 
     /**
@@ -577,6 +607,7 @@ public class SSLSocketFactory implements SchemeLayeredSocketFactory,
                 throw iox;
             }
         }
+        handshakeCompleted(sslsock);
         return sslsock;
     }
 
@@ -628,6 +659,7 @@ public class SSLSocketFactory implements SchemeLayeredSocketFactory,
             this.hostnameVerifier.verify(host, sslSocket);
         }
         // verifyHostName() didn't blowup - good!
+        handshakeCompleted(sslSocket);
         return sslSocket;
     }
 
@@ -651,6 +683,7 @@ public class SSLSocketFactory implements SchemeLayeredSocketFactory,
             this.hostnameVerifier.verify(host, sslSocket);
         }
         // verifyHostName() didn't blowup - good!
+        handshakeCompleted(sslSocket);
         return sslSocket;
     }
 
@@ -666,6 +699,107 @@ public class SSLSocketFactory implements SchemeLayeredSocketFactory,
         return this.hostnameVerifier;
     }
 
+    private SSLSessionContext getSessionContext() {
+        if (this.sessionContext == null) {
+            throw new IllegalStateException("SSL session cache is not available");
+        }
+        return this.sessionContext;
+    }
+
+    /**
+     * Sets the maximum number of SSL sessions cached for resumption.
+     * <code>0</code> means there is no limit.
+     *
+     * @throws IllegalStateException if the factory has been created from
+     *   a {@link javax.net.ssl.SSLSocketFactory} rather than an
+     *   {@link SSLContext}.
+     *
+     * @since 4.3
+     */
+    public void setSessionCacheSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Session cache size may not be negative");
+        }
+        getSessionContext().setSessionCacheSize(size);
+    }
+
+    /**
+     * @since 4.3
+     */
+    public int getSessionCacheSize() {
+        return getSessionContext().getSessionCacheSize();
+    }
+
+    /**
+     * Sets the time in seconds cached SSL sessions can be resumed for.
+     * <code>0</code> means there is no limit.
+     *
+     * @throws IllegalStateException if the factory has been created from
+     *   a {@link javax.net.ssl.SSLSocketFactory} rather than an
+     *   {@link SSLContext}.
+     *
+     * @since 4.3
+     */
+    public void setSessionTimeout(int seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("Session timeout may not be negative");
+        }
+        getSessionContext().setSessionTimeout(seconds);
+    }
+
+    /**
+     * @since 4.3
+     */
+    public int getSessionTimeout() {
+        return getSessionContext().getSessionTimeout();
+    }
+
+    /**
+     * Returns the number of handshakes that negotiated a new SSL session.
+     *
+     * @since 4.3
+     */
+    public long getFullHandshakeCount() {
+        return this.fullHandshakes.get();
+    }
+
+    /**
+     * Returns the number of handshakes that resumed a cached SSL session.
+     *
+     * @since 4.3
+     */
+    public long getResumedHandshakeCount() {
+        return this.resumedHandshakes.get();
+    }
+
+    /**
+     * Counts the handshake of the given socket as full or resumed. A session
+     * already negotiated by an earlier handshake of this factory has been
+     * resumed from the cache. Triggers the handshake if it has not taken
+     * place yet.
+     */
+    private void handshakeCompleted(final SSLSocket socket) {
+        SSLSession session = socket.getSession();
+        if (session == null || !session.isValid()) {
+            return;
+        }
+        boolean resumed;
+        byte[] id = session.getId();
+        if (id == null || id.length == 0) {
+            // Sessions without an ID cannot be resumed
+            resumed = false;
+        } else {
+            synchronized (this.seenSessions) {
+                resumed = this.seenSessions.put(session, Boolean.TRUE) != null;
+            }
+        }
+        if (resumed) {
+            this.resumedHandshakes.incrementAndGet();
+        } else {
+            this.fullHandshakes.incrementAndGet();
+        }
+    }
+
     /**
      * @deprecated Use {@link #connectSocket(Socket, InetSocketAddress, InetSocketAddress, HttpParams)}
      */
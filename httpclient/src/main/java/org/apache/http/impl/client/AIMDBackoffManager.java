@@ -25,9 +25,10 @@
  */
 package org.apache.http.impl.client;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.http.annotation.ThreadSafe;
 import org.apache.http.client.BackoffManager;
 import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.pool.ConnPoolControl;
@@ -50,17 +51,21 @@ import org.apache.http.pool.ConnPoolControl;
  * capacity among clients (fairness) to happen faster, at the
  * expense of having more server capacity unused in the short term.</p>
  *
+ * <p>Adjustments are coordinated per route without locking. Of several
+ * threads reporting on the same route at the same time only one adjusts
+ * the pool size, while the others fall within its cooldown period.</p>
+ *
  * @since 4.2
  */
+@ThreadSafe
 public class AIMDBackoffManager implements BackoffManager {
 
     private final ConnPoolControl<HttpRoute> connPerRoute;
     private final Clock clock;
-    private final Map<HttpRoute,Long> lastRouteProbes;
-    private final Map<HttpRoute,Long> lastRouteBackoffs;
-    private long coolDown = 5 * 1000L;
-    private double backoffFactor = 0.5;
-    private int cap = 2; // Per RFC 2616 sec 8.1.4
+    private final ConcurrentHashMap<HttpRoute, RouteState> routeStates;
+    private volatile long coolDown = 5 * 1000L;
+    private volatile double backoffFactor = 0.5;
+    private volatile int cap = 2; // Per RFC 2616 sec 8.1.4
 
     /**
      * Creates an <code>AIMDBackoffManager</code> to manage
@@ -76,19 +81,30 @@ public class AIMDBackoffManager implements BackoffManager {
     AIMDBackoffManager(ConnPoolControl<HttpRoute> connPerRoute, Clock clock) {
         this.clock = clock;
         this.connPerRoute = connPerRoute;
-        this.lastRouteProbes = new HashMap<HttpRoute,Long>();
-        this.lastRouteBackoffs = new HashMap<HttpRoute,Long>();
+        this.routeStates = new ConcurrentHashMap<HttpRoute, RouteState>();
     }
 
-    public void backOff(HttpRoute route) {
-        synchronized(connPerRoute) {
-            int curr = connPerRoute.getMaxPerRoute(route);
-            Long lastUpdate = getLastUpdate(lastRouteBackoffs, route);
-            long now = clock.getCurrentTime();
-            if (now - lastUpdate.longValue() < coolDown) return;
-            connPerRoute.setMaxPerRoute(route, getBackedOffPoolSize(curr));
-            lastRouteBackoffs.put(route, Long.valueOf(now));
+    private RouteState getRouteState(final HttpRoute route) {
+        RouteState state = this.routeStates.get(route);
+        if (state == null) {
+            RouteState newState = new RouteState();
+            state = this.routeStates.putIfAbsent(route, newState);
+            if (state == null) {
+                state = newState;
+            }
         }
+        return state;
+    }
+
+    public void backOff(HttpRoute route) {
+        RouteState state = getRouteState(route);
+        long lastBackoff = state.lastBackoff.get();
+        long now = clock.getCurrentTime();
+        if (now - lastBackoff < coolDown) return;
+        // Only the thread that claims the cooldown period adjusts the pool
+        if (!state.lastBackoff.compareAndSet(lastBackoff, now)) return;
+        int curr = connPerRoute.getMaxPerRoute(route);
+        connPerRoute.setMaxPerRoute(route, getBackedOffPoolSize(curr));
     }
 
     private int getBackedOffPoolSize(int curr) {
@@ -97,25 +113,21 @@ public class AIMDBackoffManager implements BackoffManager {
     }
 
     public void probe(HttpRoute route) {
-        synchronized(connPerRoute) {
-            int curr = connPerRoute.getMaxPerRoute(route);
-            int max = (curr >= cap) ? cap : curr + 1;
-            Long lastProbe = getLastUpdate(lastRouteProbes, route);
-            Long lastBackoff = getLastUpdate(lastRouteBackoffs, route);
-            long now = clock.getCurrentTime();
-            if (now - lastProbe.longValue() < coolDown || now - lastBackoff.longValue() < coolDown)
-                return;
-            connPerRoute.setMaxPerRoute(route, max);
-            lastRouteProbes.put(route, Long.valueOf(now));
+        RouteState state = getRouteState(route);
+        long lastProbe = state.lastProbe.get();
+        long lastBackoff = state.lastBackoff.get();
+        long now = clock.getCurrentTime();
+        if (now - lastProbe < coolDown || now - lastBackoff < coolDown) return;
+        if (!state.lastProbe.compareAndSet(lastProbe, now)) return;
+        int curr = connPerRoute.getMaxPerRoute(route);
+        int max = (curr >= cap) ? cap : curr + 1;
+        connPerRoute.setMaxPerRoute(route, max);
+        if (state.lastBackoff.get() != lastBackoff) {
+            // A concurrent back-off may have been overwritten; back-off wins
+            connPerRoute.setMaxPerRoute(route, getBackedOffPoolSize(curr));
         }
     }
 
-    private Long getLastUpdate(Map<HttpRoute,Long> updates, HttpRoute route) {
-        Long lastUpdate = updates.get(route);
-        if (lastUpdate == null) lastUpdate = Long.valueOf(0L);
-        return lastUpdate;
-    }
-
     /**
      * Sets the factor to use when backing off; the new
      * per-host limit will be roughly the current max times
@@ -158,4 +170,14 @@ public class AIMDBackoffManager implements BackoffManager {
         this.cap = cap;
     }
 
+    /**
+     * Times of the last adjustments of a single route.
+     */
+    private static class RouteState {
+
+        final AtomicLong lastProbe = new AtomicLong(0L);
+        final AtomicLong lastBackoff = new AtomicLong(0L);
+
+    }
+
 }
@@ -0,0 +1,311 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.http.annotation.GuardedBy;
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.client.LatencyAwareBackoffManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+
+/**
+ * <p>The <code>GradientBackoffManager</code> adapts the maximum number of
+ * connections allowed to a given host to the observed response latency,
+ * in the style of gradient based concurrency limiters. For each route it
+ * tracks a short term and a long term average of the response time. While
+ * the short term average stays within the tolerated ratio of the long term
+ * average and requests have to wait for connections, the limit grows by
+ * roughly the square root of its current value per adjustment. Once
+ * responses slow down the limit shrinks in proportion to the latency
+ * gradient. Backoff signals decrease the limit multiplicatively, as with
+ * {@link AIMDBackoffManager}.</p>
+ *
+ * <p>The limit of a route is adjusted at most once per cooldown period
+ * and never exceeds the per host connection cap, which defaults to
+ * the maximum total number of connections of the pool.</p>
+ *
+ * <p>Latency measurements are only available when the manager is used
+ * with the request execution chain built by
+ * {@link org.apache.http.impl.client.builder.HttpClientBuilder}. Otherwise
+ * the manager falls back to additive increase on probe.</p>
+ *
+ * @since 4.3
+ */
+@ThreadSafe
+public class GradientBackoffManager implements LatencyAwareBackoffManager {
+
+    private final ConnPoolControl<HttpRoute> connPerRoute;
+    private final Clock clock;
+    private final ConcurrentHashMap<HttpRoute, RouteLimit> limits;
+    private volatile long coolDown = 1000L;
+    private volatile double backoffFactor = 0.5;
+    private volatile double tolerance = 1.5;
+    private volatile double smoothing = 0.2;
+    private volatile long leaseTimeThreshold = 1000000L;
+    private volatile int cap = -1;
+
+    /**
+     * Creates a <code>GradientBackoffManager</code> to manage
+     * per-host connection pool sizes represented by the
+     * given {@link ConnPoolControl}.
+     * @param connPerRoute per-host routing maximums to
+     *   be managed
+     */
+    public GradientBackoffManager(final ConnPoolControl<HttpRoute> connPerRoute) {
+        this(connPerRoute, new SystemClock());
+    }
+
+    GradientBackoffManager(final ConnPoolControl<HttpRoute> connPerRoute, final Clock clock) {
+        super();
+        if (connPerRoute == null) {
+            throw new IllegalArgumentException("Connection pool control may not be null");
+        }
+        this.connPerRoute = connPerRoute;
+        this.clock = clock;
+        this.limits = new ConcurrentHashMap<HttpRoute, RouteLimit>();
+    }
+
+    private RouteLimit getLimit(final HttpRoute route) {
+        RouteLimit limit = this.limits.get(route);
+        if (limit == null) {
+            RouteLimit newLimit = new RouteLimit(route);
+            limit = this.limits.putIfAbsent(route, newLimit);
+            if (limit == null) {
+                limit = newLimit;
+            }
+        }
+        return limit;
+    }
+
+    private int getCap() {
+        int cap = this.cap;
+        return cap > 0 ? cap : this.connPerRoute.getMaxTotal();
+    }
+
+    public void backOff(final HttpRoute route) {
+        getLimit(route).backOff();
+    }
+
+    public void probe(final HttpRoute route) {
+        getLimit(route).probe();
+    }
+
+    public void probe(final HttpRoute route, long responseTime, long leaseTime) {
+        getLimit(route).sample(responseTime, leaseTime);
+    }
+
+    /**
+     * Returns the current response time averages of the given route
+     * in nanoseconds, short term first, or <code>null</code> if no
+     * response has been recorded for the route yet.
+     */
+    public double[] getResponseTimes(final HttpRoute route) {
+        RouteLimit limit = this.limits.get(route);
+        return limit != null ? limit.getResponseTimes() : null;
+    }
+
+    /**
+     * Sets the factor to use when backing off; the new
+     * per-host limit will be roughly the current max times
+     * this factor. Pool sizes are never decreased below 1.
+     * Defaults to 0.5.
+     * @param d must be between 0.0 and 1.0, exclusive.
+     */
+    public void setBackoffFactor(double d) {
+        if (d <= 0.0 || d >= 1.0) {
+            throw new IllegalArgumentException("backoffFactor must be 0.0 < f < 1.0");
+        }
+        this.backoffFactor = d;
+    }
+
+    /**
+     * Sets the amount of time, in milliseconds, to wait between
+     * adjustments in pool sizes for a given host, to allow
+     * enough time for the adjustments to take effect. Defaults
+     * to 1000L (1 second).
+     * @param l must be positive
+     */
+    public void setCooldownMillis(long l) {
+        if (l <= 0) {
+            throw new IllegalArgumentException("cooldownMillis must be positive");
+        }
+        this.coolDown = l;
+    }
+
+    /**
+     * Sets the absolute maximum per-host connection pool size to
+     * grow up to; defaults to the maximum total number of connections.
+     * @param cap must be >= 1
+     */
+    public void setPerHostConnectionCap(int cap) {
+        if (cap < 1) {
+            throw new IllegalArgumentException("perHostConnectionCap must be >= 1");
+        }
+        this.cap = cap;
+    }
+
+    /**
+     * Sets the ratio by which the short term response time may exceed
+     * the long term response time before the limit is decreased.
+     * Defaults to 1.5.
+     * @param d must be >= 1.0
+     */
+    public void setTolerance(double d) {
+        if (d < 1.0) {
+            throw new IllegalArgumentException("tolerance must be >= 1.0");
+        }
+        this.tolerance = d;
+    }
+
+    /**
+     * Sets the weight of a new limit estimate relative to the current limit.
+     * Lower values lead to more stable limits but slower reaction times.
+     * Defaults to 0.2.
+     * @param d must be between 0.0 exclusive and 1.0 inclusive.
+     */
+    public void setSmoothing(double d) {
+        if (d <= 0.0 || d > 1.0) {
+            throw new IllegalArgumentException("smoothing must be 0.0 < f <= 1.0");
+        }
+        this.smoothing = d;
+    }
+
+    /**
+     * Sets the average time, in milliseconds, requests need to spend waiting
+     * for a connection for the limit to be considered too low. The limit is
+     * only increased if there is such demand for connections or requests
+     * are queued in the pool. Defaults to 1 millisecond.
+     * @param l must not be negative
+     */
+    public void setLeaseTimeThreshold(long l) {
+        if (l < 0) {
+            throw new IllegalArgumentException("leaseTimeThreshold may not be negative");
+        }
+        this.leaseTimeThreshold = l * 1000000L;
+    }
+
+    /**
+     * Limit state of a single route.
+     */
+    private class RouteLimit {
+
+        private static final double SHORT_WEIGHT = 0.1;
+        private static final double LONG_WEIGHT = 0.01;
+
+        private final HttpRoute route;
+        @GuardedBy("this")
+        private double limit;
+        @GuardedBy("this")
+        private double shortRtt;
+        @GuardedBy("this")
+        private double longRtt;
+        @GuardedBy("this")
+        private double leaseTime;
+        @GuardedBy("this")
+        private long lastUpdate;
+        @GuardedBy("this")
+        private long lastBackoff;
+
+        RouteLimit(final HttpRoute route) {
+            super();
+            this.route = route;
+        }
+
+        synchronized void backOff() {
+            long now = clock.getCurrentTime();
+            if (now - this.lastBackoff < coolDown) {
+                return;
+            }
+            int curr = connPerRoute.getMaxPerRoute(this.route);
+            int max = curr <= 1 ? 1 : (int) Math.floor(backoffFactor * curr);
+            this.limit = max;
+            this.lastBackoff = now;
+            connPerRoute.setMaxPerRoute(this.route, max);
+        }
+
+        synchronized void probe() {
+            long now = clock.getCurrentTime();
+            if (now - this.lastUpdate < coolDown || now - this.lastBackoff < coolDown) {
+                return;
+            }
+            int curr = connPerRoute.getMaxPerRoute(this.route);
+            int cap = getCap();
+            int max = curr >= cap ? cap : curr + 1;
+            this.limit = max;
+            this.lastUpdate = now;
+            connPerRoute.setMaxPerRoute(this.route, max);
+        }
+
+        synchronized void sample(long responseTime, long leaseTime) {
+            double rtt = Math.max(responseTime, 1);
+            if (this.longRtt == 0) {
+                this.shortRtt = rtt;
+                this.longRtt = rtt;
+                this.leaseTime = leaseTime;
+            } else {
+                this.shortRtt += (rtt - this.shortRtt) * SHORT_WEIGHT;
+                this.longRtt += (rtt - this.longRtt) * LONG_WEIGHT;
+                this.leaseTime += (leaseTime - this.leaseTime) * SHORT_WEIGHT;
+                // Let the baseline follow a sustained drop in latency
+                if (this.longRtt > 2 * this.shortRtt) {
+                    this.longRtt *= 0.95;
+                }
+            }
+            long now = clock.getCurrentTime();
+            if (now - this.lastUpdate < coolDown || now - this.lastBackoff < coolDown) {
+                return;
+            }
+            this.lastUpdate = now;
+            int curr = connPerRoute.getMaxPerRoute(this.route);
+            if (this.limit == 0) {
+                this.limit = curr;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * this.longRtt / this.shortRtt));
+            double estimate = this.limit * gradient;
+            if (gradient == 1.0 && (this.leaseTime >= leaseTimeThreshold ||
+                    connPerRoute.getStats(this.route).getPending() > 0)) {
+                estimate += Math.sqrt(this.limit);
+            }
+            double s = smoothing;
+            this.limit = Math.max(1.0, Math.min(getCap(), this.limit * (1 - s) + estimate * s));
+            int max = (int) Math.round(this.limit);
+            if (max != curr) {
+                connPerRoute.setMaxPerRoute(this.route, max);
+            }
+        }
+
+        synchronized double[] getResponseTimes() {
+            if (this.longRtt == 0) {
+                return null;
+            }
+            return new double[] { this.shortRtt, this.longRtt };
+        }
+
+    }
+
+}
@@ -34,8 +34,10 @@ import org.apache.http.HttpException;
 import org.apache.http.annotation.ThreadSafe;
 import org.apache.http.client.BackoffManager;
 import org.apache.http.client.ConnectionBackoffStrategy;
+import org.apache.http.client.LatencyAwareBackoffManager;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpExecutionAware;
+import org.apache.http.client.protocol.ClientContext;
 import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.protocol.HttpContext;
 
@@ -83,6 +85,7 @@ class BackoffStrategyExec implements ClientExecChain {
             throw new IllegalArgumentException("HTTP context may not be null");
         }
         CloseableHttpResponse out = null;
+        long start = System.nanoTime();
         try {
             out = this.requestExecutor.execute(route, request, context, execAware);
         } catch (Exception ex) {
@@ -99,6 +102,11 @@ class BackoffStrategyExec implements ClientExecChain {
         }
         if (this.connectionBackoffStrategy.shouldBackoff(out)) {
             this.backoffManager.backOff(route);
+        } else if (this.backoffManager instanceof LatencyAwareBackoffManager) {
+            Long leaseTime = (Long) context.getAttribute(ClientContext.CONNECTION_LEASE_TIME);
+            long wait = leaseTime != null ? leaseTime.longValue() : 0;
+            ((LatencyAwareBackoffManager) this.backoffManager).probe(
+                    route, System.nanoTime() - start - wait, wait);
         } else {
             this.backoffManager.probe(route);
         }
@@ -27,6 +27,8 @@
 
 package org.apache.http.impl.client.builder;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.net.ProxySelector;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -34,6 +36,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.http.ConnectionReuseStrategy;
 import org.apache.http.HttpRequestInterceptor;
@@ -86,10 +89,13 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.NoopUserTokenHandler;
 import org.apache.http.impl.client.ProxyAuthenticationStrategy;
 import org.apache.http.impl.client.TargetAuthenticationStrategy;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.DefaultClientConnectionFactory;
 import org.apache.http.impl.conn.DefaultHttpRoutePlanner;
+import org.apache.http.impl.conn.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.impl.conn.ProxySelectorRoutePlanner;
 import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.impl.conn.WireLogSampler;
 import org.apache.http.impl.cookie.BestMatchSpecFactory;
 import org.apache.http.impl.cookie.BrowserCompatSpecFactory;
 import org.apache.http.impl.cookie.IgnoreSpecFactory;
@@ -186,6 +192,8 @@ import org.apache.http.util.VersionInfo;
 @NotThreadSafe
 public class HttpClientBuilder {
 
+    private static final long DEFAULT_EVICTION_INTERVAL = 10000;
+
     private HttpRequestExecutor requestExec;
     private SchemeLayeredSocketFactory sslSocketFactory;
     private HttpClientConnectionManager connManager;
@@ -228,6 +236,16 @@ public class HttpClientBuilder {
 
     private int maxConnTotal = 0;
     private int maxConnPerRoute = 0;
+    private int validateAfterInactivity = 0;
+    private int connectAttemptDelay = 0;
+    private int maxPendingTotal = 0;
+    private int maxPendingPerRoute = 0;
+    private WireLogSampler wireLogSampler;
+
+    private boolean evictExpiredConnections;
+    private boolean evictIdleConnections;
+    private long maxIdleTime;
+    private TimeUnit maxIdleTimeUnit;
 
     public static HttpClientBuilder create() {
         return new HttpClientBuilder();
@@ -262,6 +280,89 @@ public class HttpClientBuilder {
         return this;
     }
 
+    /**
+     * Limits the number of requests waiting for a connection from the default
+     * connection pool in total. Requests in excess of the limit fail
+     * immediately with {@link org.apache.http.conn.ConnectionRequestRejectedException}.
+     *
+     * @see PoolingHttpClientConnectionManager#setMaxPendingTotal(int)
+     */
+    public final HttpClientBuilder setMaxPendingTotal(int maxPendingTotal) {
+        this.maxPendingTotal = maxPendingTotal;
+        return this;
+    }
+
+    /**
+     * Limits the number of requests waiting for a connection from the default
+     * connection pool per route.
+     *
+     * @see PoolingHttpClientConnectionManager#setMaxPendingPerRoute(int)
+     */
+    public final HttpClientBuilder setMaxPendingPerRoute(int maxPendingPerRoute) {
+        this.maxPendingPerRoute = maxPendingPerRoute;
+        return this;
+    }
+
+    /**
+     * Restricts wire logging by connections of the default connection manager
+     * to the exchanges selected by the given sampler.
+     */
+    public final HttpClientBuilder setWireLogSampler(final WireLogSampler wireLogSampler) {
+        this.wireLogSampler = wireLogSampler;
+        return this;
+    }
+
+    /**
+     * Enables validation of persistent connections leased from the default
+     * connection pool after the given period of inactivity in milliseconds.
+     * If default HTTP parameters are used the per request stale connection
+     * check is disabled in favor of the pool-level validation.
+     */
+    public final HttpClientBuilder setValidateAfterInactivity(int validateAfterInactivity) {
+        this.validateAfterInactivity = validateAfterInactivity;
+        return this;
+    }
+
+    /**
+     * Enables staggered parallel connection attempts to hosts resolving
+     * to multiple addresses for the default connection manager.
+     *
+     * @see PoolingHttpClientConnectionManager#setConnectAttemptDelay(int)
+     */
+    public final HttpClientBuilder setConnectAttemptDelay(int connectAttemptDelay) {
+        this.connectAttemptDelay = connectAttemptDelay;
+        return this;
+    }
+
+    /**
+     * Makes the client instance use a background thread to evict expired
+     * connections from the connection pool. The thread is shut down when
+     * the client is closed.
+     */
+    public final HttpClientBuilder evictExpiredConnections() {
+        this.evictExpiredConnections = true;
+        return this;
+    }
+
+    /**
+     * Makes the client instance use a background thread to evict expired
+     * connections and connections idle longer than <code>maxIdleTime</code>
+     * from the connection pool. The thread is shut down when the client
+     * is closed.
+     */
+    public final HttpClientBuilder evictIdleConnections(long maxIdleTime, final TimeUnit maxIdleTimeUnit) {
+        if (maxIdleTimeUnit == null) {
+            throw new IllegalArgumentException("Time unit may not be null");
+        }
+        if (maxIdleTime <= 0) {
+            throw new IllegalArgumentException("Max idle time may not be negative or zero");
+        }
+        this.evictIdleConnections = true;
+        this.maxIdleTime = maxIdleTime;
+        this.maxIdleTimeUnit = maxIdleTimeUnit;
+        return this;
+    }
+
     public final HttpClientBuilder setConnectionReuseStrategy(
             final ConnectionReuseStrategy reuseStrategy) {
         this.reuseStrategy = reuseStrategy;
@@ -454,7 +555,9 @@ public class HttpClientBuilder {
                 schemeRegistry.register(new Scheme("https", 443, sslSocketFactory));
             }
             PoolingHttpClientConnectionManager poolingmgr = new PoolingHttpClientConnectionManager(
-                    schemeRegistry);
+                    schemeRegistry, null,
+                    new DefaultClientConnectionFactory(wireLogSampler),
+                    -1, TimeUnit.MILLISECONDS);
             if (systemProperties) {
                 String s = System.getProperty("http.keepAlive");
                 if ("true".equalsIgnoreCase(s)) {
@@ -471,6 +574,18 @@ public class HttpClientBuilder {
                     poolingmgr.setDefaultMaxPerRoute(maxConnPerRoute);
                 }
             }
+            if (validateAfterInactivity > 0) {
+                poolingmgr.setValidateAfterInactivity(validateAfterInactivity);
+            }
+            if (connectAttemptDelay > 0) {
+                poolingmgr.setConnectAttemptDelay(connectAttemptDelay);
+            }
+            if (maxPendingTotal > 0) {
+                poolingmgr.setMaxPendingTotal(maxPendingTotal);
+            }
+            if (maxPendingPerRoute > 0) {
+                poolingmgr.setMaxPendingPerRoute(maxPendingPerRoute);
+            }
             connManager = poolingmgr;
         }
         ConnectionReuseStrategy reuseStrategy = this.reuseStrategy;
@@ -602,6 +717,9 @@ public class HttpClientBuilder {
         if (params == null) {
             params = new SyncBasicHttpParams();
             setDefaultHttpParams(params);
+            if (this.connManager == null && validateAfterInactivity > 0) {
+                HttpConnectionParams.setStaleCheckingEnabled(params, false);
+            }
         }
 
         CookieSpecRegistry cookieSpecRegistry = new CookieSpecRegistry();
@@ -639,6 +757,29 @@ public class HttpClientBuilder {
             defaultCredentialsProvider = new BasicCredentialsProvider();
         }
 
+        List<Closeable> closeables = null;
+        if (evictExpiredConnections || evictIdleConnections) {
+            final IdleConnectionEvictor connectionEvictor = evictIdleConnections ?
+                    new IdleConnectionEvictor(connManager,
+                            maxIdleTime, maxIdleTimeUnit, maxIdleTime, maxIdleTimeUnit) :
+                    new IdleConnectionEvictor(connManager,
+                            DEFAULT_EVICTION_INTERVAL, TimeUnit.MILLISECONDS, -1, null);
+            closeables = new ArrayList<Closeable>(1);
+            closeables.add(new Closeable() {
+
+                public void close() throws IOException {
+                    connectionEvictor.shutdown();
+                    try {
+                        connectionEvictor.awaitTermination(1, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+            });
+            connectionEvictor.start();
+        }
+
         return new InternalHttpClient(
                 execChain,
                 connManager,
@@ -647,7 +788,8 @@ public class HttpClientBuilder {
                 authSchemeRegistry,
                 defaultCookieStore,
                 defaultCredentialsProvider,
-                params);
+                params,
+                closeables);
     }
 
     static class ListBuilder<E> {
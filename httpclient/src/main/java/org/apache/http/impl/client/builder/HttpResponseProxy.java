@@ -28,29 +28,31 @@
 package org.apache.http.impl.client.builder;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
+import java.util.Locale;
 
+import org.apache.http.Header;
+import org.apache.http.HeaderIterator;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.StatusLine;
 import org.apache.http.annotation.NotThreadSafe;
 import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.params.HttpParams;
 
 /**
- * A proxy class for {@link HttpResponse} that can be used to release client connection
+ * A wrapper class for {@link HttpResponse} that can be used to release client connection
  * associated with the original response.
  *
  * @since 4.3
  */
 @NotThreadSafe
-class HttpResponseProxy implements InvocationHandler {
+final class HttpResponseProxy implements CloseableHttpResponse {
 
     private final HttpResponse original;
     private final ConnectionReleaseTriggerImpl connReleaseTrigger;
 
-    private HttpResponseProxy(
+    HttpResponseProxy(
             final HttpResponse original,
             final ConnectionReleaseTriggerImpl connReleaseTrigger) {
         super();
@@ -68,33 +70,120 @@ class HttpResponseProxy implements InvocationHandler {
         }
     }
 
-    public Object invoke(
-            final Object proxy, final Method method, final Object[] args) throws Throwable {
-        String mname = method.getName();
-        if (mname.equals("close")) {
-            close();
-            return null;
-        } else {
-            try {
-                return method.invoke(original, args);
-            } catch (InvocationTargetException ex) {
-                Throwable cause = ex.getCause();
-                if (cause != null) {
-                    throw cause;
-                } else {
-                    throw ex;
-                }
-            }
-        }
+    public StatusLine getStatusLine() {
+        return this.original.getStatusLine();
     }
 
-    public static CloseableHttpResponse newProxy(
-            final HttpResponse original,
-            final ConnectionReleaseTriggerImpl connReleaseTrigger) {
-        return (CloseableHttpResponse) Proxy.newProxyInstance(
-                HttpResponseProxy.class.getClassLoader(),
-                new Class<?>[] { CloseableHttpResponse.class },
-                new HttpResponseProxy(original, connReleaseTrigger));
+    public void setStatusLine(final StatusLine statusline) {
+        this.original.setStatusLine(statusline);
+    }
+
+    public void setStatusLine(final ProtocolVersion ver, int code) {
+        this.original.setStatusLine(ver, code);
+    }
+
+    public void setStatusLine(final ProtocolVersion ver, int code, final String reason) {
+        this.original.setStatusLine(ver, code, reason);
+    }
+
+    public void setStatusCode(int code) throws IllegalStateException {
+        this.original.setStatusCode(code);
+    }
+
+    public void setReasonPhrase(final String reason) throws IllegalStateException {
+        this.original.setReasonPhrase(reason);
+    }
+
+    public HttpEntity getEntity() {
+        return this.original.getEntity();
+    }
+
+    public void setEntity(final HttpEntity entity) {
+        this.original.setEntity(entity);
+    }
+
+    public Locale getLocale() {
+        return this.original.getLocale();
+    }
+
+    public void setLocale(final Locale loc) {
+        this.original.setLocale(loc);
+    }
+
+    public ProtocolVersion getProtocolVersion() {
+        return this.original.getProtocolVersion();
+    }
+
+    public boolean containsHeader(final String name) {
+        return this.original.containsHeader(name);
+    }
+
+    public Header[] getHeaders(final String name) {
+        return this.original.getHeaders(name);
+    }
+
+    public Header getFirstHeader(final String name) {
+        return this.original.getFirstHeader(name);
+    }
+
+    public Header getLastHeader(final String name) {
+        return this.original.getLastHeader(name);
+    }
+
+    public Header[] getAllHeaders() {
+        return this.original.getAllHeaders();
+    }
+
+    public void addHeader(final Header header) {
+        this.original.addHeader(header);
+    }
+
+    public void addHeader(final String name, final String value) {
+        this.original.addHeader(name, value);
+    }
+
+    public void setHeader(final Header header) {
+        this.original.setHeader(header);
+    }
+
+    public void setHeader(final String name, final String value) {
+        this.original.setHeader(name, value);
+    }
+
+    public void setHeaders(final Header[] headers) {
+        this.original.setHeaders(headers);
+    }
+
+    public void removeHeader(final Header header) {
+        this.original.removeHeader(header);
+    }
+
+    public void removeHeaders(final String name) {
+        this.original.removeHeaders(name);
+    }
+
+    public HeaderIterator headerIterator() {
+        return this.original.headerIterator();
+    }
+
+    public HeaderIterator headerIterator(final String name) {
+        return this.original.headerIterator(name);
+    }
+
+    public HttpParams getParams() {
+        return this.original.getParams();
+    }
+
+    public void setParams(final HttpParams params) {
+        this.original.setParams(params);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("HttpResponseProxy{");
+        sb.append(this.original);
+        sb.append('}');
+        return sb.toString();
     }
 
 }
@@ -27,9 +27,13 @@
 
 package org.apache.http.impl.client.builder;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.apache.http.HttpException;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
@@ -65,6 +69,8 @@ import org.apache.http.protocol.HttpContext;
 @ThreadSafe
 class InternalHttpClient extends CloseableHttpClient {
 
+    private final Log log = LogFactory.getLog(getClass());
+
     private final ClientExecChain execChain;
     private final HttpClientConnectionManager connManager;
     private final HttpRoutePlanner routePlanner;
@@ -73,6 +79,7 @@ class InternalHttpClient extends CloseableHttpClient {
     private final CookieStore cookieStore;
     private final CredentialsProvider credentialsProvider;
     private final HttpParams params;
+    private final List<Closeable> closeables;
 
     public InternalHttpClient(
             final ClientExecChain execChain,
@@ -82,7 +89,8 @@ class InternalHttpClient extends CloseableHttpClient {
             final AuthSchemeRegistry authSchemeRegistry,
             final CookieStore cookieStore,
             final CredentialsProvider credentialsProvider,
-            final HttpParams params) {
+            final HttpParams params,
+            final List<Closeable> closeables) {
         super();
         if (execChain == null) {
             throw new IllegalArgumentException("HTTP client exec chain may not be null");
@@ -101,6 +109,7 @@ class InternalHttpClient extends CloseableHttpClient {
         this.cookieStore = cookieStore;
         this.credentialsProvider = credentialsProvider;
         this.params = params != null ? params : new SyncBasicHttpParams();
+        this.closeables = closeables;
     }
 
     private HttpRoute determineRoute(
@@ -175,6 +184,15 @@ class InternalHttpClient extends CloseableHttpClient {
     }
 
     public void close() {
+        if (this.closeables != null) {
+            for (Closeable closeable: this.closeables) {
+                try {
+                    closeable.close();
+                } catch (IOException ex) {
+                    this.log.error(ex.getMessage(), ex);
+                }
+            }
+        }
         getConnectionManager().shutdown();
     }
 
@@ -209,7 +209,10 @@ class MainClientExec implements ClientExecChain {
         HttpClientConnection managedConn;
         try {
             long timeout = HttpClientParams.getConnectionManagerTimeout(params);
+            long start = System.nanoTime();
             managedConn = connRequest.get(timeout, TimeUnit.MILLISECONDS);
+            context.setAttribute(ClientContext.CONNECTION_LEASE_TIME,
+                    Long.valueOf(System.nanoTime() - start));
         } catch(InterruptedException interrupted) {
             throw new RequestAbortedException("Request aborted", interrupted);
         }
@@ -353,9 +356,9 @@ class MainClientExec implements ClientExecChain {
             if (entity == null || !entity.isStreaming()) {
                 // connection not needed and (assumed to be) in re-usable state
                 releaseTrigger.releaseConnection();
-                return HttpResponseProxy.newProxy(response, null);
+                return new HttpResponseProxy(response, null);
             } else {
-                return HttpResponseProxy.newProxy(response, releaseTrigger);
+                return new HttpResponseProxy(response, releaseTrigger);
             }
         } catch (ConnectionShutdownException ex) {
             InterruptedIOException ioex = new InterruptedIOException(
@@ -0,0 +1,219 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.conn.ConnPoolMetrics;
+import org.apache.http.conn.routing.HttpRoute;
+
+/**
+ * {@link ConnPoolMetrics} implementation that maintains counters and latency
+ * histograms per route and in total. Metrics can be read at any time without
+ * locking.
+ *
+ * @since 4.3
+ */
+@ThreadSafe
+public class BasicConnPoolMetrics implements ConnPoolMetrics {
+
+    private final ConcurrentHashMap<HttpRoute, RouteMetrics> routeToMetrics;
+    private final RouteMetrics totals;
+
+    public BasicConnPoolMetrics() {
+        super();
+        this.routeToMetrics = new ConcurrentHashMap<HttpRoute, RouteMetrics>();
+        this.totals = new RouteMetrics();
+    }
+
+    private RouteMetrics getMetrics(final HttpRoute route) {
+        RouteMetrics metrics = this.routeToMetrics.get(route);
+        if (metrics == null) {
+            RouteMetrics newMetrics = new RouteMetrics();
+            metrics = this.routeToMetrics.putIfAbsent(route, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+        return metrics;
+    }
+
+    public void leased(final HttpRoute route, long waitTime, boolean reused) {
+        getMetrics(route).leased(waitTime, reused);
+        this.totals.leased(waitTime, reused);
+    }
+
+    public void leaseTimedOut(final HttpRoute route, long waitTime) {
+        getMetrics(route).leaseTimedOut(waitTime);
+        this.totals.leaseTimedOut(waitTime);
+    }
+
+    public void leaseRejected(final HttpRoute route) {
+        getMetrics(route).leaseRejections.incrementAndGet();
+        this.totals.leaseRejections.incrementAndGet();
+    }
+
+    public void connected(final HttpRoute route, long connectTime) {
+        getMetrics(route).connectTime.record(connectTime);
+        this.totals.connectTime.record(connectTime);
+    }
+
+    public void upgraded(final HttpRoute route, long handshakeTime) {
+        getMetrics(route).handshakeTime.record(handshakeTime);
+        this.totals.handshakeTime.record(handshakeTime);
+    }
+
+    public void evicted(final HttpRoute route) {
+        getMetrics(route).evictions.incrementAndGet();
+        this.totals.evictions.incrementAndGet();
+    }
+
+    /**
+     * Returns metrics aggregated over all routes.
+     */
+    public RouteMetrics getTotals() {
+        return this.totals;
+    }
+
+    /**
+     * Returns metrics of the given route or <code>null</code> if no
+     * events have been recorded for the route.
+     */
+    public RouteMetrics getRouteMetrics(final HttpRoute route) {
+        if (route == null) {
+            throw new IllegalArgumentException("Route may not be null");
+        }
+        return this.routeToMetrics.get(route);
+    }
+
+    public Set<HttpRoute> getRoutes() {
+        return Collections.unmodifiableSet(this.routeToMetrics.keySet());
+    }
+
+    /**
+     * Counters and latency histograms of a single route.
+     */
+    @ThreadSafe
+    public static class RouteMetrics {
+
+        private final LatencyHistogram leaseWaitTime;
+        private final LatencyHistogram connectTime;
+        private final LatencyHistogram handshakeTime;
+        private final AtomicLong leases;
+        private final AtomicLong reuses;
+        private final AtomicLong leaseTimeouts;
+        private final AtomicLong leaseRejections;
+        private final AtomicLong evictions;
+
+        RouteMetrics() {
+            super();
+            this.leaseWaitTime = new LatencyHistogram();
+            this.connectTime = new LatencyHistogram();
+            this.handshakeTime = new LatencyHistogram();
+            this.leases = new AtomicLong();
+            this.reuses = new AtomicLong();
+            this.leaseTimeouts = new AtomicLong();
+            this.leaseRejections = new AtomicLong();
+            this.evictions = new AtomicLong();
+        }
+
+        void leased(long waitTime, boolean reused) {
+            this.leaseWaitTime.record(waitTime);
+            this.leases.incrementAndGet();
+            if (reused) {
+                this.reuses.incrementAndGet();
+            }
+        }
+
+        void leaseTimedOut(long waitTime) {
+            this.leaseWaitTime.record(waitTime);
+            this.leaseTimeouts.incrementAndGet();
+        }
+
+        public LatencyHistogram getLeaseWaitTime() {
+            return this.leaseWaitTime;
+        }
+
+        public LatencyHistogram getConnectTime() {
+            return this.connectTime;
+        }
+
+        public LatencyHistogram getHandshakeTime() {
+            return this.handshakeTime;
+        }
+
+        public long getLeaseCount() {
+            return this.leases.get();
+        }
+
+        public long getReuseCount() {
+            return this.reuses.get();
+        }
+
+        /**
+         * Returns the share of leases that were served by already open
+         * connections.
+         */
+        public double getReuseRatio() {
+            long n = this.leases.get();
+            return n > 0 ? (double) this.reuses.get() / n : 0;
+        }
+
+        public long getLeaseTimeoutCount() {
+            return this.leaseTimeouts.get();
+        }
+
+        public long getLeaseRejectionCount() {
+            return this.leaseRejections.get();
+        }
+
+        public long getEvictionCount() {
+            return this.evictions.get();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder buffer = new StringBuilder();
+            buffer.append("[leases: ").append(getLeaseCount());
+            buffer.append("][reused: ").append(getReuseCount());
+            buffer.append("][lease timeouts: ").append(getLeaseTimeoutCount());
+            buffer.append("][lease rejections: ").append(getLeaseRejectionCount());
+            buffer.append("][evictions: ").append(getEvictionCount());
+            buffer.append("][lease wait: ").append(this.leaseWaitTime);
+            buffer.append("][connect: ").append(this.connectTime);
+            buffer.append("][handshake: ").append(this.handshakeTime);
+            buffer.append("]");
+            return buffer.toString();
+        }
+
+    }
+
+}
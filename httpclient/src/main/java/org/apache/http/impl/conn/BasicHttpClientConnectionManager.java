@@ -126,6 +126,21 @@ public class BasicHttpClientConnectionManager implements HttpClientConnectionMan
         return this.connectionOperator.getSchemeRegistry();
     }
 
+    /**
+     * Defines delay in milliseconds after which another connection attempt
+     * is started in parallel if the host resolves to multiple addresses and
+     * the previous attempt has neither succeeded nor failed yet. The first
+     * connection to be established is used and the remaining attempts are
+     * aborted. Non-positive value disables parallel connection attempts.
+     */
+    public void setConnectAttemptDelay(int ms) {
+        this.connectionOperator.setConnectAttemptDelay(ms);
+    }
+
+    public int getConnectAttemptDelay() {
+        return this.connectionOperator.getConnectAttemptDelay();
+    }
+
     HttpRoute getRoute() {
         return route;
     }
@@ -330,6 +345,7 @@ public class BasicHttpClientConnectionManager implements HttpClientConnectionMan
         }
         this.shutdown = true;
         shutdownConnection();
+        this.connectionOperator.shutdown();
     }
 
 }
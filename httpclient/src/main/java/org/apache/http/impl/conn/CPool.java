@@ -27,49 +27,830 @@
 package org.apache.http.impl.conn;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnPoolMetrics;
+import org.apache.http.conn.ConnectionRequestRejectedException;
 import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.HttpConnectionFactory;
 import org.apache.http.conn.routing.HttpRoute;
-import org.apache.http.pool.AbstractConnPool;
-import org.apache.http.pool.ConnFactory;
+import org.apache.http.pool.ConnPool;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
 
 /**
+ * Connection pool that maintains a separate sub-pool for each route.
+ * <p/>
+ * Unlike {@link org.apache.http.pool.AbstractConnPool} this pool does not
+ * serialize all operations behind a single pool-wide lock. Each route
+ * specific sub-pool is guarded by its own lock, while the total number of
+ * allocated connections is tracked with an atomic counter. Leases and
+ * releases on different routes therefore do not contend with each other
+ * as long as the total limit has not been reached. Once the total limit
+ * is reached requests may reclaim idle connections kept alive for other
+ * routes or wait until capacity is released.
+ *
  * @since 4.3
  */
 @ThreadSafe
-class CPool extends AbstractConnPool<HttpRoute, DefaultClientConnection, CPoolEntry> {
+class CPool implements ConnPool<HttpRoute, CPoolEntry>, ConnPoolControl<HttpRoute> {
 
     private static AtomicLong COUNTER = new AtomicLong();
 
     private final Log log = LogFactory.getLog(HttpClientConnectionManager.class);
     private final long timeToLive;
     private final TimeUnit tunit;
+    private final HttpConnectionFactory<DefaultClientConnection> connFactory;
+    private final ConcurrentHashMap<HttpRoute, CRoutePool> routeToPool;
+    private final ConcurrentHashMap<HttpRoute, Integer> maxPerRoute;
+    private final ConcurrentLinkedQueue<CPoolWaiter> starved;
+    private final ConcurrentLinkedQueue<CPoolAsyncFuture> ready;
+    private final AtomicInteger pending;
+    private final AtomicBoolean processing;
+    private final AtomicInteger allocated;
+
+    private volatile boolean isShutDown;
+    private volatile int defaultMaxPerRoute;
+    private volatile int maxTotal;
+    private volatile int validateAfterInactivity;
+    private volatile ConnPoolMetrics metrics;
+    private volatile PoolReusePolicy reusePolicy;
+    private volatile int maxPendingPerRoute;
+    private volatile int maxPendingTotal;
 
     public CPool(
             final int defaultMaxPerRoute, final int maxTotal,
             final long timeToLive, final TimeUnit tunit) {
-        super(new InternalConnFactory(), defaultMaxPerRoute, maxTotal);
+        this(defaultMaxPerRoute, maxTotal, timeToLive, tunit, null);
+    }
+
+    public CPool(
+            final int defaultMaxPerRoute, final int maxTotal,
+            final long timeToLive, final TimeUnit tunit,
+            final HttpConnectionFactory<DefaultClientConnection> connFactory) {
+        super();
+        if (defaultMaxPerRoute <= 0) {
+            throw new IllegalArgumentException("Max per route value may not be negative or zero");
+        }
+        if (maxTotal <= 0) {
+            throw new IllegalArgumentException("Max total value may not be negative or zero");
+        }
         this.timeToLive = timeToLive;
         this.tunit = tunit;
+        this.connFactory = connFactory != null ? connFactory : DefaultClientConnectionFactory.INSTANCE;
+        this.routeToPool = new ConcurrentHashMap<HttpRoute, CRoutePool>();
+        this.maxPerRoute = new ConcurrentHashMap<HttpRoute, Integer>();
+        this.starved = new ConcurrentLinkedQueue<CPoolWaiter>();
+        this.ready = new ConcurrentLinkedQueue<CPoolAsyncFuture>();
+        this.pending = new AtomicInteger(0);
+        this.processing = new AtomicBoolean(false);
+        this.allocated = new AtomicInteger(0);
+        this.defaultMaxPerRoute = defaultMaxPerRoute;
+        this.maxTotal = maxTotal;
+        this.validateAfterInactivity = -1;
+        this.reusePolicy = PoolReusePolicy.LIFO;
     }
 
-    @Override
     protected CPoolEntry createEntry(final HttpRoute route, final DefaultClientConnection conn) {
         String id = Long.toString(COUNTER.getAndIncrement());
         return new CPoolEntry(this.log, id, route, conn, this.timeToLive, this.tunit);
     }
 
-    static class InternalConnFactory implements ConnFactory<HttpRoute, DefaultClientConnection> {
+    public boolean isShutdown() {
+        return this.isShutDown;
+    }
+
+    public void shutdown() throws IOException {
+        if (this.isShutDown) {
+            return;
+        }
+        this.isShutDown = true;
+        for (CRoutePool pool: this.routeToPool.values()) {
+            List<CPoolEntry> entries;
+            pool.lock.lock();
+            try {
+                entries = pool.shutdown();
+            } finally {
+                pool.lock.unlock();
+            }
+            for (CPoolEntry entry: entries) {
+                entry.close();
+            }
+        }
+        this.starved.clear();
+        this.allocated.set(0);
+    }
+
+    private CRoutePool getPool(final HttpRoute route) {
+        CRoutePool pool = this.routeToPool.get(route);
+        if (pool == null) {
+            CRoutePool newPool = new CRoutePool(route, this.pending);
+            pool = this.routeToPool.putIfAbsent(route, newPool);
+            if (pool == null) {
+                pool = newPool;
+            }
+        }
+        return pool;
+    }
+
+    public Future<CPoolEntry> lease(
+            final HttpRoute route, final Object state,
+            final FutureCallback<CPoolEntry> callback) {
+        if (route == null) {
+            throw new IllegalArgumentException("Route may not be null");
+        }
+        if (this.isShutDown) {
+            throw new IllegalStateException("Connection pool shut down");
+        }
+        return new CPoolFuture(getPool(route), callback) {
+
+            @Override
+            protected CPoolEntry getPoolEntry(
+                    final long timeout,
+                    final TimeUnit tunit) throws InterruptedException, TimeoutException, IOException {
+                return getPoolEntryBlocking(route, state, timeout, tunit, this);
+            }
+
+        };
+    }
+
+    public Future<CPoolEntry> lease(final HttpRoute route, final Object state) {
+        return lease(route, state, null);
+    }
+
+    /**
+     * Requests a pool entry without blocking. If no entry can be leased
+     * immediately the request is parked and gets completed by the thread
+     * that releases capacity to the pool, so the callback must not block.
+     * The request remains pending until it is served or cancelled.
+     */
+    public Future<CPoolEntry> leaseAsync(
+            final HttpRoute route, final Object state,
+            final FutureCallback<CPoolEntry> callback) {
+        if (route == null) {
+            throw new IllegalArgumentException("Route may not be null");
+        }
+        if (this.isShutDown) {
+            throw new IllegalStateException("Connection pool shut down");
+        }
+        CPoolAsyncFuture future = new CPoolAsyncFuture(
+                getPool(route), route, state, callback, this.ready);
+        process(future);
+        return future;
+    }
+
+    private void process(final CPoolAsyncFuture future) {
+        CPoolEntry entry;
+        try {
+            entry = getPoolEntryBlocking(future.getRoute(), future.getState(), 0, null, future);
+        } catch (Exception ex) {
+            future.failed(ex);
+            return;
+        }
+        if (entry != null && !future.completed(entry)) {
+            // Cancelled in the meantime
+            release(entry, entry.getConnection().isOpen());
+        }
+    }
+
+    /**
+     * Re-processes asynchronous requests woken up by released capacity.
+     * Only one thread processes requests at a time, while other threads
+     * merely hand them over. Must not be called while holding a sub-pool lock.
+     */
+    private void processReady() {
+        while (!this.ready.isEmpty() && this.processing.compareAndSet(false, true)) {
+            try {
+                CPoolAsyncFuture future;
+                while ((future = this.ready.poll()) != null) {
+                    this.starved.remove(future);
+                    if (!future.isDone()) {
+                        process(future);
+                    }
+                }
+            } finally {
+                this.processing.set(false);
+            }
+        }
+    }
+
+    private boolean reserve() {
+        for (;;) {
+            int n = this.allocated.get();
+            if (n >= this.maxTotal) {
+                return false;
+            }
+            if (this.allocated.compareAndSet(n, n + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean hasIdle() {
+        for (CRoutePool pool: this.routeToPool.values()) {
+            if (pool.getAvailableCount() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Closes the least recently used idle connection of any route and
+     * hands its slot over to the caller. Must not be called while holding
+     * a sub-pool lock.
+     */
+    private boolean reclaim() {
+        for (CRoutePool pool: this.routeToPool.values()) {
+            if (pool.getAvailableCount() == 0) {
+                continue;
+            }
+            CPoolEntry lastUsed;
+            pool.lock.lock();
+            try {
+                lastUsed = pool.getLastUsed();
+                if (lastUsed != null) {
+                    pool.remove(lastUsed);
+                }
+            } finally {
+                pool.lock.unlock();
+            }
+            if (lastUsed != null) {
+                lastUsed.close();
+                onEvicted(lastUsed);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hands freed capacity over to one of the requests waiting for the total
+     * limit. Must not be called while holding a sub-pool lock.
+     */
+    private void wakeupStarved() {
+        CPoolWaiter future;
+        while ((future = this.starved.poll()) != null) {
+            CRoutePool pool = future.getPool();
+            pool.lock.lock();
+            try {
+                if (future.isWaiting()) {
+                    future.wakeup();
+                    break;
+                }
+            } finally {
+                pool.lock.unlock();
+            }
+        }
+        processReady();
+    }
+
+    private void onEvicted(final CPoolEntry entry) {
+        ConnPoolMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.evicted(entry.getRoute());
+        }
+    }
+
+    private void discard(final List<CPoolEntry> entries) {
+        for (CPoolEntry entry: entries) {
+            entry.close();
+            onEvicted(entry);
+            wakeupStarved();
+        }
+        entries.clear();
+    }
+
+    private CPoolEntry getPoolEntryBlocking(
+            final HttpRoute route, final Object state,
+            final long timeout, final TimeUnit tunit,
+            final CPoolWaiter future)
+                throws IOException, InterruptedException, TimeoutException {
+
+        Date deadline = null;
+        if (timeout > 0) {
+            deadline = new Date
+                (System.currentTimeMillis() + tunit.toMillis(timeout));
+        }
+
+        CRoutePool pool = future.getPool();
+        LinkedList<CPoolEntry> discarded = new LinkedList<CPoolEntry>();
+        CPoolEntry candidate = null;
+        try {
+            for (;;) {
+                if (candidate != null) {
+                    // The candidate is already leased and can be validated
+                    // without holding the sub-pool lock
+                    if (validate(pool, candidate)) {
+                        return candidate;
+                    }
+                    discarded.add(candidate);
+                    candidate = null;
+                    continue;
+                }
+                boolean needSlot = false;
+                pool.lock.lock();
+                try {
+                    if (this.isShutDown) {
+                        throw new IllegalStateException("Connection pool shut down");
+                    }
+                    CPoolEntry entry;
+                    for (;;) {
+                        entry = pool.getFree(state, this.reusePolicy);
+                        if (entry == null) {
+                            break;
+                        }
+                        if (entry.isClosed() || entry.isExpired(System.currentTimeMillis())) {
+                            pool.remove(entry);
+                            this.allocated.decrementAndGet();
+                            discarded.add(entry);
+                        } else {
+                            break;
+                        }
+                    }
+                    if (entry != null) {
+                        if (isValidationDue(entry)) {
+                            candidate = entry;
+                            continue;
+                        }
+                        return entry;
+                    }
+
+                    // New connection is needed
+                    int max = getMax(route);
+                    // Shrink the pool prior to allocating a new connection
+                    int excess = Math.max(0, pool.getAllocatedCount() + 1 - max);
+                    for (int i = 0; i < excess; i++) {
+                        CPoolEntry lastUsed = pool.getLastUsed();
+                        if (lastUsed == null) {
+                            break;
+                        }
+                        pool.remove(lastUsed);
+                        this.allocated.decrementAndGet();
+                        discarded.add(lastUsed);
+                    }
+
+                    boolean starving = false;
+                    if (pool.getAllocatedCount() < max) {
+                        if (reserve()) {
+                            return allocate(pool, route);
+                        }
+                        if (hasIdle()) {
+                            needSlot = true;
+                        } else {
+                            // Register with the starved requests first and only then
+                            // re-check the total capacity, so that capacity released
+                            // concurrently on another route cannot be missed
+                            starving = true;
+                            this.starved.add(future);
+                            if (reserve()) {
+                                this.starved.remove(future);
+                                return allocate(pool, route);
+                            }
+                            if (hasIdle()) {
+                                this.starved.remove(future);
+                                needSlot = true;
+                            }
+                        }
+                    }
+                    if (!needSlot) {
+                        if (!discarded.isEmpty()) {
+                            // Close discarded connections before going to sleep
+                            this.starved.remove(future);
+                            continue;
+                        }
+                        // Requests that have already waited are not rejected
+                        if (!pool.queue(future,
+                                future.isAdmitted() ? 0 : this.maxPendingPerRoute,
+                                future.isAdmitted() ? 0 : this.maxPendingTotal)) {
+                            if (starving) {
+                                this.starved.remove(future);
+                            }
+                            throw new ConnectionRequestRejectedException(
+                                    "Too many pending connection requests");
+                        }
+                        future.setAdmitted();
+                        if (future instanceof CPoolAsyncFuture) {
+                            // Asynchronous requests wait without a thread
+                            ((CPoolAsyncFuture) future).park();
+                            return null;
+                        }
+                        boolean success = false;
+                        try {
+                            success = ((CPoolFuture) future).await(deadline);
+                        } finally {
+                            pool.unqueue(future);
+                            if (starving) {
+                                this.starved.remove(future);
+                            }
+                        }
+                        // check for spurious wakeup vs. timeout
+                        if (!success && (deadline != null &&
+                                deadline.getTime() <= System.currentTimeMillis())) {
+                            break;
+                        }
+                    }
+                } finally {
+                    pool.lock.unlock();
+                    discard(discarded);
+                }
+                if (needSlot && reclaim()) {
+                    // The slot of the reclaimed connection now belongs to this request
+                    pool.lock.lock();
+                    try {
+                        if (!this.isShutDown && pool.getAllocatedCount() < getMax(route)) {
+                            return allocate(pool, route);
+                        }
+                    } finally {
+                        pool.lock.unlock();
+                    }
+                    this.allocated.decrementAndGet();
+                    wakeupStarved();
+                }
+            }
+            throw new TimeoutException("Timeout waiting for connection");
+        } finally {
+            discard(discarded);
+        }
+    }
+
+    private boolean isValidationDue(final CPoolEntry entry) {
+        int inactivity = this.validateAfterInactivity;
+        return inactivity > 0 &&
+            entry.getUpdated() + inactivity <= System.currentTimeMillis();
+    }
 
-        public DefaultClientConnection create(final HttpRoute route) throws IOException {
-            return new DefaultClientConnection();
+    /**
+     * Checks whether the given leased entry is still usable. A stale entry
+     * is removed from the pool and is expected to be closed by the caller.
+     * Must not be called while holding a sub-pool lock.
+     */
+    private boolean validate(final CRoutePool pool, final CPoolEntry entry) {
+        if (!entry.getConnection().isStale()) {
+            return true;
+        }
+        if (this.log.isDebugEnabled()) {
+            this.log.debug("Connection " + entry.getId() + " is stale");
+        }
+        pool.lock.lock();
+        try {
+            if (pool.remove(entry)) {
+                this.allocated.decrementAndGet();
+            }
+        } finally {
+            pool.lock.unlock();
         }
+        return false;
+    }
 
+    /**
+     * Allocates new entries for the given route, so that the route has at
+     * least <code>count</code> entries, without blocking and without evicting
+     * idle connections of other routes. The entries are returned leased and
+     * must be released back to the pool by the caller.
+     */
+    public List<CPoolEntry> allocate(final HttpRoute route, int count) {
+        if (route == null) {
+            throw new IllegalArgumentException("Route may not be null");
+        }
+        List<CPoolEntry> entries = new ArrayList<CPoolEntry>();
+        CRoutePool pool = getPool(route);
+        pool.lock.lock();
+        try {
+            if (this.isShutDown) {
+                throw new IllegalStateException("Connection pool shut down");
+            }
+            int max = Math.min(count, getMax(route));
+            while (pool.getAllocatedCount() < max && reserve()) {
+                entries.add(allocate(pool, route));
+            }
+        } finally {
+            pool.lock.unlock();
+        }
+        return entries;
+    }
+
+    private CPoolEntry allocate(final CRoutePool pool, final HttpRoute route) {
+        CPoolEntry entry = createEntry(route, this.connFactory.create());
+        pool.add(entry);
+        return entry;
+    }
+
+    public void release(final CPoolEntry entry, boolean reusable) {
+        CRoutePool pool = this.routeToPool.get(entry.getRoute());
+        if (pool == null) {
+            return;
+        }
+        boolean woken = false;
+        pool.lock.lock();
+        try {
+            if (!pool.isLeased(entry)) {
+                return;
+            }
+            if (this.isShutDown) {
+                reusable = false;
+            }
+            pool.free(entry, reusable);
+            if (!reusable) {
+                this.allocated.decrementAndGet();
+            }
+            CPoolWaiter future = pool.nextPending();
+            if (future != null) {
+                future.wakeup();
+                woken = true;
+            }
+        } finally {
+            pool.lock.unlock();
+        }
+        if (!reusable) {
+            entry.close();
+        }
+        if (!woken) {
+            wakeupStarved();
+        } else {
+            processReady();
+        }
+    }
+
+    private int getMax(final HttpRoute route) {
+        Integer v = this.maxPerRoute.get(route);
+        if (v != null) {
+            return v.intValue();
+        } else {
+            return this.defaultMaxPerRoute;
+        }
+    }
+
+    public void setMaxTotal(int max) {
+        if (max <= 0) {
+            throw new IllegalArgumentException("Max value may not be negative or zero");
+        }
+        this.maxTotal = max;
+    }
+
+    public int getMaxTotal() {
+        return this.maxTotal;
+    }
+
+    public void setDefaultMaxPerRoute(int max) {
+        if (max <= 0) {
+            throw new IllegalArgumentException("Max value may not be negative or zero");
+        }
+        this.defaultMaxPerRoute = max;
+    }
+
+    public int getDefaultMaxPerRoute() {
+        return this.defaultMaxPerRoute;
+    }
+
+    public void setMaxPerRoute(final HttpRoute route, int max) {
+        if (route == null) {
+            throw new IllegalArgumentException("Route may not be null");
+        }
+        if (max <= 0) {
+            throw new IllegalArgumentException("Max value may not be negative or zero");
+        }
+        this.maxPerRoute.put(route, Integer.valueOf(max));
+    }
+
+    public int getMaxPerRoute(final HttpRoute route) {
+        if (route == null) {
+            throw new IllegalArgumentException("Route may not be null");
+        }
+        return getMax(route);
+    }
+
+    /**
+     * Defines period of inactivity in milliseconds after which persistent
+     * connections must be re-validated prior to being leased. Non-positive
+     * value disables connection validation.
+     */
+    public void setValidateAfterInactivity(int ms) {
+        this.validateAfterInactivity = ms;
+    }
+
+    public int getValidateAfterInactivity() {
+        return this.validateAfterInactivity;
+    }
+
+    public void setReusePolicy(final PoolReusePolicy reusePolicy) {
+        if (reusePolicy == null) {
+            throw new IllegalArgumentException("Reuse policy may not be null");
+        }
+        this.reusePolicy = reusePolicy;
+    }
+
+    public PoolReusePolicy getReusePolicy() {
+        return this.reusePolicy;
+    }
+
+    /**
+     * Defines the maximum number of requests that may wait for a connection
+     * per route. Further requests are rejected with
+     * {@link ConnectionRequestRejectedException}. Non-positive value removes
+     * the limit.
+     */
+    public void setMaxPendingPerRoute(int max) {
+        this.maxPendingPerRoute = max;
+    }
+
+    public int getMaxPendingPerRoute() {
+        return this.maxPendingPerRoute;
+    }
+
+    /**
+     * Defines the maximum number of requests that may wait for a connection
+     * across all routes. Further requests are rejected with
+     * {@link ConnectionRequestRejectedException}. Non-positive value removes
+     * the limit.
+     */
+    public void setMaxPendingTotal(int max) {
+        this.maxPendingTotal = max;
+    }
+
+    public int getMaxPendingTotal() {
+        return this.maxPendingTotal;
+    }
+
+    public void setMetrics(final ConnPoolMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns total statistics of the pool. Statistics are collected from
+     * counters maintained by route specific sub-pools without locking and
+     * may not reflect a consistent state of the pool as a whole while
+     * the pool is in use.
+     */
+    public PoolStats getTotalStats() {
+        int leased = 0;
+        int pending = 0;
+        int available = 0;
+        for (CRoutePool pool: this.routeToPool.values()) {
+            leased += pool.getLeasedCount();
+            pending += pool.getPendingCount();
+            available += pool.getAvailableCount();
+        }
+        return new PoolStats(leased, pending, available, this.maxTotal);
+    }
+
+    /**
+     * Returns statistics of the given route without locking.
+     */
+    public PoolStats getStats(final HttpRoute route) {
+        if (route == null) {
+            throw new IllegalArgumentException("Route may not be null");
+        }
+        CRoutePool pool = this.routeToPool.get(route);
+        if (pool == null) {
+            return new PoolStats(0, 0, 0, getMax(route));
+        }
+        return getStats(pool);
+    }
+
+    private PoolStats getStats(final CRoutePool pool) {
+        return new PoolStats(
+                pool.getLeasedCount(),
+                pool.getPendingCount(),
+                pool.getAvailableCount(),
+                getMax(pool.getRoute()));
+    }
+
+    /**
+     * Returns a snapshot of statistics of all routes known to the pool.
+     * The snapshot is taken without locking.
+     */
+    public Map<HttpRoute, PoolStats> getRouteStats() {
+        Map<HttpRoute, PoolStats> stats = new HashMap<HttpRoute, PoolStats>(this.routeToPool.size());
+        for (CRoutePool pool: this.routeToPool.values()) {
+            stats.put(pool.getRoute(), getStats(pool));
+        }
+        return stats;
+    }
+
+    /**
+     * Closes connections that have been idle longer than the given period
+     * of time and evicts them from the pool. Connections are closed outside
+     * of the sub-pool locks.
+     *
+     * @param idletime maximum idle time.
+     * @param tunit time unit.
+     */
+    public void closeIdle(long idletime, final TimeUnit tunit) {
+        if (tunit == null) {
+            throw new IllegalArgumentException("Time unit must not be null.");
+        }
+        long time = tunit.toMillis(idletime);
+        if (time < 0) {
+            time = 0;
+        }
+        evict(System.currentTimeMillis() - time, Long.MIN_VALUE);
+    }
+
+    /**
+     * Closes expired connections and evicts them from the pool.
+     * Connections are closed outside of the sub-pool locks.
+     */
+    public void closeExpired() {
+        evict(Long.MIN_VALUE, System.currentTimeMillis());
+    }
+
+    /**
+     * Checks idle connections for staleness and evicts those found closed
+     * by the opposite endpoint. If validation after inactivity is enabled
+     * only connections idle longer than that period are checked. Connections
+     * are checked one at a time outside of the sub-pool locks and remain
+     * unavailable for lease while being checked.
+     */
+    public void closeStale() {
+        int inactivity = this.validateAfterInactivity;
+        long idleDeadline = inactivity > 0 ?
+                System.currentTimeMillis() - inactivity : Long.MAX_VALUE;
+        for (CRoutePool pool: this.routeToPool.values()) {
+            if (pool.getAvailableCount() == 0) {
+                continue;
+            }
+            List<CPoolEntry> candidates;
+            pool.lock.lock();
+            try {
+                candidates = pool.getAvailable(idleDeadline);
+            } finally {
+                pool.lock.unlock();
+            }
+            for (CPoolEntry entry: candidates) {
+                boolean acquired;
+                pool.lock.lock();
+                try {
+                    acquired = !this.isShutDown && pool.acquire(entry);
+                } finally {
+                    pool.lock.unlock();
+                }
+                if (acquired) {
+                    boolean stale = entry.getConnection().isStale();
+                    if (stale && this.log.isDebugEnabled()) {
+                        this.log.debug("Connection " + entry.getId() + " is stale");
+                    }
+                    release(entry, !stale);
+                    if (stale) {
+                        onEvicted(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    private void evict(final long idleDeadline, final long now) {
+        for (CRoutePool pool: this.routeToPool.values()) {
+            if (pool.getAvailableCount() == 0) {
+                continue;
+            }
+            List<CPoolEntry> removed;
+            pool.lock.lock();
+            try {
+                removed = pool.removeAvailable(now, idleDeadline);
+                if (!removed.isEmpty()) {
+                    this.allocated.addAndGet(-removed.size());
+                    CPoolWaiter future = pool.nextPending();
+                    if (future != null) {
+                        future.wakeup();
+                    }
+                }
+            } finally {
+                pool.lock.unlock();
+            }
+            discard(removed);
+        }
+        processReady();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append("[allocated: ");
+        buffer.append(this.allocated.get());
+        buffer.append("][max total: ");
+        buffer.append(this.maxTotal);
+        buffer.append("][routes: ");
+        buffer.append(this.routeToPool.values());
+        buffer.append("]");
+        return buffer.toString();
     }
 
 }
@@ -0,0 +1,134 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+import java.util.Queue;
+
+import org.apache.http.annotation.GuardedBy;
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.routing.HttpRoute;
+
+/**
+ * Asynchronous lease request issued by {@link CPool}. Unlike a blocking
+ * request no thread waits for the request to be served. Instead the request
+ * is parked in its route specific sub-pool and gets re-processed by
+ * the thread that releases capacity to the pool. The request has no timeout
+ * of its own and remains pending until it is served, cancelled or the pool
+ * is shut down.
+ *
+ * @since 4.3
+ */
+@ThreadSafe
+class CPoolAsyncFuture extends BasicFuture<CPoolEntry> implements CPoolWaiter {
+
+    private final CRoutePool pool;
+    private final HttpRoute route;
+    private final Object state;
+    private final Queue<CPoolAsyncFuture> ready;
+
+    @GuardedBy("pool.lock")
+    private boolean parked;
+    @GuardedBy("pool.lock")
+    private boolean admitted;
+
+    CPoolAsyncFuture(
+            final CRoutePool pool,
+            final HttpRoute route,
+            final Object state,
+            final FutureCallback<CPoolEntry> callback,
+            final Queue<CPoolAsyncFuture> ready) {
+        super(callback);
+        this.pool = pool;
+        this.route = route;
+        this.state = state;
+        this.ready = ready;
+    }
+
+    public CRoutePool getPool() {
+        return this.pool;
+    }
+
+    HttpRoute getRoute() {
+        return this.route;
+    }
+
+    Object getState() {
+        return this.state;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!super.cancel(mayInterruptIfRunning)) {
+            return false;
+        }
+        this.pool.lock.lock();
+        try {
+            if (this.parked) {
+                this.parked = false;
+                this.pool.unqueue(this);
+            }
+        } finally {
+            this.pool.lock.unlock();
+        }
+        return true;
+    }
+
+    public boolean isAdmitted() {
+        return this.admitted;
+    }
+
+    public void setAdmitted() {
+        this.admitted = true;
+    }
+
+    /**
+     * Marks the request queued in its sub-pool as parked. Must be called
+     * while holding the sub-pool lock.
+     */
+    void park() {
+        this.parked = true;
+    }
+
+    public boolean isWaiting() {
+        return this.parked && !isDone();
+    }
+
+    /**
+     * Takes the request out of its sub-pool and schedules it for
+     * re-processing.
+     */
+    public void wakeup() {
+        if (this.parked) {
+            this.parked = false;
+            this.pool.unqueue(this);
+            this.ready.add(this);
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.concurrent.FutureCallback;
+
+/**
+ * Lease request issued by {@link CPool}. The request waits on a condition
+ * bound to the lock of its route specific sub-pool rather than
+ * a pool-wide lock.
+ *
+ * @since 4.3
+ */
+@ThreadSafe
+abstract class CPoolFuture implements Future<CPoolEntry>, CPoolWaiter {
+
+    private final CRoutePool pool;
+    private final FutureCallback<CPoolEntry> callback;
+    private final Condition condition;
+    private volatile boolean cancelled;
+    private volatile boolean completed;
+    private volatile boolean waiting;
+    private boolean admitted;
+    private CPoolEntry result;
+
+    CPoolFuture(final CRoutePool pool, final FutureCallback<CPoolEntry> callback) {
+        super();
+        this.pool = pool;
+        this.condition = pool.lock.newCondition();
+        this.callback = callback;
+    }
+
+    public CRoutePool getPool() {
+        return this.pool;
+    }
+
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        this.pool.lock.lock();
+        try {
+            if (this.completed) {
+                return false;
+            }
+            this.completed = true;
+            this.cancelled = true;
+            if (this.callback != null) {
+                this.callback.cancelled();
+            }
+            this.condition.signalAll();
+            return true;
+        } finally {
+            this.pool.lock.unlock();
+        }
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    public boolean isDone() {
+        return this.completed;
+    }
+
+    public CPoolEntry get() throws InterruptedException, ExecutionException {
+        try {
+            return get(0, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            throw new ExecutionException(ex);
+        }
+    }
+
+    public synchronized CPoolEntry get(
+            long timeout,
+            final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (this.cancelled) {
+            throw new InterruptedException("Operation interrupted");
+        }
+        if (this.completed) {
+            return this.result;
+        }
+        try {
+            CPoolEntry entry = getPoolEntry(timeout, unit);
+            this.result = entry;
+            this.completed = true;
+            if (this.callback != null) {
+                this.callback.completed(entry);
+            }
+            return entry;
+        } catch (IOException ex) {
+            this.completed = true;
+            this.result = null;
+            if (this.callback != null) {
+                this.callback.failed(ex);
+            }
+            throw new ExecutionException(ex);
+        }
+    }
+
+    protected abstract CPoolEntry getPoolEntry(
+            long timeout, TimeUnit unit) throws IOException, InterruptedException, TimeoutException;
+
+    public boolean isAdmitted() {
+        return this.admitted;
+    }
+
+    public void setAdmitted() {
+        this.admitted = true;
+    }
+
+    public boolean isWaiting() {
+        return this.waiting;
+    }
+
+    /**
+     * Waits until signalled, cancelled or the deadline is reached.
+     * Must be called while holding the sub-pool lock.
+     */
+    boolean await(final Date deadline) throws InterruptedException {
+        if (this.cancelled) {
+            throw new InterruptedException("Operation interrupted");
+        }
+        this.waiting = true;
+        try {
+            boolean success = false;
+            if (deadline != null) {
+                success = this.condition.awaitUntil(deadline);
+            } else {
+                this.condition.await();
+                success = true;
+            }
+            if (this.cancelled) {
+                throw new InterruptedException("Operation interrupted");
+            }
+            return success;
+        } finally {
+            this.waiting = false;
+        }
+    }
+
+    /**
+     * Wakes up the thread waiting on this request.
+     */
+    public void wakeup() {
+        this.condition.signalAll();
+    }
+
+}
@@ -27,21 +27,29 @@
 package org.apache.http.impl.conn;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+
+import javax.net.ssl.SSLSession;
 
 import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpConnectionMetrics;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
 import org.apache.http.annotation.NotThreadSafe;
 import org.apache.http.conn.HttpSSLConnection;
 import org.apache.http.protocol.HttpContext;
 
 /**
+ * Managed connection handed out to callers of the pooling connection
+ * managers. All calls are delegated directly to the connection of the
+ * pool entry the proxy is bound to.
+ *
  * @since 4.3
  */
 @NotThreadSafe
-class CPoolProxy implements InvocationHandler {
+final class CPoolProxy implements HttpClientConnection, HttpSSLConnection, HttpContext {
 
     private volatile CPoolEntry poolEntry;
 
@@ -60,7 +68,7 @@ class CPoolProxy implements InvocationHandler {
         return local;
     }
 
-    HttpClientConnection getConnection() {
+    DefaultClientConnection getConnection() {
         CPoolEntry local = this.poolEntry;
         if (local == null) {
             return null;
@@ -68,6 +76,14 @@ class CPoolProxy implements InvocationHandler {
         return local.getConnection();
     }
 
+    DefaultClientConnection getValidConnection() {
+        DefaultClientConnection conn = getConnection();
+        if (conn == null) {
+            throw new ConnectionShutdownException();
+        }
+        return conn;
+    }
+
     public void close() throws IOException {
         CPoolEntry local = this.poolEntry;
         if (local != null) {
@@ -102,56 +118,104 @@ class CPoolProxy implements InvocationHandler {
         }
     }
 
-    public Object invoke(
-            final Object proxy, final Method method, final Object[] args) throws Throwable {
-        String mname = method.getName();
-        if (mname.equals("close")) {
-            close();
-            return null;
-        } else if (mname.equals("shutdown")) {
-            shutdown();
-            return null;
-        } else if (mname.equals("isOpen")) {
-            return Boolean.valueOf(isOpen());
-        } else if (mname.equals("isStale")) {
-            return Boolean.valueOf(isStale());
+    public void setSocketTimeout(int timeout) {
+        getValidConnection().setSocketTimeout(timeout);
+    }
+
+    public int getSocketTimeout() {
+        return getValidConnection().getSocketTimeout();
+    }
+
+    public HttpConnectionMetrics getMetrics() {
+        return getValidConnection().getMetrics();
+    }
+
+    public boolean isResponseAvailable(int timeout) throws IOException {
+        return getValidConnection().isResponseAvailable(timeout);
+    }
+
+    public void sendRequestHeader(
+            final HttpRequest request) throws HttpException, IOException {
+        getValidConnection().sendRequestHeader(request);
+    }
+
+    public void sendRequestEntity(
+            final HttpEntityEnclosingRequest request) throws HttpException, IOException {
+        getValidConnection().sendRequestEntity(request);
+    }
+
+    public HttpResponse receiveResponseHeader() throws HttpException, IOException {
+        return getValidConnection().receiveResponseHeader();
+    }
+
+    public void receiveResponseEntity(
+            final HttpResponse response) throws HttpException, IOException {
+        getValidConnection().receiveResponseEntity(response);
+    }
+
+    public void flush() throws IOException {
+        getValidConnection().flush();
+    }
+
+    public InetAddress getLocalAddress() {
+        return getValidConnection().getLocalAddress();
+    }
+
+    public int getLocalPort() {
+        return getValidConnection().getLocalPort();
+    }
+
+    public InetAddress getRemoteAddress() {
+        return getValidConnection().getRemoteAddress();
+    }
+
+    public int getRemotePort() {
+        return getValidConnection().getRemotePort();
+    }
+
+    public SSLSession getSSLSession() {
+        return getValidConnection().getSSLSession();
+    }
+
+    public Object getAttribute(final String id) {
+        return getValidConnection().getAttribute(id);
+    }
+
+    public void setAttribute(final String id, final Object obj) {
+        getValidConnection().setAttribute(id, obj);
+    }
+
+    public Object removeAttribute(final String id) {
+        return getValidConnection().removeAttribute(id);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CPoolProxy{");
+        HttpClientConnection conn = getConnection();
+        if (conn != null) {
+            sb.append(conn);
         } else {
-            HttpClientConnection conn = getConnection();
-            if (conn == null) {
-                throw new ConnectionShutdownException();
-            }
-            try {
-                return method.invoke(conn, args);
-            } catch (InvocationTargetException ex) {
-                Throwable cause = ex.getCause();
-                if (cause != null) {
-                    throw cause;
-                } else {
-                    throw ex;
-                }
-            }
+            sb.append("detached");
         }
+        sb.append('}');
+        return sb.toString();
     }
 
     public static HttpClientConnection newProxy(
             final CPoolEntry poolEntry) {
-        return (HttpClientConnection) Proxy.newProxyInstance(
-                CPoolProxy.class.getClassLoader(),
-                new Class<?>[] { HttpClientConnection.class, HttpSSLConnection.class, HttpContext.class },
-                new CPoolProxy(poolEntry));
+        return new CPoolProxy(poolEntry);
     }
 
-    private static CPoolProxy getHandler(
-            final HttpClientConnection proxy) {
-        InvocationHandler handler = Proxy.getInvocationHandler(proxy);
-        if (!CPoolProxy.class.isInstance(handler)) {
-            throw new IllegalStateException("Unexpected proxy handler class: " + handler);
+    private static CPoolProxy getProxy(final HttpClientConnection conn) {
+        if (!CPoolProxy.class.isInstance(conn)) {
+            throw new IllegalArgumentException("Unexpected connection proxy class: " + conn.getClass());
         }
-        return CPoolProxy.class.cast(handler);
+        return CPoolProxy.class.cast(conn);
     }
 
     public static CPoolEntry getPoolEntry(final HttpClientConnection proxy) {
-        CPoolEntry entry = getHandler(proxy).getPoolEntry();
+        CPoolEntry entry = getProxy(proxy).getPoolEntry();
         if (entry == null) {
             throw new ConnectionShutdownException();
         }
@@ -159,7 +223,7 @@ class CPoolProxy implements InvocationHandler {
     }
 
     public static CPoolEntry detach(final HttpClientConnection proxy) {
-        return getHandler(proxy).detach();
+        return getProxy(proxy).detach();
     }
 
 }
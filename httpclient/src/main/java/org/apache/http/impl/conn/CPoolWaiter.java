@@ -0,0 +1,64 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+/**
+ * Connection request that can be queued in a route specific sub-pool of
+ * {@link CPool} until capacity becomes available. All methods except
+ * {@link #getPool()}, {@link #isDone()} and {@link #cancel(boolean)}
+ * must be called while holding the sub-pool lock.
+ *
+ * @since 4.3
+ */
+interface CPoolWaiter {
+
+    CRoutePool getPool();
+
+    boolean isDone();
+
+    boolean cancel(boolean mayInterruptIfRunning);
+
+    /**
+     * Returns <code>true</code> if the request has already been queued once
+     * and is no longer subject to the limit of pending requests.
+     */
+    boolean isAdmitted();
+
+    void setAdmitted();
+
+    /**
+     * Returns <code>true</code> if the request is currently queued in
+     * the sub-pool waiting for a connection.
+     */
+    boolean isWaiting();
+
+    /**
+     * Notifies the request that capacity may have become available.
+     */
+    void wakeup();
+
+}
@@ -0,0 +1,349 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.annotation.GuardedBy;
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.conn.routing.HttpRoute;
+
+/**
+ * Route specific sub-pool of {@link CPool}. Each sub-pool is guarded by
+ * its own lock, so that lease and release operations on different routes
+ * do not contend with each other. All methods of this class except
+ * {@link #getLeasedCount()}, {@link #getPendingCount()} and
+ * {@link #getAvailableCount()} must be called while holding {@link #lock}.
+ *
+ * @since 4.3
+ */
+@ThreadSafe
+class CRoutePool {
+
+    final ReentrantLock lock;
+
+    private final HttpRoute route;
+    private final AtomicInteger totalPending;
+    @GuardedBy("lock")
+    private final Set<CPoolEntry> leased;
+    @GuardedBy("lock")
+    private final LinkedList<CPoolEntry> available;
+    @GuardedBy("lock")
+    private final LinkedList<CPoolWaiter> pending;
+
+    private volatile int leasedCount;
+    private volatile int pendingCount;
+    private volatile int availableCount;
+
+    CRoutePool(final HttpRoute route, final AtomicInteger totalPending) {
+        super();
+        this.route = route;
+        this.totalPending = totalPending;
+        this.lock = new ReentrantLock();
+        this.leased = new HashSet<CPoolEntry>();
+        this.available = new LinkedList<CPoolEntry>();
+        this.pending = new LinkedList<CPoolWaiter>();
+    }
+
+    public final HttpRoute getRoute() {
+        return this.route;
+    }
+
+    /**
+     * Returns the number of leased connections. This method can be called
+     * without holding the lock.
+     */
+    public int getLeasedCount() {
+        return this.leasedCount;
+    }
+
+    /**
+     * Returns the number of pending requests. This method can be called
+     * without holding the lock.
+     */
+    public int getPendingCount() {
+        return this.pendingCount;
+    }
+
+    /**
+     * Returns the number of idle connections kept in this sub-pool.
+     * This method can be called without holding the lock.
+     */
+    public int getAvailableCount() {
+        return this.availableCount;
+    }
+
+    private void updateCounts() {
+        this.leasedCount = this.leased.size();
+        this.pendingCount = this.pending.size();
+        this.availableCount = this.available.size();
+    }
+
+    public int getAllocatedCount() {
+        return this.available.size() + this.leased.size();
+    }
+
+    public CPoolEntry getFree(final Object state, final PoolReusePolicy policy) {
+        if (!this.available.isEmpty()) {
+            CPoolEntry entry = null;
+            if (state != null) {
+                entry = find(state, policy);
+            }
+            if (entry == null) {
+                entry = find(null, policy);
+            }
+            if (entry != null) {
+                this.available.remove(entry);
+                this.leased.add(entry);
+                updateCounts();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds an idle entry with the given state. Idle entries are ordered
+     * from the most recently released to the least recently released one.
+     */
+    private CPoolEntry find(final Object state, final PoolReusePolicy policy) {
+        switch (policy) {
+        case FIFO:
+            ListIterator<CPoolEntry> it = this.available.listIterator(this.available.size());
+            while (it.hasPrevious()) {
+                CPoolEntry entry = it.previous();
+                if (matches(entry, state)) {
+                    return entry;
+                }
+            }
+            return null;
+        case LEAST_RECENTLY_ESTABLISHED:
+            CPoolEntry oldest = null;
+            for (CPoolEntry entry: this.available) {
+                if (matches(entry, state) &&
+                        (oldest == null || entry.getCreated() < oldest.getCreated())) {
+                    oldest = entry;
+                }
+            }
+            return oldest;
+        default:
+            for (CPoolEntry entry: this.available) {
+                if (matches(entry, state)) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static boolean matches(final CPoolEntry entry, final Object state) {
+        return state != null ? state.equals(entry.getState()) : entry.getState() == null;
+    }
+
+    public CPoolEntry getLastUsed() {
+        if (!this.available.isEmpty()) {
+            return this.available.getLast();
+        } else {
+            return null;
+        }
+    }
+
+    public boolean remove(final CPoolEntry entry) {
+        if (!this.available.remove(entry)) {
+            if (!this.leased.remove(entry)) {
+                return false;
+            }
+        }
+        updateCounts();
+        return true;
+    }
+
+    public void free(final CPoolEntry entry, boolean reusable) {
+        boolean found = this.leased.remove(entry);
+        if (!found) {
+            throw new IllegalStateException("Entry " + entry +
+                    " has not been leased from this pool");
+        }
+        if (reusable) {
+            this.available.addFirst(entry);
+        }
+        updateCounts();
+    }
+
+    public boolean isLeased(final CPoolEntry entry) {
+        return this.leased.contains(entry);
+    }
+
+    public void add(final CPoolEntry entry) {
+        this.leased.add(entry);
+        this.leasedCount = this.leased.size();
+    }
+
+    /**
+     * Returns a snapshot of idle entries that have not been used since
+     * the given deadline.
+     */
+    public List<CPoolEntry> getAvailable(final long idleDeadline) {
+        List<CPoolEntry> entries = new ArrayList<CPoolEntry>(this.available.size());
+        for (CPoolEntry entry: this.available) {
+            if (entry.getUpdated() <= idleDeadline) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Moves the given idle entry to the set of leased entries.
+     *
+     * @return <code>true</code> if the entry was idle, <code>false</code>
+     *   otherwise.
+     */
+    public boolean acquire(final CPoolEntry entry) {
+        if (!this.available.remove(entry)) {
+            return false;
+        }
+        this.leased.add(entry);
+        updateCounts();
+        return true;
+    }
+
+    /**
+     * Removes and returns all idle entries matching the given predicate.
+     * The entries are expected to be closed by the caller outside
+     * the sub-pool lock.
+     */
+    public LinkedList<CPoolEntry> removeAvailable(final long now, final long idleDeadline) {
+        LinkedList<CPoolEntry> removed = new LinkedList<CPoolEntry>();
+        Iterator<CPoolEntry> it = this.available.iterator();
+        while (it.hasNext()) {
+            CPoolEntry entry = it.next();
+            if (entry.getUpdated() <= idleDeadline || entry.isExpired(now)) {
+                it.remove();
+                removed.add(entry);
+            }
+        }
+        updateCounts();
+        return removed;
+    }
+
+    /**
+     * Adds the request to pending requests unless the number of requests
+     * pending for this route or for all routes has reached the given limit.
+     * Non-positive limits are not enforced.
+     *
+     * @return <code>true</code> if the request has been queued,
+     *   <code>false</code> otherwise.
+     */
+    public boolean queue(final CPoolWaiter future, int maxPending, int maxTotalPending) {
+        if (maxPending > 0 && this.pending.size() >= maxPending) {
+            return false;
+        }
+        for (;;) {
+            int n = this.totalPending.get();
+            if (maxTotalPending > 0 && n >= maxTotalPending) {
+                return false;
+            }
+            if (this.totalPending.compareAndSet(n, n + 1)) {
+                break;
+            }
+        }
+        this.pending.add(future);
+        this.pendingCount = this.pending.size();
+        return true;
+    }
+
+    /**
+     * Removes and returns the oldest pending request that has not been
+     * completed or cancelled yet.
+     */
+    public CPoolWaiter nextPending() {
+        CPoolWaiter future;
+        while ((future = this.pending.poll()) != null) {
+            this.totalPending.decrementAndGet();
+            this.pendingCount = this.pending.size();
+            if (!future.isDone()) {
+                break;
+            }
+        }
+        return future;
+    }
+
+    public void unqueue(final CPoolWaiter future) {
+        if (future == null) {
+            return;
+        }
+        if (this.pending.remove(future)) {
+            this.totalPending.decrementAndGet();
+            this.pendingCount = this.pending.size();
+        }
+    }
+
+    /**
+     * Removes all entries and pending requests from this sub-pool and
+     * returns the entries so that they can be closed by the caller.
+     */
+    public LinkedList<CPoolEntry> shutdown() {
+        LinkedList<CPoolEntry> entries = new LinkedList<CPoolEntry>();
+        List<CPoolWaiter> futures = new ArrayList<CPoolWaiter>(this.pending);
+        this.pending.clear();
+        this.totalPending.addAndGet(-futures.size());
+        for (CPoolWaiter future: futures) {
+            future.cancel(true);
+        }
+        entries.addAll(this.available);
+        this.available.clear();
+        entries.addAll(this.leased);
+        this.leased.clear();
+        updateCounts();
+        return entries;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append("[route: ");
+        buffer.append(this.route);
+        buffer.append("][leased: ");
+        buffer.append(this.leased.size());
+        buffer.append("][available: ");
+        buffer.append(this.available.size());
+        buffer.append("][pending: ");
+        buffer.append(this.pending.size());
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+}
@@ -0,0 +1,280 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.conn.DnsResolver;
+
+/**
+ * {@link DnsResolver} implementation that caches the results of the backing
+ * resolver including failed lookups. Each host is cached for the default
+ * time to live unless a host specific time to live has been defined.
+ * The cache is bounded by the maximum number of entries.
+ * <p/>
+ * If an {@link Executor} is given, entries are refreshed ahead of their
+ * expiry in the background once three quarters of their time to live have
+ * elapsed, so that frequently used hosts do not block connection setup while
+ * being resolved. The previously resolved addresses are returned while the
+ * refresh is in progress.
+ *
+ * @since 4.3
+ */
+@ThreadSafe
+public class CachingDnsResolver implements DnsResolver {
+
+    private final Log log = LogFactory.getLog(getClass());
+
+    private final DnsResolver dnsResolver;
+    private final long ttl;
+    private final long negativeTtl;
+    private final int maxEntries;
+    private final Executor executor;
+    private final ConcurrentHashMap<String, Entry> cache;
+    private final ConcurrentHashMap<String, Long> hostTtls;
+
+    /**
+     * @param dnsResolver backing resolver.
+     * @param ttl time to live of successfully resolved hosts.
+     * @param negativeTtl time to live of hosts that could not be resolved.
+     *   Non-positive value disables negative caching.
+     * @param tunit time unit of the time to live values.
+     * @param maxEntries maximum number of cached hosts.
+     * @param executor executor used to refresh entries ahead of their expiry.
+     *   May be <code>null</code>, in which case entries are only refreshed
+     *   once expired.
+     */
+    public CachingDnsResolver(
+            final DnsResolver dnsResolver,
+            long ttl, long negativeTtl, final TimeUnit tunit,
+            int maxEntries,
+            final Executor executor) {
+        super();
+        if (dnsResolver == null) {
+            throw new IllegalArgumentException("DNS resolver may not be null");
+        }
+        if (tunit == null) {
+            throw new IllegalArgumentException("Time unit may not be null");
+        }
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("Time to live may not be negative or zero");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries may not be negative or zero");
+        }
+        this.dnsResolver = dnsResolver;
+        this.ttl = tunit.toMillis(ttl);
+        this.negativeTtl = tunit.toMillis(negativeTtl);
+        this.maxEntries = maxEntries;
+        this.executor = executor;
+        this.cache = new ConcurrentHashMap<String, Entry>();
+        this.hostTtls = new ConcurrentHashMap<String, Long>();
+    }
+
+    public CachingDnsResolver(final DnsResolver dnsResolver, final Executor executor) {
+        this(dnsResolver, 60, 10, TimeUnit.SECONDS, 1000, executor);
+    }
+
+    public CachingDnsResolver() {
+        this(SystemDefaultDnsResolver.INSTANCE, null);
+    }
+
+    /**
+     * Defines time to live of successfully resolved addresses of the given host.
+     */
+    public void setTimeToLive(final String host, long ttl, final TimeUnit tunit) {
+        if (host == null) {
+            throw new IllegalArgumentException("Host name may not be null");
+        }
+        if (tunit == null) {
+            throw new IllegalArgumentException("Time unit may not be null");
+        }
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("Time to live may not be negative or zero");
+        }
+        this.hostTtls.put(host, Long.valueOf(tunit.toMillis(ttl)));
+    }
+
+    /**
+     * Removes the given host from the cache.
+     */
+    public void invalidate(final String host) {
+        if (host == null) {
+            throw new IllegalArgumentException("Host name may not be null");
+        }
+        this.cache.remove(host);
+    }
+
+    public void clear() {
+        this.cache.clear();
+    }
+
+    int size() {
+        return this.cache.size();
+    }
+
+    public InetAddress[] resolve(final String host) throws UnknownHostException {
+        long now = System.currentTimeMillis();
+        Entry entry = this.cache.get(host);
+        if (entry == null || entry.isExpired(now)) {
+            entry = lookup(host);
+        } else if (entry.isRefreshDue(now)) {
+            refresh(host, entry);
+        }
+        return entry.getAddresses();
+    }
+
+    private Entry lookup(final String host) {
+        Entry entry;
+        try {
+            InetAddress[] addresses = this.dnsResolver.resolve(host);
+            entry = new Entry(host, addresses, null, getTimeToLive(host));
+        } catch (UnknownHostException ex) {
+            entry = new Entry(host, null, ex, this.negativeTtl);
+        }
+        if (entry.ttl > 0) {
+            if (this.cache.size() >= this.maxEntries && !this.cache.containsKey(host)) {
+                evict();
+            }
+            this.cache.put(host, entry);
+        }
+        return entry;
+    }
+
+    private void refresh(final String host, final Entry entry) {
+        if (this.executor == null || !entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            this.executor.execute(new Runnable() {
+
+                public void run() {
+                    try {
+                        InetAddress[] addresses = dnsResolver.resolve(host);
+                        // Do not resurrect the entry if it has been removed in the meantime
+                        cache.replace(host, entry, new Entry(host, addresses, null, getTimeToLive(host)));
+                    } catch (UnknownHostException ex) {
+                        // Keep serving cached addresses until the entry expires
+                        if (log.isDebugEnabled()) {
+                            log.debug("Failed to refresh " + host + ": " + ex.getMessage());
+                        }
+                    }
+                }
+
+            });
+        } catch (RejectedExecutionException ex) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    private long getTimeToLive(final String host) {
+        Long hostTtl = this.hostTtls.get(host);
+        return hostTtl != null ? hostTtl.longValue() : this.ttl;
+    }
+
+    /**
+     * Makes room for a new entry by removing expired entries or, if there
+     * are none, the entry closest to its expiry.
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        Map.Entry<String, Entry> eldest = null;
+        boolean removed = false;
+        Iterator<Map.Entry<String, Entry>> it = this.cache.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> mapEntry = it.next();
+            Entry entry = mapEntry.getValue();
+            if (entry.isExpired(now)) {
+                it.remove();
+                removed = true;
+            } else if (eldest == null || entry.expiry < eldest.getValue().expiry) {
+                eldest = mapEntry;
+            }
+        }
+        if (!removed && eldest != null) {
+            this.cache.remove(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    static class Entry {
+
+        private final String host;
+        private final InetAddress[] addresses;
+        private final UnknownHostException failure;
+        private final long ttl;
+        private final long refreshAt;
+        private final long expiry;
+        final AtomicBoolean refreshing;
+
+        Entry(final String host,
+                final InetAddress[] addresses,
+                final UnknownHostException failure,
+                long ttl) {
+            super();
+            this.host = host;
+            this.addresses = addresses;
+            this.failure = failure;
+            this.ttl = ttl;
+            long now = System.currentTimeMillis();
+            this.refreshAt = now + ttl - ttl / 4;
+            this.expiry = now + ttl;
+            this.refreshing = new AtomicBoolean(false);
+        }
+
+        boolean isExpired(long now) {
+            return now >= this.expiry;
+        }
+
+        boolean isRefreshDue(long now) {
+            return this.addresses != null && now >= this.refreshAt && !this.refreshing.get();
+        }
+
+        InetAddress[] getAddresses() throws UnknownHostException {
+            if (this.addresses == null) {
+                UnknownHostException ex = new UnknownHostException(this.host + " cannot be resolved");
+                if (this.failure != null) {
+                    ex.initCause(this.failure);
+                }
+                throw ex;
+            }
+            return this.addresses.clone();
+        }
+
+    }
+
+}
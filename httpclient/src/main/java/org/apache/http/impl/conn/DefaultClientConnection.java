@@ -37,6 +37,7 @@ import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSocket;
 
 import org.apache.http.annotation.NotThreadSafe;
+import org.apache.http.concurrent.Cancellable;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -73,7 +74,7 @@ import org.apache.http.conn.OperatedClientConnection;
  * @since 4.0
  */
 @SuppressWarnings("deprecation")
-@NotThreadSafe // connSecure, targetHost
+@NotThreadSafe // connSecure, targetHost, inWire, outWire
 public class DefaultClientConnection extends SocketHttpClientConnection
     implements OperatedClientConnection, HttpSSLConnection, HttpContext {
 
@@ -93,12 +94,32 @@ public class DefaultClientConnection extends SocketHttpClientConnection
     /** True if this connection was shutdown. */
     private volatile boolean shutdown;
 
+    /** Connect attempts in progress before a socket is chosen. */
+    private volatile Cancellable connectAttempts;
+
     /** connection specific attributes */
     private final Map<String, Object> attributes;
 
+    /** Selects exchanges to be wire logged, all if <code>null</code>. */
+    private final WireLogSampler wireLogSampler;
+
+    private Wire inWire;
+    private Wire outWire;
+
     public DefaultClientConnection() {
+        this(null);
+    }
+
+    /**
+     * @param wireLogSampler selects the exchanges to be written to the wire
+     *   log, or <code>null</code> to log all of them.
+     *
+     * @since 4.3
+     */
+    public DefaultClientConnection(final WireLogSampler wireLogSampler) {
         super();
         this.attributes = new HashMap<String, Object>();
+        this.wireLogSampler = wireLogSampler;
     }
 
     public final HttpHost getTargetHost() {
@@ -135,6 +156,19 @@ public class DefaultClientConnection extends SocketHttpClientConnection
         }
     }
 
+    /**
+     * Registers connect attempts in progress, so that {@link #shutdown()}
+     * can abort them before a socket is passed to {@link #opening opening}.
+     * Passing <code>null</code> clears the registration.
+     */
+    void connecting(final Cancellable attempts) throws IOException {
+        this.connectAttempts = attempts;
+        if (attempts != null && this.shutdown) {
+            attempts.cancel();
+            throw new InterruptedIOException("Connection already shutdown");
+        }
+    }
+
     public void openCompleted(boolean secure, HttpParams params) throws IOException {
         assertNotOpen();
         if (params == null) {
@@ -161,6 +195,10 @@ public class DefaultClientConnection extends SocketHttpClientConnection
     @Override
     public void shutdown() throws IOException {
         shutdown = true;
+        Cancellable attempts = this.connectAttempts;
+        if (attempts != null) {
+            attempts.cancel();
+        }
         try {
             super.shutdown();
             if (log.isDebugEnabled()) {
@@ -199,9 +237,10 @@ public class DefaultClientConnection extends SocketHttpClientConnection
                 buffersize,
                 params);
         if (wireLog.isDebugEnabled()) {
+            this.inWire = new Wire(wireLog);
             inbuffer = new LoggingSessionInputBuffer(
                     inbuffer,
-                    new Wire(wireLog),
+                    this.inWire,
                     HttpProtocolParams.getHttpElementCharset(params));
         }
         return inbuffer;
@@ -220,9 +259,10 @@ public class DefaultClientConnection extends SocketHttpClientConnection
                 buffersize,
                 params);
         if (wireLog.isDebugEnabled()) {
+            this.outWire = new Wire(wireLog);
             outbuffer = new LoggingSessionOutputBuffer(
                     outbuffer,
-                    new Wire(wireLog),
+                    this.outWire,
                     HttpProtocolParams.getHttpElementCharset(params));
         }
         return outbuffer;
@@ -281,6 +321,15 @@ public class DefaultClientConnection extends SocketHttpClientConnection
         if (log.isDebugEnabled()) {
             log.debug("Sending request: " + request.getRequestLine());
         }
+        if (this.wireLogSampler != null && (this.inWire != null || this.outWire != null)) {
+            boolean muted = !this.wireLogSampler.isSampled(this.targetHost);
+            if (this.inWire != null) {
+                this.inWire.setMuted(muted);
+            }
+            if (this.outWire != null) {
+                this.outWire.setMuted(muted);
+            }
+        }
         super.sendRequestHeader(request);
         if (headerLog.isDebugEnabled()) {
             headerLog.debug(">> " + request.getRequestLine().toString());
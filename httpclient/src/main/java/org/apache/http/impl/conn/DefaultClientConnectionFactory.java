@@ -38,8 +38,23 @@ public class DefaultClientConnectionFactory implements HttpConnectionFactory<Def
 
     public static final DefaultClientConnectionFactory INSTANCE = new DefaultClientConnectionFactory();
 
+    private final WireLogSampler wireLogSampler;
+
+    /**
+     * @param wireLogSampler selects the exchanges to be written to the wire
+     *   log, or <code>null</code> to log all of them.
+     */
+    public DefaultClientConnectionFactory(final WireLogSampler wireLogSampler) {
+        super();
+        this.wireLogSampler = wireLogSampler;
+    }
+
+    public DefaultClientConnectionFactory() {
+        this(null);
+    }
+
     public DefaultClientConnection create() {
-        return new DefaultClientConnection();
+        return new DefaultClientConnection(this.wireLogSampler);
     }
 
 }
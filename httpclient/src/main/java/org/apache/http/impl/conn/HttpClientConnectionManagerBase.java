@@ -36,8 +36,10 @@ import java.util.concurrent.TimeoutException;
 import org.apache.http.HttpClientConnection;
 import org.apache.http.HttpHost;
 import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.conn.ConnPoolMetrics;
 import org.apache.http.conn.ConnectionPoolTimeoutException;
 import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.ConnectionRequestRejectedException;
 import org.apache.http.conn.DnsResolver;
 import org.apache.http.conn.HttpClientConnectionManager;
 import org.apache.http.conn.routing.HttpRoute;
@@ -61,6 +63,8 @@ abstract class HttpClientConnectionManagerBase implements HttpClientConnectionMa
     private final ConnPool<HttpRoute, CPoolEntry> pool;
     private final HttpClientConnectionOperator connectionOperator;
 
+    private volatile ConnPoolMetrics metrics;
+
     HttpClientConnectionManagerBase(
             final ConnPool<HttpRoute, CPoolEntry> pool,
             final SchemeRegistry schemeRegistry,
@@ -89,6 +93,38 @@ abstract class HttpClientConnectionManagerBase implements HttpClientConnectionMa
         return this.connectionOperator.getSchemeRegistry();
     }
 
+    HttpClientConnectionOperator getConnectionOperator() {
+        return this.connectionOperator;
+    }
+
+    /**
+     * Sets the listener to be notified of connection pool events in order
+     * to collect usage metrics. <code>null</code> disables collection of
+     * metrics.
+     */
+    public void setConnPoolMetrics(final ConnPoolMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public ConnPoolMetrics getConnPoolMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Defines delay in milliseconds after which another connection attempt
+     * is started in parallel if the host resolves to multiple addresses and
+     * the previous attempt has neither succeeded nor failed yet. The first
+     * connection to be established is used and the remaining attempts are
+     * aborted. Non-positive value disables parallel connection attempts.
+     */
+    public void setConnectAttemptDelay(int ms) {
+        this.connectionOperator.setConnectAttemptDelay(ms);
+    }
+
+    public int getConnectAttemptDelay() {
+        return this.connectionOperator.getConnectAttemptDelay();
+    }
+
     protected void onConnectionLeaseRequest(final HttpRoute route, final Object state) {
     }
 
@@ -118,7 +154,23 @@ abstract class HttpClientConnectionManagerBase implements HttpClientConnectionMa
             public HttpClientConnection get(
                     final long timeout,
                     final TimeUnit tunit) throws InterruptedException, ConnectionPoolTimeoutException {
-                return leaseConnection(future, timeout, tunit);
+                ConnPoolMetrics metrics = getConnPoolMetrics();
+                if (metrics == null) {
+                    return leaseConnection(future, timeout, tunit);
+                }
+                long start = System.nanoTime();
+                HttpClientConnection conn;
+                try {
+                    conn = leaseConnection(future, timeout, tunit);
+                } catch (ConnectionRequestRejectedException ex) {
+                    metrics.leaseRejected(route);
+                    throw ex;
+                } catch (ConnectionPoolTimeoutException ex) {
+                    metrics.leaseTimedOut(route, System.nanoTime() - start);
+                    throw ex;
+                }
+                metrics.leased(route, System.nanoTime() - start, conn.isOpen());
+                return conn;
             }
 
         };
@@ -142,6 +194,9 @@ abstract class HttpClientConnectionManagerBase implements HttpClientConnectionMa
             return CPoolProxy.newProxy(entry);
         } catch (ExecutionException ex) {
             Throwable cause = ex.getCause();
+            if (cause instanceof ConnectionRequestRejectedException) {
+                throw (ConnectionRequestRejectedException) cause;
+            }
             if (cause == null) {
                 cause = ex;
             }
@@ -188,12 +243,16 @@ abstract class HttpClientConnectionManagerBase implements HttpClientConnectionMa
         if (managedConn == null) {
             throw new IllegalArgumentException("Connection may not be null");
         }
-        DefaultClientConnection conn;
+        CPoolEntry entry;
         synchronized (managedConn) {
-            CPoolEntry entry = CPoolProxy.getPoolEntry(managedConn);
-            conn = entry.getConnection();
+            entry = CPoolProxy.getPoolEntry(managedConn);
+        }
+        ConnPoolMetrics metrics = this.metrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        this.connectionOperator.connect(entry.getConnection(), host, local, context, params);
+        if (metrics != null) {
+            metrics.connected(entry.getRoute(), System.nanoTime() - start);
         }
-        this.connectionOperator.connect(conn, host, local, context, params);
     }
 
     public void upgrade(
@@ -204,12 +263,16 @@ abstract class HttpClientConnectionManagerBase implements HttpClientConnectionMa
         if (managedConn == null) {
             throw new IllegalArgumentException("Connection may not be null");
         }
-        DefaultClientConnection conn;
+        CPoolEntry entry;
         synchronized (managedConn) {
-            CPoolEntry entry = CPoolProxy.getPoolEntry(managedConn);
-            conn = entry.getConnection();
+            entry = CPoolProxy.getPoolEntry(managedConn);
+        }
+        ConnPoolMetrics metrics = this.metrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        this.connectionOperator.upgrade(entry.getConnection(), host, context, params);
+        if (metrics != null) {
+            metrics.upgraded(entry.getRoute(), System.nanoTime() - start);
         }
-        this.connectionOperator.upgrade(conn, host, context, params);
     }
 
 }
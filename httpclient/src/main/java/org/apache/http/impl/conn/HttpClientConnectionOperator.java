@@ -27,16 +27,30 @@
 package org.apache.http.impl.conn;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.ConnectException;
+import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.HttpHost;
-import org.apache.http.annotation.Immutable;
+import org.apache.http.annotation.ThreadSafe;
 import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.concurrent.Cancellable;
 import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.conn.DnsResolver;
 import org.apache.http.conn.HttpClientConnectionManager;
@@ -49,13 +63,16 @@ import org.apache.http.conn.scheme.SchemeSocketFactory;
 import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.HttpContext;
 
-@Immutable
+@ThreadSafe
 class HttpClientConnectionOperator {
 
     private final Log log = LogFactory.getLog(HttpClientConnectionManager.class);
 
     private final SchemeRegistry schemeRegistry;
     private final DnsResolver dnsResolver;
+    private final ExecutorService connectExecutor;
+
+    private volatile int connectAttemptDelay;
 
     HttpClientConnectionOperator(
             final SchemeRegistry schemeRegistry,
@@ -66,6 +83,18 @@ class HttpClientConnectionOperator {
         }
         this.schemeRegistry = schemeRegistry;
         this.dnsResolver = dnsResolver != null ? dnsResolver : SystemDefaultDnsResolver.INSTANCE;
+        // Staggered connect attempts run on daemon threads that are reused
+        // across connects and terminate when idle
+        this.connectExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadFactory() {
+
+            public Thread newThread(final Runnable r) {
+                Thread t = new Thread(r, "httpclient-connect");
+                t.setDaemon(true);
+                return t;
+            }
+
+        });
     }
 
     public SchemeRegistry getSchemeRegistry() {
@@ -76,6 +105,23 @@ class HttpClientConnectionOperator {
         return this.dnsResolver;
     }
 
+    public int getConnectAttemptDelay() {
+        return this.connectAttemptDelay;
+    }
+
+    public void setConnectAttemptDelay(int ms) {
+        this.connectAttemptDelay = ms;
+    }
+
+    /**
+     * Releases the threads used for staggered connect attempts. Connects
+     * attempted after shutdown fail unless the connect attempt delay is
+     * disabled.
+     */
+    public void shutdown() {
+        this.connectExecutor.shutdown();
+    }
+
     private SchemeRegistry getSchemeRegistry(final HttpContext context) {
         SchemeRegistry reg = (SchemeRegistry) context.getAttribute(
                 ClientContext.SCHEME_REGISTRY);
@@ -97,6 +143,11 @@ class HttpClientConnectionOperator {
 
         InetAddress[] addresses = this.dnsResolver.resolve(host.getHostName());
         int port = schm.resolvePort(host.getPort());
+        int delay = this.connectAttemptDelay;
+        if (delay > 0 && addresses.length > 1) {
+            connectStaggered(conn, host, interleave(addresses), port, local, sf, delay, params);
+            return;
+        }
         for (int i = 0; i < addresses.length; i++) {
             InetAddress address = addresses[i];
             boolean last = i == addresses.length - 1;
@@ -136,6 +187,282 @@ class HttpClientConnectionOperator {
         }
     }
 
+    /**
+     * Reorders addresses so that address families alternate, starting with
+     * the family of the first address.
+     */
+    static InetAddress[] interleave(final InetAddress[] addresses) {
+        LinkedList<InetAddress> preferred = new LinkedList<InetAddress>();
+        LinkedList<InetAddress> other = new LinkedList<InetAddress>();
+        boolean ipv6 = addresses[0] instanceof Inet6Address;
+        for (InetAddress address: addresses) {
+            if ((address instanceof Inet6Address) == ipv6) {
+                preferred.add(address);
+            } else {
+                other.add(address);
+            }
+        }
+        InetAddress[] result = new InetAddress[addresses.length];
+        int i = 0;
+        while (!preferred.isEmpty() || !other.isEmpty()) {
+            if (!preferred.isEmpty()) {
+                result[i++] = preferred.removeFirst();
+            }
+            if (!other.isEmpty()) {
+                result[i++] = other.removeFirst();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Races connection attempts to the given addresses. A new attempt is
+     * started whenever the previous one fails or has not completed within
+     * the given delay. The first socket to connect is kept and all other
+     * attempts are aborted. Only connect failures and timeouts cause
+     * the next address to be tried, as with sequential connects.
+     */
+    private void connectStaggered(
+            final DefaultClientConnection conn,
+            final HttpHost host,
+            final InetAddress[] addresses,
+            final int port,
+            final InetAddress local,
+            final SchemeSocketFactory sf,
+            final int delay,
+            final HttpParams params) throws IOException {
+        BlockingQueue<ConnectAttempt> completed = new LinkedBlockingQueue<ConnectAttempt>();
+        ConnectAttempts attempts = new ConnectAttempts(completed);
+        InetSocketAddress localAddress = null;
+        if (local != null) {
+            localAddress = new InetSocketAddress(local, 0);
+        }
+        conn.connecting(attempts);
+        ConnectAttempt winner = null;
+        Socket sock = null;
+        try {
+            InetSocketAddress lastAddress = null;
+            int started = 0;
+            int failed = 0;
+            for (;;) {
+                if (started < addresses.length) {
+                    lastAddress = new HttpInetSocketAddress(host, addresses[started], port);
+                    if (this.log.isDebugEnabled()) {
+                        this.log.debug("Connecting to " + lastAddress);
+                    }
+                    ConnectAttempt attempt = new ConnectAttempt(
+                            sf, sf.createSocket(params), lastAddress, localAddress, params, completed);
+                    started++;
+                    if (!attempts.add(attempt)) {
+                        throw new InterruptedIOException("Connection already shutdown");
+                    }
+                    try {
+                        this.connectExecutor.execute(attempt);
+                    } catch (RejectedExecutionException ex) {
+                        throw new InterruptedIOException("Connection operator shut down");
+                    }
+                }
+                ConnectAttempt attempt;
+                if (started < addresses.length) {
+                    attempt = completed.poll(delay, TimeUnit.MILLISECONDS);
+                } else {
+                    attempt = completed.take();
+                }
+                if (attempts.isCancelled()) {
+                    throw new InterruptedIOException("Connection already shutdown");
+                }
+                if (attempt == null) {
+                    if (this.log.isDebugEnabled()) {
+                        this.log.debug("Connect to " + lastAddress +
+                                " is taking longer than " + delay + " ms. " +
+                                "Connection will be attempted using another IP address");
+                    }
+                    continue;
+                }
+                sock = attempt.getSocket();
+                if (sock != null) {
+                    winner = attempt;
+                    break;
+                }
+                failed++;
+                IOException ex = attempt.getException();
+                if (ex == null || attempts.isCancelled()) {
+                    // Aborted by a shutdown after the check above
+                    throw new InterruptedIOException("Connection already shutdown");
+                }
+                if (!(ex instanceof ConnectException) && !(ex instanceof ConnectTimeoutException)) {
+                    throw ex;
+                }
+                if (failed == addresses.length) {
+                    if (ex instanceof ConnectException) {
+                        throw new HttpHostConnectException(host, (ConnectException) ex);
+                    }
+                    throw ex;
+                }
+                if (this.log.isDebugEnabled()) {
+                    this.log.debug("Connect to " + attempt.remoteAddress + " failed: " + ex.getMessage());
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Connect to " + host + " interrupted");
+        } finally {
+            conn.connecting(null);
+            attempts.abortAllExcept(winner);
+        }
+        conn.opening(sock, host);
+        conn.openCompleted(sf.isSecure(sock), params);
+    }
+
+    /**
+     * Connect attempts of a single staggered connect. Cancelling aborts
+     * all attempts started so far and any attempt added afterwards, and
+     * wakes up the thread waiting for an attempt to complete.
+     */
+    static class ConnectAttempts implements Cancellable {
+
+        private static final ConnectAttempt WAKEUP = new ConnectAttempt(null, null, null, null, null, null);
+
+        private final BlockingQueue<ConnectAttempt> completed;
+        private final List<ConnectAttempt> attempts;
+        private boolean cancelled;
+
+        ConnectAttempts(final BlockingQueue<ConnectAttempt> completed) {
+            super();
+            this.completed = completed;
+            this.attempts = new ArrayList<ConnectAttempt>();
+        }
+
+        boolean add(final ConnectAttempt attempt) {
+            synchronized (this) {
+                if (!this.cancelled) {
+                    this.attempts.add(attempt);
+                    return true;
+                }
+            }
+            attempt.abort();
+            return false;
+        }
+
+        synchronized boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        public boolean cancel() {
+            List<ConnectAttempt> snapshot;
+            synchronized (this) {
+                if (this.cancelled) {
+                    return false;
+                }
+                this.cancelled = true;
+                snapshot = new ArrayList<ConnectAttempt>(this.attempts);
+            }
+            for (ConnectAttempt attempt: snapshot) {
+                attempt.abort();
+            }
+            this.completed.add(WAKEUP);
+            return true;
+        }
+
+        void abortAllExcept(final ConnectAttempt keep) {
+            List<ConnectAttempt> snapshot;
+            synchronized (this) {
+                snapshot = new ArrayList<ConnectAttempt>(this.attempts);
+            }
+            for (ConnectAttempt attempt: snapshot) {
+                if (attempt != keep) {
+                    attempt.abort();
+                }
+            }
+        }
+
+    }
+
+    static class ConnectAttempt implements Runnable {
+
+        private final SchemeSocketFactory sf;
+        private final InetSocketAddress remoteAddress;
+        private final InetSocketAddress localAddress;
+        private final HttpParams params;
+        private final BlockingQueue<ConnectAttempt> completed;
+
+        private Socket socket;
+        private IOException exception;
+        private boolean aborted;
+
+        ConnectAttempt(
+                final SchemeSocketFactory sf,
+                final Socket socket,
+                final InetSocketAddress remoteAddress,
+                final InetSocketAddress localAddress,
+                final HttpParams params,
+                final BlockingQueue<ConnectAttempt> completed) {
+            super();
+            this.sf = sf;
+            this.socket = socket;
+            this.remoteAddress = remoteAddress;
+            this.localAddress = localAddress;
+            this.params = params;
+            this.completed = completed;
+        }
+
+        public void run() {
+            Socket sock;
+            synchronized (this) {
+                sock = this.socket;
+            }
+            Socket connsock = null;
+            IOException failure = null;
+            try {
+                connsock = this.sf.connectSocket(sock, this.remoteAddress, this.localAddress, this.params);
+            } catch (IOException ex) {
+                failure = ex;
+            } catch (RuntimeException ex) {
+                failure = (IOException) new IOException(ex.getMessage()).initCause(ex);
+            }
+            if (failure != null) {
+                closeQuietly(sock);
+            }
+            boolean discard;
+            synchronized (this) {
+                this.socket = connsock;
+                this.exception = failure;
+                discard = this.aborted && connsock != null;
+            }
+            if (discard) {
+                closeQuietly(connsock);
+            }
+            this.completed.add(this);
+        }
+
+        synchronized Socket getSocket() {
+            return this.aborted ? null : this.socket;
+        }
+
+        synchronized IOException getException() {
+            return this.exception;
+        }
+
+        void abort() {
+            Socket sock;
+            synchronized (this) {
+                this.aborted = true;
+                sock = this.socket;
+            }
+            closeQuietly(sock);
+        }
+
+        private static void closeQuietly(final Socket sock) {
+            if (sock != null) {
+                try {
+                    sock.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+
+    }
+
     public void upgrade(
             final DefaultClientConnection conn,
             final HttpHost host,
@@ -0,0 +1,155 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.conn.HttpClientConnectionManager;
+
+/**
+ * Daemon thread that periodically evicts expired connections and optionally
+ * connections that have been idle longer than the given period of time from
+ * the connection pool. Connections are closed without holding the pool lock.
+ * <p/>
+ * If created for {@link PoolingHttpClientConnectionManager} with no maximum
+ * idle time, the evictor also checks idle connections for staleness and
+ * closes those that have been shut down by the opposite endpoint while
+ * sitting in the pool.
+ *
+ * @since 4.3
+ */
+@ThreadSafe
+public class IdleConnectionEvictor {
+
+    private final HttpClientConnectionManager connManager;
+    private final long sleepTimeMs;
+    private final long maxIdleTimeMs;
+    private final boolean checkStale;
+    private final Thread thread;
+
+    private volatile Exception exception;
+
+    private IdleConnectionEvictor(
+            final HttpClientConnectionManager connManager,
+            long sleepTime, final TimeUnit sleepTimeUnit,
+            long maxIdleTime, final TimeUnit maxIdleTimeUnit,
+            boolean checkStale) {
+        super();
+        if (connManager == null) {
+            throw new IllegalArgumentException("Connection manager may not be null");
+        }
+        if (sleepTimeUnit == null) {
+            throw new IllegalArgumentException("Time unit may not be null");
+        }
+        if (sleepTime <= 0) {
+            throw new IllegalArgumentException("Sleep time may not be negative or zero");
+        }
+        this.connManager = connManager;
+        this.sleepTimeMs = sleepTimeUnit.toMillis(sleepTime);
+        this.maxIdleTimeMs = maxIdleTimeUnit != null ? maxIdleTimeUnit.toMillis(maxIdleTime) : maxIdleTime;
+        this.checkStale = checkStale;
+        this.thread = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        Thread.sleep(sleepTimeMs);
+                        evict();
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception ex) {
+                    exception = ex;
+                }
+            }
+
+        }, "Connection evictor");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Creates an evictor that closes expired connections and connections
+     * idle longer than <code>maxIdleTime</code>. Non-positive max idle time
+     * disables eviction of idle connections.
+     */
+    public IdleConnectionEvictor(
+            final HttpClientConnectionManager connManager,
+            long sleepTime, final TimeUnit sleepTimeUnit,
+            long maxIdleTime, final TimeUnit maxIdleTimeUnit) {
+        this(connManager, sleepTime, sleepTimeUnit, maxIdleTime, maxIdleTimeUnit, false);
+    }
+
+    /**
+     * Creates an evictor that closes expired and stale connections.
+     *
+     * @see PoolingHttpClientConnectionManager#closeStaleConnections()
+     */
+    public IdleConnectionEvictor(
+            final PoolingHttpClientConnectionManager connManager,
+            long sleepTime, final TimeUnit tunit) {
+        this(connManager, sleepTime, tunit, -1, TimeUnit.MILLISECONDS, true);
+    }
+
+    /**
+     * Performs a single eviction run.
+     */
+    protected void evict() {
+        this.connManager.closeExpiredConnections();
+        if (this.maxIdleTimeMs > 0) {
+            this.connManager.closeIdleConnections(this.maxIdleTimeMs, TimeUnit.MILLISECONDS);
+        }
+        if (this.checkStale) {
+            ((PoolingHttpClientConnectionManager) this.connManager).closeStaleConnections();
+        }
+    }
+
+    public void start() {
+        this.thread.start();
+    }
+
+    public void shutdown() {
+        this.thread.interrupt();
+    }
+
+    public boolean isRunning() {
+        return this.thread.isAlive();
+    }
+
+    /**
+     * Returns the exception that terminated the eviction thread
+     * or <code>null</code> if the thread has not failed.
+     */
+    public Exception getException() {
+        return this.exception;
+    }
+
+    public void awaitTermination(long time, final TimeUnit tunit) throws InterruptedException {
+        this.thread.join((tunit != null ? tunit : TimeUnit.MILLISECONDS).toMillis(time));
+    }
+
+}
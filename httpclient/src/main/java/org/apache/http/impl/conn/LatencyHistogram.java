@@ -0,0 +1,136 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * Low overhead latency histogram with power of two buckets. Recording
+ * a value takes a few atomic operations and no locks. Percentiles are
+ * approximated by the upper bound of the bucket they fall into.
+ *
+ * @since 4.3
+ */
+@ThreadSafe
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets;
+    private final AtomicLong count;
+    private final AtomicLong total;
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        super();
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.count = new AtomicLong();
+        this.total = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Records the given value in nanoseconds. Negative values are recorded
+     * as zero.
+     */
+    public void record(long value) {
+        long v = value > 0 ? value : 0;
+        // Bucket i holds values of bit length i, that is [2^(i-1), 2^i)
+        this.buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(v));
+        this.count.incrementAndGet();
+        this.total.addAndGet(v);
+        for (;;) {
+            long current = this.max.get();
+            if (v <= current || this.max.compareAndSet(current, v)) {
+                break;
+            }
+        }
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    public long getTotal(final TimeUnit tunit) {
+        return tunit.convert(this.total.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMax(final TimeUnit tunit) {
+        return tunit.convert(this.max.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMean(final TimeUnit tunit) {
+        long n = this.count.get();
+        return n > 0 ? tunit.convert(this.total.get() / n, TimeUnit.NANOSECONDS) : 0;
+    }
+
+    /**
+     * Returns an upper bound of the given percentile of recorded values.
+     *
+     * @param percentile percentile between 0 and 100.
+     * @param tunit time unit of the result.
+     */
+    public long getPercentile(double percentile, final TimeUnit tunit) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        long[] snapshot = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = this.buckets.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100 * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && snapshot[i] > 0) {
+                long bound = i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+                return tunit.convert(Math.min(bound, this.max.get()), TimeUnit.NANOSECONDS);
+            }
+        }
+        return getMax(tunit);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append("[count: ").append(getCount());
+        buffer.append("; mean: ").append(getMean(TimeUnit.MICROSECONDS)).append(" us");
+        buffer.append("; p99: ").append(getPercentile(99, TimeUnit.MICROSECONDS)).append(" us");
+        buffer.append("; max: ").append(getMax(TimeUnit.MICROSECONDS)).append(" us]");
+        return buffer.toString();
+    }
+
+}
@@ -105,8 +105,12 @@ public class LoggingSessionInputBuffer implements SessionInputBuffer, EofSensor
     public String readLine() throws IOException {
         String s = this.in.readLine();
         if (this.wire.enabled() && s != null) {
-            String tmp = s + "\r\n";
-            this.wire.input(tmp.getBytes(this.charset));
+            if (Wire.isAscii(s)) {
+                this.wire.inputLine(s);
+            } else {
+                String tmp = s + "\r\n";
+                this.wire.input(tmp.getBytes(this.charset));
+            }
         }
         return s;
     }
@@ -115,9 +119,13 @@ public class LoggingSessionInputBuffer implements SessionInputBuffer, EofSensor
         int l = this.in.readLine(buffer);
         if (this.wire.enabled() && l >= 0) {
             int pos = buffer.length() - l;
-            String s = new String(buffer.buffer(), pos, l);
-            String tmp = s + "\r\n";
-            this.wire.input(tmp.getBytes(this.charset));
+            if (Wire.isAscii(buffer.buffer(), pos, l)) {
+                this.wire.inputLine(buffer.buffer(), pos, l);
+            } else {
+                String s = new String(buffer.buffer(), pos, l);
+                String tmp = s + "\r\n";
+                this.wire.input(tmp.getBytes(this.charset));
+            }
         }
         return l;
     }
@@ -98,17 +98,25 @@ public class LoggingSessionOutputBuffer implements SessionOutputBuffer {
     public void writeLine(final CharArrayBuffer buffer) throws IOException {
         this.out.writeLine(buffer);
         if (this.wire.enabled()) {
-            String s = new String(buffer.buffer(), 0, buffer.length());
-            String tmp = s + "\r\n";
-            this.wire.output(tmp.getBytes(this.charset));
+            if (Wire.isAscii(buffer.buffer(), 0, buffer.length())) {
+                this.wire.outputLine(buffer.buffer(), 0, buffer.length());
+            } else {
+                String s = new String(buffer.buffer(), 0, buffer.length());
+                String tmp = s + "\r\n";
+                this.wire.output(tmp.getBytes(this.charset));
+            }
         }
     }
 
     public void writeLine(final String s) throws IOException {
         this.out.writeLine(s);
-        if (this.wire.enabled()) {
-            String tmp = s + "\r\n";
-            this.wire.output(tmp.getBytes(this.charset));
+        if (this.wire.enabled() && s != null) {
+            if (Wire.isAscii(s)) {
+                this.wire.outputLine(s);
+            } else {
+                String tmp = s + "\r\n";
+                this.wire.output(tmp.getBytes(this.charset));
+            }
         }
     }
 
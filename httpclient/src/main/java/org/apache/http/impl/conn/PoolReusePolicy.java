@@ -0,0 +1,54 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+/**
+ * Order in which idle persistent connections are reused by the pool.
+ *
+ * @since 4.3
+ */
+public enum PoolReusePolicy {
+
+    /**
+     * The most recently released connection is reused first. A small set of
+     * connections is kept busy while the remaining ones go idle and can be
+     * evicted, which reduces the number of open connections.
+     */
+    LIFO,
+
+    /**
+     * The least recently released connection is reused first. Load is
+     * spread evenly across all pooled connections.
+     */
+    FIFO,
+
+    /**
+     * The connection that was established earliest is reused first.
+     */
+    LEAST_RECENTLY_ESTABLISHED
+
+}
@@ -27,17 +27,36 @@
 package org.apache.http.impl.conn;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
 import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnPoolMetrics;
+import org.apache.http.conn.ConnectionRequestRejectedException;
 import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.HttpConnectionFactory;
 import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpParams;
 import org.apache.http.pool.ConnPoolControl;
 import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.BasicHttpContext;
 
 /**
  * <tt>ClientConnectionPoolManager</tt> maintains a pool of
@@ -60,6 +79,9 @@ import org.apache.http.pool.PoolStats;
 @ThreadSafe
 public class PoolingHttpClientConnectionManager extends HttpClientConnectionManagerBase {
 
+    /** Maximum number of threads opening connections for a single pre-warm call. */
+    private static final int MAX_PREWARM_THREADS = 8;
+
     private final Log log = LogFactory.getLog(getClass());
 
     private final CPool pool;
@@ -90,6 +112,19 @@ public class PoolingHttpClientConnectionManager extends HttpClientConnectionMana
         this(new CPool(2, 20, timeToLive, tunit), schemeRegistry, dnsResolver);
     }
 
+    /**
+     * @param connFactory factory of connections to be pooled, for instance
+     *   a {@link DefaultClientConnectionFactory} with a {@link WireLogSampler}.
+     *   If <code>null</code> the default factory is used.
+     */
+    public PoolingHttpClientConnectionManager(
+            final SchemeRegistry schemeRegistry,
+            final DnsResolver dnsResolver,
+            final HttpConnectionFactory<DefaultClientConnection> connFactory,
+            final long timeToLive, final TimeUnit tunit) {
+        this(new CPool(2, 20, timeToLive, tunit, connFactory), schemeRegistry, dnsResolver);
+    }
+
     PoolingHttpClientConnectionManager(
             final CPool pool,
             final SchemeRegistry schemeRegistry,
@@ -181,6 +216,7 @@ public class PoolingHttpClientConnectionManager extends HttpClientConnectionMana
         } catch (IOException ex) {
             this.log.debug("I/O exception shutting down connection manager", ex);
         }
+        getConnectionOperator().shutdown();
         this.log.debug("Connection manager shut down");
     }
 
@@ -196,6 +232,285 @@ public class PoolingHttpClientConnectionManager extends HttpClientConnectionMana
         this.pool.closeExpired();
     }
 
+    /**
+     * Checks persistent connections kept alive in the pool for staleness
+     * and closes those that have been shut down by the opposite endpoint.
+     * If validation after inactivity is enabled only connections idle longer
+     * than {@link #getValidateAfterInactivity()} are checked.
+     */
+    public void closeStaleConnections() {
+        this.log.debug("Closing stale connections");
+        this.pool.closeStale();
+    }
+
+    /**
+     * Defines period of inactivity in milliseconds after which persistent
+     * connections must be re-validated prior to being leased to the consumer.
+     * Non-positive value passed to this method disables connection validation.
+     * <p/>
+     * Connection validation performed by the pool makes the per request
+     * stale connection check ({@link
+     * org.apache.http.params.CoreConnectionPNames#STALE_CONNECTION_CHECK})
+     * redundant, so the latter can be disabled.
+     */
+    public void setValidateAfterInactivity(int ms) {
+        this.pool.setValidateAfterInactivity(ms);
+    }
+
+    public int getValidateAfterInactivity() {
+        return this.pool.getValidateAfterInactivity();
+    }
+
+    /**
+     * Requests a connection for the given route without blocking the calling
+     * thread. The returned future gets completed and the callback notified
+     * once a connection is available. If the pool has no capacity to serve
+     * the request immediately, the request gets completed by the thread that
+     * releases a connection back to the pool, so callbacks must not block.
+     * <p/>
+     * The request is not subject to a timeout. It remains pending until
+     * it is served, cancelled through the returned future or the manager is
+     * shut down.
+     *
+     * @param route the route.
+     * @param state the expected state of the connection.
+     * @param callback the callback, may be <code>null</code>.
+     * @return future of the leased connection.
+     */
+    public Future<HttpClientConnection> requestConnection(
+            final HttpRoute route,
+            final Object state,
+            final FutureCallback<HttpClientConnection> callback) {
+        if (route == null) {
+            throw new IllegalArgumentException("HTTP route may not be null");
+        }
+        onConnectionLeaseRequest(route, state);
+        final long start = System.nanoTime();
+        final ConnectionFuture future = new ConnectionFuture(callback);
+        future.setPoolFuture(this.pool.leaseAsync(route, state, new FutureCallback<CPoolEntry>() {
+
+            public void completed(final CPoolEntry entry) {
+                onConnectionLease(entry);
+                HttpClientConnection conn = CPoolProxy.newProxy(entry);
+                ConnPoolMetrics metrics = getConnPoolMetrics();
+                if (metrics != null) {
+                    metrics.leased(route, System.nanoTime() - start, conn.isOpen());
+                }
+                if (!future.completed(conn)) {
+                    releaseConnection(conn, entry.getState(), 0, TimeUnit.MILLISECONDS);
+                }
+            }
+
+            public void failed(final Exception ex) {
+                ConnPoolMetrics metrics = getConnPoolMetrics();
+                if (metrics != null && ex instanceof ConnectionRequestRejectedException) {
+                    metrics.leaseRejected(route);
+                }
+                future.failed(ex);
+            }
+
+            public void cancelled() {
+                future.cancel(true);
+            }
+
+        }));
+        return future;
+    }
+
+    /**
+     * Connection future that passes cancellation on to the pool.
+     */
+    static class ConnectionFuture extends BasicFuture<HttpClientConnection> {
+
+        private volatile Future<CPoolEntry> poolFuture;
+
+        ConnectionFuture(final FutureCallback<HttpClientConnection> callback) {
+            super(callback);
+        }
+
+        void setPoolFuture(final Future<CPoolEntry> poolFuture) {
+            this.poolFuture = poolFuture;
+            if (isCancelled()) {
+                poolFuture.cancel(true);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            Future<CPoolEntry> poolFuture = this.poolFuture;
+            if (cancelled && poolFuture != null) {
+                poolFuture.cancel(true);
+            }
+            return cancelled;
+        }
+
+    }
+
+    /**
+     * Opens new connections for the given route in parallel until the route
+     * has <code>count</code> connections, subject to per route and total
+     * limits, and keeps them alive in the pool. This method does not wait for
+     * capacity to become available and returns once all connection attempts
+     * have completed. Tunnelled routes cannot be pre-warmed.
+     *
+     * @param route the route.
+     * @param count desired number of connections for the route.
+     * @param params parameters used to open the connections.
+     * @return number of connections that have been established.
+     */
+    public int prewarm(
+            final HttpRoute route, int count,
+            final HttpParams params) throws InterruptedException {
+        if (route == null) {
+            throw new IllegalArgumentException("Route may not be null");
+        }
+        if (route.isTunnelled()) {
+            throw new IllegalArgumentException("Tunnelled route may not be pre-warmed");
+        }
+        if (params == null) {
+            throw new IllegalArgumentException("HTTP parameters may not be null");
+        }
+        List<CPoolEntry> entries = this.pool.allocate(route, count);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        if (this.log.isDebugEnabled()) {
+            this.log.debug("Pre-warming " + entries.size() + " connection(s): " +
+                    format(route, null) + formatStats(route));
+        }
+        final HttpClientConnectionOperator connectionOperator = getConnectionOperator();
+        final HttpHost host = route.getProxyHost() != null ? route.getProxyHost() : route.getTargetHost();
+        int threads = Math.min(entries.size(), MAX_PREWARM_THREADS);
+        ExecutorService executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            public Thread newThread(final Runnable r) {
+                Thread t = new Thread(r, "httpclient-prewarm");
+                t.setDaemon(true);
+                return t;
+            }
+
+        });
+        boolean completed = false;
+        int established = 0;
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>(entries.size());
+            for (final CPoolEntry entry: entries) {
+                futures.add(executor.submit(new Callable<Object>() {
+
+                    public Object call() throws IOException {
+                        connectionOperator.connect(
+                                entry.getConnection(), host, route.getLocalAddress(),
+                                new BasicHttpContext(), params);
+                        return null;
+                    }
+
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException ex) {
+                    if (this.log.isDebugEnabled()) {
+                        this.log.debug("Failed to pre-warm connection " + format(entries.get(i)),
+                                ex.getCause());
+                    }
+                }
+            }
+            completed = true;
+        } finally {
+            executor.shutdown();
+            if (!completed) {
+                // Abort connects still in progress
+                for (CPoolEntry entry: entries) {
+                    try {
+                        entry.getConnection().shutdown();
+                    } catch (IOException ex) {
+                        this.log.debug("I/O exception shutting down connection", ex);
+                    }
+                }
+            }
+            // Workers must not touch the connections once they are back in the pool
+            awaitTermination(executor);
+            for (CPoolEntry entry: entries) {
+                boolean open = entry.getConnection().isOpen();
+                if (open) {
+                    established++;
+                }
+                this.pool.release(entry, open);
+            }
+        }
+        return established;
+    }
+
+    private static void awaitTermination(final ExecutorService executor) {
+        boolean interrupted = false;
+        for (;;) {
+            try {
+                if (executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int prewarm(final HttpRoute route, int count) throws InterruptedException {
+        return prewarm(route, count, new BasicHttpParams());
+    }
+
+    /**
+     * Defines the order in which idle persistent connections are reused.
+     * Defaults to {@link PoolReusePolicy#LIFO}.
+     */
+    public void setReusePolicy(final PoolReusePolicy reusePolicy) {
+        this.pool.setReusePolicy(reusePolicy);
+    }
+
+    public PoolReusePolicy getReusePolicy() {
+        return this.pool.getReusePolicy();
+    }
+
+    /**
+     * Defines the maximum number of connection requests that may wait for
+     * a connection per route. Once the limit is reached further requests
+     * fail immediately with {@link ConnectionRequestRejectedException}
+     * instead of waiting for the connection request timeout. Non-positive
+     * value removes the limit, which is the default.
+     */
+    public void setMaxPendingPerRoute(int max) {
+        this.pool.setMaxPendingPerRoute(max);
+    }
+
+    public int getMaxPendingPerRoute() {
+        return this.pool.getMaxPendingPerRoute();
+    }
+
+    /**
+     * Defines the maximum number of connection requests that may wait for
+     * a connection across all routes. Once the limit is reached further
+     * requests fail immediately with {@link ConnectionRequestRejectedException}.
+     * Non-positive value removes the limit, which is the default.
+     */
+    public void setMaxPendingTotal(int max) {
+        this.pool.setMaxPendingTotal(max);
+    }
+
+    public int getMaxPendingTotal() {
+        return this.pool.getMaxPendingTotal();
+    }
+
+    @Override
+    public void setConnPoolMetrics(final ConnPoolMetrics metrics) {
+        super.setConnPoolMetrics(metrics);
+        this.pool.setMetrics(metrics);
+    }
+
     public int getMaxTotal() {
         return this.pool.getMaxTotal();
     }
@@ -228,4 +543,13 @@ public class PoolingHttpClientConnectionManager extends HttpClientConnectionMana
         return this.pool.getStats(route);
     }
 
+    /**
+     * Returns a snapshot of statistics of all routes known to the pool.
+     * Statistics are read from counters maintained by the pool without
+     * taking any locks, so polling them does not stall request execution.
+     */
+    public Map<HttpRoute, PoolStats> getRouteStats() {
+        return this.pool.getRouteStats();
+    }
+
 }
@@ -28,59 +28,152 @@ package org.apache.http.impl.conn;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ByteArrayInputStream;
 
-import org.apache.http.annotation.Immutable;
+import org.apache.http.annotation.GuardedBy;
+import org.apache.http.annotation.ThreadSafe;
 
 import org.apache.commons.logging.Log;
 
 /**
  * Logs data to the wire LOG.
- *
+ * <p/>
+ * Data is formatted directly from the source into a buffer reused across
+ * calls, so that wire logging does not allocate beyond the log messages
+ * themselves.
  *
  * @since 4.0
  */
-@Immutable
+@ThreadSafe
 public class Wire {
 
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MAX_RETAINED_CAPACITY = 8192;
+
     private final Log log;
 
+    @GuardedBy("this")
+    private StringBuilder buffer;
+
+    private volatile boolean muted;
+
     public Wire(Log log) {
         this.log = log;
+        this.buffer = new StringBuilder(INITIAL_CAPACITY);
+    }
+
+    private void begin(final String header) {
+        this.buffer.setLength(0);
+        this.buffer.append(header).append('"');
     }
 
-    private void wire(String header, InputStream instream)
+    private void append(final String header, int ch) {
+        StringBuilder buffer = this.buffer;
+        if (ch == 13) {
+            buffer.append("[\\r]");
+        } else if (ch == 10) {
+            buffer.append("[\\n]\"");
+            log.debug(buffer.toString());
+            begin(header);
+        } else if ((ch < 32) || (ch > 127)) {
+            buffer.append("[0x");
+            if (ch > 15) {
+                buffer.append(HEX[(ch >> 4) & 0xf]);
+            }
+            buffer.append(HEX[ch & 0xf]);
+            buffer.append("]");
+        } else {
+            buffer.append((char) ch);
+        }
+    }
+
+    private void end(final String header) {
+        if (this.buffer.length() > header.length() + 1) {
+            this.buffer.append('"');
+            log.debug(this.buffer.toString());
+        }
+        if (this.buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            this.buffer = new StringBuilder(INITIAL_CAPACITY);
+        }
+    }
+
+    private synchronized void wire(final String header, final InputStream instream)
       throws IOException {
-        StringBuilder buffer = new StringBuilder();
+        begin(header);
         int ch;
         while ((ch = instream.read()) != -1) {
-            if (ch == 13) {
-                buffer.append("[\\r]");
-            } else if (ch == 10) {
-                    buffer.append("[\\n]\"");
-                    buffer.insert(0, "\"");
-                    buffer.insert(0, header);
-                    log.debug(buffer.toString());
-                    buffer.setLength(0);
-            } else if ((ch < 32) || (ch > 127)) {
-                buffer.append("[0x");
-                buffer.append(Integer.toHexString(ch));
-                buffer.append("]");
-            } else {
-                buffer.append((char) ch);
-            }
+            append(header, ch);
         }
-        if (buffer.length() > 0) {
-            buffer.append('\"');
-            buffer.insert(0, '\"');
-            buffer.insert(0, header);
-            log.debug(buffer.toString());
+        end(header);
+    }
+
+    private synchronized void wire(final String header, final byte[] b, int off, int len) {
+        begin(header);
+        for (int i = off; i < off + len; i++) {
+            append(header, b[i] & 0xff);
         }
+        end(header);
     }
 
+    private synchronized void wire(final String header, int b) {
+        begin(header);
+        append(header, b & 0xff);
+        end(header);
+    }
+
+    private synchronized void wireLine(final String header, final char[] b, int off, int len) {
+        begin(header);
+        for (int i = off; i < off + len; i++) {
+            append(header, b[i]);
+        }
+        append(header, 13);
+        append(header, 10);
+        end(header);
+    }
+
+    private synchronized void wireLine(final String header, final String s) {
+        begin(header);
+        for (int i = 0; i < s.length(); i++) {
+            append(header, s.charAt(i));
+        }
+        append(header, 13);
+        append(header, 10);
+        end(header);
+    }
 
     public boolean enabled() {
-        return log.isDebugEnabled();
+        return !this.muted && log.isDebugEnabled();
+    }
+
+    /**
+     * Suspends or resumes logging, for instance for exchanges that have
+     * not been sampled by a {@link WireLogSampler}.
+     */
+    void setMuted(boolean muted) {
+        this.muted = muted;
+    }
+
+    /**
+     * Returns <code>true</code> if the given characters can be logged
+     * as a line without being encoded in the protocol charset first.
+     */
+    static boolean isAscii(final char[] b, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            if (b[i] > 127) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isAscii(final String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 127) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public void output(InputStream outstream)
@@ -104,7 +197,7 @@ public class Wire {
         if (b == null) {
             throw new IllegalArgumentException("Output may not be null");
         }
-        wire(">> ", new ByteArrayInputStream(b, off, len));
+        wire(">> ", b, off, len);
     }
 
     public void input(byte[] b, int off, int len)
@@ -112,7 +205,7 @@ public class Wire {
         if (b == null) {
             throw new IllegalArgumentException("Input may not be null");
         }
-        wire("<< ", new ByteArrayInputStream(b, off, len));
+        wire("<< ", b, off, len);
     }
 
     public void output(byte[] b)
@@ -120,7 +213,7 @@ public class Wire {
         if (b == null) {
             throw new IllegalArgumentException("Output may not be null");
         }
-        wire(">> ", new ByteArrayInputStream(b));
+        wire(">> ", b, 0, b.length);
     }
 
     public void input(byte[] b)
@@ -128,17 +221,39 @@ public class Wire {
         if (b == null) {
             throw new IllegalArgumentException("Input may not be null");
         }
-        wire("<< ", new ByteArrayInputStream(b));
+        wire("<< ", b, 0, b.length);
     }
 
     public void output(int b)
       throws IOException {
-        output(new byte[] {(byte) b});
+        wire(">> ", b);
     }
 
     public void input(int b)
       throws IOException {
-        input(new byte[] {(byte) b});
+        wire("<< ", b);
+    }
+
+    /**
+     * Logs an ASCII line followed by CRLF as sent.
+     */
+    void outputLine(final char[] b, int off, int len) {
+        wireLine(">> ", b, off, len);
+    }
+
+    void outputLine(final String s) {
+        wireLine(">> ", s);
+    }
+
+    /**
+     * Logs an ASCII line followed by CRLF as received.
+     */
+    void inputLine(final char[] b, int off, int len) {
+        wireLine("<< ", b, off, len);
+    }
+
+    void inputLine(final String s) {
+        wireLine("<< ", s);
     }
 
     /**
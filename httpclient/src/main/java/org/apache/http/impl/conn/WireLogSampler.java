@@ -0,0 +1,99 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpHost;
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * Selects the request / response exchanges to be written to the wire log.
+ * Only every n-th exchange is logged, optionally restricted to exchanges
+ * with the given hosts, which makes it possible to keep wire logging
+ * enabled under load.
+ *
+ * @since 4.3
+ */
+@ThreadSafe
+public class WireLogSampler {
+
+    private final int rate;
+    private final HttpHost[] hosts;
+    private final AtomicLong count;
+
+    /**
+     * @param rate log every <code>rate</code>-th exchange, <code>1</code>
+     *   logs all of them.
+     * @param hosts hosts to log exchanges with. A host with a negative port
+     *   matches any port. If no host is given exchanges with all hosts are
+     *   sampled.
+     */
+    public WireLogSampler(int rate, final HttpHost... hosts) {
+        super();
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Sample rate may not be negative or zero");
+        }
+        this.rate = rate;
+        this.hosts = hosts != null ? hosts.clone() : new HttpHost[0];
+        for (HttpHost host: this.hosts) {
+            if (host == null) {
+                throw new IllegalArgumentException("Host may not be null");
+            }
+        }
+        this.count = new AtomicLong();
+    }
+
+    public int getRate() {
+        return this.rate;
+    }
+
+    /**
+     * Decides whether the exchange with the given host is to be logged.
+     * Called once per request.
+     */
+    public boolean isSampled(final HttpHost target) {
+        if (this.hosts.length > 0 && !matches(target)) {
+            return false;
+        }
+        return this.rate == 1 || this.count.getAndIncrement() % this.rate == 0;
+    }
+
+    private boolean matches(final HttpHost target) {
+        if (target == null) {
+            return false;
+        }
+        for (HttpHost host: this.hosts) {
+            if (host.getHostName().equalsIgnoreCase(target.getHostName()) &&
+                    (host.getPort() < 0 || host.getPort() == target.getPort())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -344,5 +344,50 @@ public class TestHostnameVerifier {
         checkWildcard("*.gouv.uk", false); // 2 character TLD, invalid 2TLD
         checkWildcard("*.a.co.uk", true); // 2 character TLD, invalid 2TLD, but using subdomain
         checkWildcard("s*.a.co.uk", true); // 2 character TLD, invalid 2TLD, but using subdomain
+        checkWildcard("*.co.uk.", false); // trailing dot
+        checkWildcard("*.co.u", true); // 1 character TLD
+    }
+
+    @Test
+    public void testCountLabels() {
+        String[] names = { "", ".", "a", "a.", "a.b", ".a.b", "a..b", "a.b.c..", "*.foo.com" };
+        for (String name: names) {
+            Assert.assertEquals(name, name.split("\\.").length, AbstractVerifier.countLabels(name));
+        }
+    }
+
+    @Test
+    public void testWildcardShorterHost() {
+        X509HostnameVerifier bhv = new BrowserCompatHostnameVerifier();
+        String cns[] = new String []{"mail*.foo.com"};
+        String alt[] = {};
+        checkMatching(bhv, "m.com", cns, alt, true);
+        checkMatching(bhv, "mail.foo.com", cns, alt, false);
+        checkMatching(bhv, "mail1.foo.com", cns, alt, false);
+        checkMatching(bhv, "mail1.bar.com", cns, alt, true);
+    }
+
+    @Test
+    public void testCachingVerifier() throws Exception {
+        CachingHostnameVerifier verifier = new CachingHostnameVerifier(
+                new StrictHostnameVerifier(), 1);
+        CertificateFactory cf = CertificateFactory.getInstance("X.509");
+        X509Certificate foo = (X509Certificate) cf.generateCertificate(
+                new ByteArrayInputStream(CertificatesToPlayWith.X509_FOO_BAR));
+        X509Certificate fooAgain = (X509Certificate) cf.generateCertificate(
+                new ByteArrayInputStream(CertificatesToPlayWith.X509_FOO_BAR));
+        X509Certificate wild = (X509Certificate) cf.generateCertificate(
+                new ByteArrayInputStream(CertificatesToPlayWith.X509_WILD_FOO));
+
+        verifier.verify("foo.com", foo);
+        verifier.verify("bar.com", fooAgain);
+        exceptionPlease(verifier, "a.bar.com", foo);
+        Assert.assertEquals(1, verifier.getMissCount());
+        Assert.assertEquals(2, verifier.getHitCount());
+
+        verifier.verify("www.foo.com", wild);
+        exceptionPlease(verifier, "a.b.foo.com", wild);
+        verifier.verify("foo.com", foo);
+        Assert.assertEquals(3, verifier.getMissCount());
     }
 }
@@ -192,4 +192,39 @@ public class TestSSLSocketFactory extends LocalServerTestBase {
         socketFactory.connectSocket(socket, address, null, params);
     }
 
+    @Test
+    public void testSessionResumption() throws Exception {
+        SSLSocketFactory socketFactory = new SSLSocketFactory(this.clientSSLContext,
+                SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER) {
+
+            @Override
+            protected void prepareSocket(final SSLSocket socket) throws IOException {
+                // Session tickets of TLS 1.3 are only received once application data is read
+                socket.setEnabledProtocols(new String[] { "TLSv1.2" });
+            }
+
+        };
+        socketFactory.setSessionCacheSize(10);
+        socketFactory.setSessionTimeout(60);
+        Assert.assertEquals(10, socketFactory.getSessionCacheSize());
+        Assert.assertEquals(60, socketFactory.getSessionTimeout());
+
+        HttpParams params = new BasicHttpParams();
+        InetSocketAddress address = this.localServer.getServiceAddress();
+        for (int i = 0; i < 3; i++) {
+            SSLSocket socket = (SSLSocket) socketFactory.createSocket(params);
+            socket = (SSLSocket) socketFactory.connectSocket(socket, address, null, params);
+            socket.close();
+        }
+        Assert.assertEquals(1, socketFactory.getFullHandshakeCount());
+        Assert.assertEquals(2, socketFactory.getResumedHandshakeCount());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testSessionCacheNotAvailable() throws Exception {
+        SSLSocketFactory socketFactory = new SSLSocketFactory(
+                this.clientSSLContext.getSocketFactory(), SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
+        socketFactory.setSessionCacheSize(10);
+    }
+
 }
@@ -0,0 +1,137 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.client;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestGradientBackoffManager {
+
+    private static final long MS = 1000000L;
+
+    private GradientBackoffManager impl;
+    private MockConnPoolControl connPerRoute;
+    private HttpRoute route;
+    private MockClock clock;
+
+    @Before
+    public void setUp() {
+        connPerRoute = new MockConnPoolControl();
+        route = new HttpRoute(new HttpHost("localhost:80"));
+        clock = new MockClock();
+        impl = new GradientBackoffManager(connPerRoute, clock);
+        impl.setPerHostConnectionCap(20);
+    }
+
+    private void sample(int count, long responseTime, long leaseTime) {
+        for (int i = 0; i < count; i++) {
+            clock.setCurrentTime(clock.getCurrentTime() + 1001);
+            impl.probe(route, responseTime, leaseTime);
+        }
+    }
+
+    @Test
+    public void halvesConnectionsOnBackoff() {
+        connPerRoute.setMaxPerRoute(route, 4);
+        impl.backOff(route);
+        Assert.assertEquals(2, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void increasesByOneOnProbeWithoutLatency() {
+        connPerRoute.setMaxPerRoute(route, 2);
+        impl.probe(route);
+        Assert.assertEquals(3, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void growsOnDemandWhileLatencyIsStable() {
+        connPerRoute.setMaxPerRoute(route, 4);
+        sample(20, 10 * MS, 5 * MS);
+        Assert.assertTrue(connPerRoute.getMaxPerRoute(route) > 4);
+    }
+
+    @Test
+    public void doesNotGrowWithoutDemand() {
+        connPerRoute.setMaxPerRoute(route, 4);
+        sample(20, 10 * MS, 0);
+        Assert.assertEquals(4, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void doesNotGrowBeyondCap() {
+        connPerRoute.setMaxPerRoute(route, 4);
+        impl.setPerHostConnectionCap(6);
+        sample(100, 10 * MS, 5 * MS);
+        Assert.assertEquals(6, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void shrinksWhenLatencyRises() {
+        connPerRoute.setMaxPerRoute(route, 16);
+        sample(50, 10 * MS, 0);
+        Assert.assertEquals(16, connPerRoute.getMaxPerRoute(route));
+        sample(10, 100 * MS, 0);
+        int max = connPerRoute.getMaxPerRoute(route);
+        Assert.assertTrue(max < 16);
+        Assert.assertTrue(max >= 1);
+        double[] rtt = impl.getResponseTimes(route);
+        Assert.assertTrue(rtt[0] > rtt[1]);
+    }
+
+    @Test
+    public void adjustsOncePerCoolDownPeriod() {
+        connPerRoute.setMaxPerRoute(route, 4);
+        impl.setSmoothing(1.0);
+        long now = clock.getCurrentTime();
+        clock.setCurrentTime(now + 2000);
+        impl.probe(route, 10 * MS, 5 * MS);
+        int max = connPerRoute.getMaxPerRoute(route);
+        Assert.assertTrue(max > 4);
+        clock.setCurrentTime(now + 2001);
+        impl.probe(route, 10 * MS, 5 * MS);
+        Assert.assertEquals(max, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void doesNotGrowDuringBackoffCoolDown() {
+        connPerRoute.setMaxPerRoute(route, 8);
+        clock.setCurrentTime(clock.getCurrentTime() + 2000);
+        impl.backOff(route);
+        Assert.assertEquals(4, connPerRoute.getMaxPerRoute(route));
+        impl.probe(route, 10 * MS, 5 * MS);
+        Assert.assertEquals(4, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void rejectsToleranceBelowOne() {
+        impl.setTolerance(0.5);
+    }
+
+}
@@ -33,6 +33,7 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -43,6 +44,7 @@ import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.HttpVersion;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.conn.ConnectionPoolTimeoutException;
 import org.apache.http.conn.ConnectionRequest;
@@ -52,6 +54,7 @@ import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.scheme.SchemeSocketFactory;
+import org.apache.http.impl.conn.BasicConnPoolMetrics;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.impl.conn.SchemeRegistryFactory;
 import org.apache.http.localserver.LocalServerTestBase;
@@ -377,6 +380,151 @@ public class TestConnectionManagement extends LocalServerTestBase {
      * Tests releasing connection from #abort method called from the
      * main execution thread while there is no blocking I/O operation.
      */
+    @Test
+    public void testPrewarm() throws Exception {
+
+        PoolingHttpClientConnectionManager mgr = new PoolingHttpClientConnectionManager();
+        mgr.setMaxTotal(3);
+        mgr.setDefaultMaxPerRoute(2);
+
+        HttpHost target = getServerHttp();
+        HttpRoute route = new HttpRoute(target, null, false);
+
+        Assert.assertEquals(2, mgr.prewarm(route, 5));
+        Assert.assertEquals(2, mgr.getStats(route).getAvailable());
+        Assert.assertEquals(0, mgr.getStats(route).getLeased());
+        Assert.assertEquals(0, mgr.prewarm(route, 2));
+
+        HttpClientConnection conn = getConnection(mgr, route, 5L, TimeUnit.SECONDS);
+        Assert.assertTrue("connection should be open", conn.isOpen());
+        mgr.releaseConnection(conn, null, -1, null);
+        Assert.assertEquals(2, mgr.getStats(route).getAvailable());
+
+        mgr.shutdown();
+    }
+
+    @Test
+    public void testPrewarmInterrupted() throws Exception {
+        final CountDownLatch connectLatch = new CountDownLatch(1);
+        final StallingSocketFactory stallingSocketFactory = new StallingSocketFactory(
+                connectLatch, WaitPolicy.BEFORE_CONNECT, PlainSocketFactory.getSocketFactory());
+        Scheme scheme = new Scheme("http", 80, stallingSocketFactory);
+        SchemeRegistry registry = new SchemeRegistry();
+        registry.register(scheme);
+
+        final PoolingHttpClientConnectionManager mgr = new PoolingHttpClientConnectionManager(registry);
+        mgr.setMaxTotal(1);
+
+        HttpHost target = getServerHttp();
+        final HttpRoute route = new HttpRoute(target, null, false);
+
+        final AtomicReference<Throwable> throwRef = new AtomicReference<Throwable>();
+        Thread prewarmThread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    mgr.prewarm(route, 1);
+                } catch (Throwable e) {
+                    throwRef.set(e);
+                }
+            }
+        });
+        prewarmThread.start();
+        stallingSocketFactory.waitForState();
+        prewarmThread.interrupt();
+
+        // The connection must not be released while it is still being connected
+        prewarmThread.join(500);
+        Assert.assertTrue(prewarmThread.isAlive());
+        Assert.assertEquals(0, mgr.getStats(route).getAvailable());
+
+        connectLatch.countDown();
+        prewarmThread.join(5000);
+        Assert.assertFalse(prewarmThread.isAlive());
+        Assert.assertTrue(throwRef.get() instanceof InterruptedException);
+        Assert.assertEquals(0, mgr.getStats(route).getAvailable());
+        Assert.assertEquals(0, mgr.getStats(route).getLeased());
+        Assert.assertEquals(0, localServer.getAcceptedConnectionCount());
+
+        mgr.shutdown();
+    }
+
+    @Test
+    public void testRequestConnectionAsync() throws Exception {
+
+        PoolingHttpClientConnectionManager mgr = new PoolingHttpClientConnectionManager();
+        mgr.setMaxTotal(1);
+
+        HttpHost target = getServerHttp();
+        HttpRoute route = new HttpRoute(target, null, false);
+
+        Future<HttpClientConnection> future1 = mgr.requestConnection(route, null, null);
+        Assert.assertTrue(future1.isDone());
+        HttpClientConnection conn1 = future1.get();
+
+        final AtomicReference<HttpClientConnection> leased = new AtomicReference<HttpClientConnection>();
+        Future<HttpClientConnection> future2 = mgr.requestConnection(route, null,
+                new FutureCallback<HttpClientConnection>() {
+
+            public void completed(final HttpClientConnection conn) {
+                leased.set(conn);
+            }
+
+            public void failed(final Exception ex) {
+            }
+
+            public void cancelled() {
+            }
+
+        });
+        Future<HttpClientConnection> future3 = mgr.requestConnection(route, null, null);
+        Assert.assertFalse(future2.isDone());
+        Assert.assertEquals(2, mgr.getStats(route).getPending());
+
+        Assert.assertTrue(future3.cancel(true));
+        Assert.assertEquals(1, mgr.getStats(route).getPending());
+
+        mgr.releaseConnection(conn1, null, -1, null);
+        Assert.assertTrue(future2.isDone());
+        HttpClientConnection conn2 = future2.get();
+        Assert.assertSame(conn2, leased.get());
+        Assert.assertEquals(1, mgr.getStats(route).getLeased());
+        Assert.assertEquals(0, mgr.getStats(route).getPending());
+        mgr.releaseConnection(conn2, null, -1, null);
+
+        mgr.shutdown();
+    }
+
+    @Test
+    public void testConnPoolMetrics() throws Exception {
+
+        PoolingHttpClientConnectionManager mgr = new PoolingHttpClientConnectionManager();
+        BasicConnPoolMetrics metrics = new BasicConnPoolMetrics();
+        mgr.setConnPoolMetrics(metrics);
+
+        HttpHost target = getServerHttp();
+        HttpRoute route = new HttpRoute(target, null, false);
+        HttpContext context = new BasicHttpContext();
+        HttpParams params = new BasicHttpParams();
+
+        HttpClientConnection conn = getConnection(mgr, route, 5L, TimeUnit.SECONDS);
+        mgr.connect(conn, route.getTargetHost(), route.getLocalAddress(), context, params);
+        mgr.releaseConnection(conn, null, -1, null);
+        conn = getConnection(mgr, route, 5L, TimeUnit.SECONDS);
+        mgr.releaseConnection(conn, null, -1, null);
+
+        BasicConnPoolMetrics.RouteMetrics routeMetrics = metrics.getRouteMetrics(route);
+        Assert.assertNotNull(routeMetrics);
+        Assert.assertEquals(2, routeMetrics.getLeaseCount());
+        Assert.assertEquals(1, routeMetrics.getReuseCount());
+        Assert.assertEquals(1, routeMetrics.getConnectTime().getCount());
+        Assert.assertEquals(2, metrics.getTotals().getLeaseWaitTime().getCount());
+
+        mgr.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(1, routeMetrics.getEvictionCount());
+
+        mgr.shutdown();
+    }
+
     @Test
     public void testReleaseConnectionOnAbort() throws Exception {
 
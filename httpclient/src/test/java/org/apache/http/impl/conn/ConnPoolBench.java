@@ -48,11 +48,76 @@ public class ConnPoolBench {
 
     private final static HttpRoute ROUTE = new HttpRoute(new HttpHost("localhost"));
 
+    private final static HttpRoute[] ROUTES = new HttpRoute[40];
+
+    static {
+        for (int i = 0; i < ROUTES.length; i++) {
+            ROUTES[i] = new HttpRoute(new HttpHost("localhost", 8000 + i));
+        }
+    }
+
     public static void main(String[] args) throws Exception {
         int c = 200;
         long reps = 100000;
         oldPool(c, reps);
         newPool(c, reps);
+        multiRoutePool(c, reps);
+        stripedPool(c, reps);
+    }
+
+    static void printResults(int c, long reps, long start, long finish) {
+        float totalTimeSec = (float) (finish - start) / 1000;
+        System.out.print("Concurrency level:\t");
+        System.out.println(c);
+        System.out.print("Total operations:\t");
+        System.out.println(c * reps);
+        System.out.print("Time taken for tests:\t");
+        System.out.print(totalTimeSec);
+        System.out.println(" seconds");
+    }
+
+    /**
+     * Pool-wide lock, workers spread across {@link #ROUTES}.
+     */
+    static void multiRoutePool(int c, long reps) throws Exception {
+        Log log = LogFactory.getLog(ConnPoolBench.class);
+
+        HttpConnPool pool = new HttpConnPool(log, c, c * 10, -1, TimeUnit.MILLISECONDS);
+
+        WorkerThread1[] workers = new WorkerThread1[c];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new WorkerThread1(pool, ROUTES[i % ROUTES.length], reps);
+        }
+        long start = System.currentTimeMillis();
+        for (WorkerThread1 worker : workers) {
+            worker.start();
+        }
+        for (WorkerThread1 worker : workers) {
+            worker.join();
+        }
+        long finish = System.currentTimeMillis();
+        printResults(c, reps, start, finish);
+    }
+
+    /**
+     * Per-route locks, workers spread across {@link #ROUTES}.
+     */
+    static void stripedPool(int c, long reps) throws Exception {
+        CPool pool = new CPool(c, c * 10, -1, TimeUnit.MILLISECONDS);
+
+        WorkerThread3[] workers = new WorkerThread3[c];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new WorkerThread3(pool, ROUTES[i % ROUTES.length], reps);
+        }
+        long start = System.currentTimeMillis();
+        for (WorkerThread3 worker : workers) {
+            worker.start();
+        }
+        for (WorkerThread3 worker : workers) {
+            worker.join();
+        }
+        long finish = System.currentTimeMillis();
+        printResults(c, reps, start, finish);
     }
 
     public static void newPool(int c, long reps) throws Exception {
@@ -72,14 +137,7 @@ public class ConnPoolBench {
             worker.join();
         }
         long finish = System.currentTimeMillis();
-        float totalTimeSec = (float) (finish - start) / 1000;
-        System.out.print("Concurrency level:\t");
-        System.out.println(c);
-        System.out.print("Total operations:\t");
-        System.out.println(c * reps);
-        System.out.print("Time taken for tests:\t");
-        System.out.print(totalTimeSec);
-        System.out.println(" seconds");
+        printResults(c, reps, start, finish);
     }
 
     static void oldPool(int c, long reps) throws Exception {
@@ -100,31 +158,30 @@ public class ConnPoolBench {
             worker.join();
         }
         long finish = System.currentTimeMillis();
-        float totalTimeSec = (float) (finish - start) / 1000;
-        System.out.print("Concurrency level:\t");
-        System.out.println(c);
-        System.out.print("Total operations:\t");
-        System.out.println(c * reps);
-        System.out.print("Time taken for tests:\t");
-        System.out.print(totalTimeSec);
-        System.out.println(" seconds");
+        printResults(c, reps, start, finish);
     }
 
     static class WorkerThread1 extends Thread {
 
         private final HttpConnPool pool;
+        private final HttpRoute route;
         private final long reps;
 
         WorkerThread1(final HttpConnPool pool, final long reps) {
+            this(pool, ROUTE, reps);
+        }
+
+        WorkerThread1(final HttpConnPool pool, final HttpRoute route, final long reps) {
             super();
             this.pool = pool;
+            this.route = route;
             this.reps = reps;
         }
 
         @Override
         public void run() {
             for (long c = 0; c < this.reps; c++) {
-                Future<HttpPoolEntry> future = this.pool.lease(ROUTE, null);
+                Future<HttpPoolEntry> future = this.pool.lease(this.route, null);
                 try {
                     HttpPoolEntry entry = future.get(-1, TimeUnit.MILLISECONDS);
                     this.pool.release(entry, true);
@@ -169,5 +226,36 @@ public class ConnPoolBench {
 
     }
 
-}
+    static class WorkerThread3 extends Thread {
+
+        private final CPool pool;
+        private final HttpRoute route;
+        private final long reps;
 
+        WorkerThread3(final CPool pool, final HttpRoute route, final long reps) {
+            super();
+            this.pool = pool;
+            this.route = route;
+            this.reps = reps;
+        }
+
+        @Override
+        public void run() {
+            for (long c = 0; c < this.reps; c++) {
+                Future<CPoolEntry> future = this.pool.lease(this.route, null);
+                try {
+                    CPoolEntry entry = future.get(-1, TimeUnit.MILLISECONDS);
+                    this.pool.release(entry, true);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                } catch (ExecutionException e) {
+                    e.printStackTrace();
+                } catch (TimeoutException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestBasicConnPoolMetrics {
+
+    private static final HttpRoute ROUTE1 = new HttpRoute(new HttpHost("somehost", 80));
+    private static final HttpRoute ROUTE2 = new HttpRoute(new HttpHost("otherhost", 80));
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getPercentile(99, TimeUnit.NANOSECONDS));
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000);
+        }
+        Assert.assertEquals(100, histogram.getCount());
+        Assert.assertEquals(100000, histogram.getMax(TimeUnit.NANOSECONDS));
+        Assert.assertEquals(50500, histogram.getMean(TimeUnit.NANOSECONDS));
+        long p50 = histogram.getPercentile(50, TimeUnit.NANOSECONDS);
+        Assert.assertTrue(p50 >= 50000 && p50 < 100000);
+        Assert.assertEquals(100000, histogram.getPercentile(100, TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testHistogramNegativeValue() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1);
+        Assert.assertEquals(1, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMax(TimeUnit.NANOSECONDS));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testHistogramInvalidPercentile() {
+        new LatencyHistogram().getPercentile(101, TimeUnit.NANOSECONDS);
+    }
+
+    @Test
+    public void testRouteMetrics() {
+        BasicConnPoolMetrics metrics = new BasicConnPoolMetrics();
+        metrics.leased(ROUTE1, 1000, false);
+        metrics.leased(ROUTE1, 2000, true);
+        metrics.leaseTimedOut(ROUTE2, 5000);
+        metrics.leaseRejected(ROUTE2);
+        metrics.connected(ROUTE1, 3000);
+        metrics.evicted(ROUTE1);
+
+        BasicConnPoolMetrics.RouteMetrics route1 = metrics.getRouteMetrics(ROUTE1);
+        Assert.assertNotNull(route1);
+        Assert.assertEquals(2, route1.getLeaseCount());
+        Assert.assertEquals(1, route1.getReuseCount());
+        Assert.assertEquals(0.5, route1.getReuseRatio(), 0.001);
+        Assert.assertEquals(1, route1.getConnectTime().getCount());
+        Assert.assertEquals(1, route1.getEvictionCount());
+        Assert.assertEquals(0, route1.getLeaseTimeoutCount());
+
+        BasicConnPoolMetrics.RouteMetrics route2 = metrics.getRouteMetrics(ROUTE2);
+        Assert.assertEquals(1, route2.getLeaseTimeoutCount());
+        Assert.assertEquals(1, route2.getLeaseRejectionCount());
+        Assert.assertEquals(0, route2.getLeaseCount());
+
+        BasicConnPoolMetrics.RouteMetrics totals = metrics.getTotals();
+        Assert.assertEquals(2, totals.getLeaseCount());
+        Assert.assertEquals(1, totals.getLeaseTimeoutCount());
+        Assert.assertEquals(3, totals.getLeaseWaitTime().getCount());
+        Assert.assertEquals(2, metrics.getRoutes().size());
+    }
+
+}
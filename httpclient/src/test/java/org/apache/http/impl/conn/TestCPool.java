@@ -0,0 +1,411 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpHost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnPoolMetrics;
+import org.apache.http.conn.ConnectionRequestRejectedException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.PoolStats;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestCPool {
+
+    static class TestCPoolImpl extends CPool {
+
+        TestCPoolImpl(int defaultMaxPerRoute, int maxTotal) {
+            super(defaultMaxPerRoute, maxTotal, -1, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        protected CPoolEntry createEntry(final HttpRoute route, final DefaultClientConnection conn) {
+            DefaultClientConnection mockConn = Mockito.mock(DefaultClientConnection.class);
+            Mockito.when(mockConn.isOpen()).thenReturn(Boolean.TRUE);
+            return new CPoolEntry(LogFactory.getLog(getClass()), "id", route, mockConn,
+                    -1, TimeUnit.MILLISECONDS);
+        }
+
+    }
+
+    private static final HttpRoute ROUTE1 = new HttpRoute(new HttpHost("somehost", 80));
+    private static final HttpRoute ROUTE2 = new HttpRoute(new HttpHost("otherhost", 80));
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidConstructor() {
+        new CPool(0, 10, -1, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testLeaseRelease() throws Exception {
+        CPool pool = new TestCPoolImpl(2, 10);
+        CPoolEntry entry1 = pool.lease(ROUTE1, null).get(1, TimeUnit.SECONDS);
+        CPoolEntry entry2 = pool.lease(ROUTE2, null).get(1, TimeUnit.SECONDS);
+        Assert.assertNotNull(entry1);
+        Assert.assertNotNull(entry2);
+
+        PoolStats totals = pool.getTotalStats();
+        Assert.assertEquals(2, totals.getLeased());
+        Assert.assertEquals(0, totals.getAvailable());
+
+        pool.release(entry1, true);
+        pool.release(entry2, false);
+
+        totals = pool.getTotalStats();
+        Assert.assertEquals(0, totals.getLeased());
+        Assert.assertEquals(1, totals.getAvailable());
+        Assert.assertEquals(1, pool.getStats(ROUTE1).getAvailable());
+        Assert.assertEquals(0, pool.getStats(ROUTE2).getAvailable());
+        Mockito.verify(entry2.getConnection()).close();
+
+        CPoolEntry entry3 = pool.lease(ROUTE1, null).get(1, TimeUnit.SECONDS);
+        Assert.assertSame(entry1, entry3);
+        pool.shutdown();
+    }
+
+    @Test
+    public void testMaxPerRoute() throws Exception {
+        CPool pool = new TestCPoolImpl(1, 10);
+        CPoolEntry entry1 = pool.lease(ROUTE1, null).get(1, TimeUnit.SECONDS);
+        Assert.assertNotNull(entry1);
+        Future<CPoolEntry> future = pool.lease(ROUTE1, null);
+        try {
+            future.get(10, TimeUnit.MILLISECONDS);
+            Assert.fail("TimeoutException should have been thrown");
+        } catch (TimeoutException expected) {
+        }
+        CPoolEntry entry2 = pool.lease(ROUTE2, null).get(10, TimeUnit.MILLISECONDS);
+        Assert.assertNotNull(entry2);
+        pool.shutdown();
+    }
+
+    @Test
+    public void testReclaimIdleOfOtherRoute() throws Exception {
+        CPool pool = new TestCPoolImpl(2, 2);
+        CPoolEntry entry1 = pool.lease(ROUTE1, null).get(1, TimeUnit.SECONDS);
+        CPoolEntry entry2 = pool.lease(ROUTE1, null).get(1, TimeUnit.SECONDS);
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+        Assert.assertEquals(2, pool.getTotalStats().getAvailable());
+
+        CPoolEntry entry3 = pool.lease(ROUTE2, null).get(10, TimeUnit.MILLISECONDS);
+        Assert.assertNotNull(entry3);
+        Assert.assertEquals(1, pool.getStats(ROUTE1).getAvailable());
+        Assert.assertEquals(1, pool.getStats(ROUTE2).getLeased());
+        Mockito.verify(entry1.getConnection()).close();
+        pool.shutdown();
+    }
+
+    @Test
+    public void testWaitForCapacityOfOtherRoute() throws Exception {
+        final CPool pool = new TestCPoolImpl(2, 1);
+        CPoolEntry entry1 = pool.lease(ROUTE1, null).get(1, TimeUnit.SECONDS);
+        final Future<CPoolEntry> future = pool.lease(ROUTE2, null);
+        final CPoolEntry[] result = new CPoolEntry[1];
+        Thread t = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    result[0] = future.get(5, TimeUnit.SECONDS);
+                } catch (Exception ignore) {
+                }
+            }
+
+        };
+        t.start();
+        Thread.sleep(100);
+        Assert.assertEquals(1, pool.getStats(ROUTE2).getPending());
+
+        pool.release(entry1, false);
+        t.join(5000);
+        Assert.assertNotNull(result[0]);
+        Assert.assertEquals(ROUTE2, result[0].getRoute());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testCloseIdle() throws Exception {
+        CPool pool = new TestCPoolImpl(2, 2);
+        CPoolEntry entry1 = pool.lease(ROUTE1, null).get(1, TimeUnit.SECONDS);
+        CPoolEntry entry2 = pool.lease(ROUTE2, null).get(1, TimeUnit.SECONDS);
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+        Thread.sleep(20);
+
+        pool.closeIdle(1, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(0, pool.getTotalStats().getAvailable());
+        Mockito.verify(entry1.getConnection()).close();
+        Mockito.verify(entry2.getConnection()).close();
+
+        Assert.assertNotNull(pool.lease(ROUTE1, null).get(10, TimeUnit.MILLISECONDS));
+        Assert.assertNotNull(pool.lease(ROUTE2, null).get(10, TimeUnit.MILLISECONDS));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testRouteStats() throws Exception {
+        CPool pool = new TestCPoolImpl(2, 10);
+        CPoolEntry entry1 = pool.lease(ROUTE1, null).get(1, TimeUnit.SECONDS);
+        CPoolEntry entry2 = pool.lease(ROUTE2, null).get(1, TimeUnit.SECONDS);
+        pool.release(entry2, true);
+
+        Map<HttpRoute, PoolStats> stats = pool.getRouteStats();
+        Assert.assertEquals(2, stats.size());
+        Assert.assertEquals(1, stats.get(ROUTE1).getLeased());
+        Assert.assertEquals(0, stats.get(ROUTE1).getAvailable());
+        Assert.assertEquals(0, stats.get(ROUTE2).getLeased());
+        Assert.assertEquals(1, stats.get(ROUTE2).getAvailable());
+        Assert.assertEquals(2, stats.get(ROUTE2).getMax());
+
+        PoolStats unknown = pool.getStats(new HttpRoute(new HttpHost("unknown", 80)));
+        Assert.assertEquals(0, unknown.getLeased());
+        Assert.assertEquals(2, pool.getRouteStats().size());
+
+        pool.release(entry1, true);
+        pool.shutdown();
+    }
+
+    /**
+     * Creates entries 1, 2 and 3, releases them in order 2, 1, 3 and
+     * returns the number of the entry leased next.
+     */
+    private static int leaseWithPolicy(final PoolReusePolicy policy) throws Exception {
+        CPool pool = new TestCPoolImpl(3, 10);
+        pool.setReusePolicy(policy);
+        CPoolEntry[] entries = new CPoolEntry[3];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = pool.lease(ROUTE1, null).get(1, TimeUnit.SECONDS);
+            Thread.sleep(5);
+        }
+        pool.release(entries[1], true);
+        pool.release(entries[0], true);
+        pool.release(entries[2], true);
+
+        CPoolEntry entry = pool.lease(ROUTE1, null).get(1, TimeUnit.SECONDS);
+        pool.shutdown();
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] == entry) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void testReusePolicy() throws Exception {
+        Assert.assertEquals(PoolReusePolicy.LIFO, new TestCPoolImpl(3, 10).getReusePolicy());
+        Assert.assertEquals(3, leaseWithPolicy(PoolReusePolicy.LIFO));
+        Assert.assertEquals(2, leaseWithPolicy(PoolReusePolicy.FIFO));
+        Assert.assertEquals(1, leaseWithPolicy(PoolReusePolicy.LEAST_RECENTLY_ESTABLISHED));
+    }
+
+    @Test
+    public void testValidateAfterInactivity() throws Exception {
+        CPool pool = new TestCPoolImpl(2, 10);
+        pool.setValidateAfterInactivity(1);
+        CPoolEntry entry1 = pool.lease(ROUTE1, null).get(1, TimeUnit.SECONDS);
+        CPoolEntry entry2 = pool.lease(ROUTE1, null).get(1, TimeUnit.SECONDS);
+        Mockito.when(entry1.getConnection().isStale()).thenReturn(Boolean.TRUE);
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+        Thread.sleep(20);
+
+        CPoolEntry entry3 = pool.lease(ROUTE1, null).get(1, TimeUnit.SECONDS);
+        Assert.assertSame(entry2, entry3);
+        Mockito.verify(entry2.getConnection()).isStale();
+        Mockito.verify(entry1.getConnection(), Mockito.never()).isStale();
+
+        CPoolEntry entry4 = pool.lease(ROUTE1, null).get(1, TimeUnit.SECONDS);
+        Assert.assertNotSame(entry1, entry4);
+        Mockito.verify(entry1.getConnection()).close();
+        PoolStats stats = pool.getStats(ROUTE1);
+        Assert.assertEquals(2, stats.getLeased());
+        Assert.assertEquals(0, stats.getAvailable());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testCloseStale() throws Exception {
+        CPool pool = new TestCPoolImpl(2, 10);
+        CPoolEntry entry1 = pool.lease(ROUTE1, null).get(1, TimeUnit.SECONDS);
+        CPoolEntry entry2 = pool.lease(ROUTE2, null).get(1, TimeUnit.SECONDS);
+        Mockito.when(entry1.getConnection().isStale()).thenReturn(Boolean.TRUE);
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+
+        pool.closeStale();
+        Mockito.verify(entry1.getConnection()).close();
+        Mockito.verify(entry2.getConnection(), Mockito.never()).close();
+        Assert.assertEquals(0, pool.getStats(ROUTE1).getAvailable());
+        Assert.assertEquals(1, pool.getStats(ROUTE2).getAvailable());
+        Assert.assertEquals(0, pool.getTotalStats().getLeased());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testEvictionMetrics() throws Exception {
+        CPool pool = new TestCPoolImpl(2, 2);
+        ConnPoolMetrics metrics = Mockito.mock(ConnPoolMetrics.class);
+        pool.setMetrics(metrics);
+        CPoolEntry entry1 = pool.lease(ROUTE1, null).get(1, TimeUnit.SECONDS);
+        pool.release(entry1, true);
+        Thread.sleep(20);
+
+        pool.closeIdle(1, TimeUnit.MILLISECONDS);
+        Mockito.verify(metrics).evicted(ROUTE1);
+        pool.shutdown();
+    }
+
+    @Test
+    public void testLeaseAsync() throws Exception {
+        CPool pool = new TestCPoolImpl(1, 2);
+        Future<CPoolEntry> future1 = pool.leaseAsync(ROUTE1, null, null);
+        Assert.assertTrue(future1.isDone());
+        CPoolEntry entry1 = future1.get();
+
+        @SuppressWarnings("unchecked")
+        FutureCallback<CPoolEntry> callback = Mockito.mock(FutureCallback.class);
+        Future<CPoolEntry> future2 = pool.leaseAsync(ROUTE1, null, callback);
+        Assert.assertFalse(future2.isDone());
+        Assert.assertEquals(1, pool.getStats(ROUTE1).getPending());
+
+        pool.release(entry1, true);
+        Assert.assertTrue(future2.isDone());
+        Assert.assertSame(entry1, future2.get());
+        Mockito.verify(callback).completed(entry1);
+        Assert.assertEquals(0, pool.getStats(ROUTE1).getPending());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testLeaseAsyncWaitForCapacityOfOtherRoute() throws Exception {
+        CPool pool = new TestCPoolImpl(2, 1);
+        CPoolEntry entry1 = pool.leaseAsync(ROUTE1, null, null).get();
+        Future<CPoolEntry> future2 = pool.leaseAsync(ROUTE2, null, null);
+        Assert.assertFalse(future2.isDone());
+
+        pool.release(entry1, false);
+        CPoolEntry entry2 = future2.get(1, TimeUnit.SECONDS);
+        Assert.assertEquals(ROUTE2, entry2.getRoute());
+        Assert.assertEquals(1, pool.getTotalStats().getLeased());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testLeaseAsyncCancel() throws Exception {
+        CPool pool = new TestCPoolImpl(1, 2);
+        CPoolEntry entry1 = pool.leaseAsync(ROUTE1, null, null).get();
+        @SuppressWarnings("unchecked")
+        FutureCallback<CPoolEntry> callback = Mockito.mock(FutureCallback.class);
+        Future<CPoolEntry> future2 = pool.leaseAsync(ROUTE1, null, callback);
+        Assert.assertTrue(future2.cancel(true));
+        Assert.assertTrue(future2.isCancelled());
+        Mockito.verify(callback).cancelled();
+        Assert.assertEquals(0, pool.getStats(ROUTE1).getPending());
+
+        pool.release(entry1, true);
+        Mockito.verify(callback, Mockito.never()).completed(Mockito.<CPoolEntry>any());
+        Assert.assertEquals(1, pool.getStats(ROUTE1).getAvailable());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testLeaseAsyncShutdown() throws Exception {
+        CPool pool = new TestCPoolImpl(1, 2);
+        pool.leaseAsync(ROUTE1, null, null).get();
+        Future<CPoolEntry> future = pool.leaseAsync(ROUTE1, null, null);
+        pool.shutdown();
+        Assert.assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void testMaxPendingPerRoute() throws Exception {
+        CPool pool = new TestCPoolImpl(1, 10);
+        pool.setMaxPendingPerRoute(1);
+        CPoolEntry entry1 = pool.lease(ROUTE1, null).get(1, TimeUnit.SECONDS);
+        Future<CPoolEntry> future2 = pool.leaseAsync(ROUTE1, null, null);
+        Assert.assertFalse(future2.isDone());
+
+        Future<CPoolEntry> future3 = pool.lease(ROUTE1, null);
+        try {
+            future3.get(1, TimeUnit.SECONDS);
+            Assert.fail("ExecutionException should have been thrown");
+        } catch (ExecutionException expected) {
+            Assert.assertTrue(expected.getCause() instanceof ConnectionRequestRejectedException);
+        }
+        Future<CPoolEntry> future4 = pool.leaseAsync(ROUTE1, null, null);
+        Assert.assertTrue(future4.isDone());
+        Assert.assertNotNull(pool.lease(ROUTE2, null).get(1, TimeUnit.SECONDS));
+
+        pool.release(entry1, true);
+        Assert.assertSame(entry1, future2.get());
+        Assert.assertEquals(0, pool.getTotalStats().getPending());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testMaxPendingTotal() throws Exception {
+        CPool pool = new TestCPoolImpl(1, 10);
+        pool.setMaxPendingTotal(1);
+        CPoolEntry entry1 = pool.lease(ROUTE1, null).get(1, TimeUnit.SECONDS);
+        pool.lease(ROUTE2, null).get(1, TimeUnit.SECONDS);
+        Future<CPoolEntry> future1 = pool.leaseAsync(ROUTE1, null, null);
+        Future<CPoolEntry> future2 = pool.leaseAsync(ROUTE2, null, null);
+        Assert.assertFalse(future1.isDone());
+        Assert.assertTrue(future2.isDone());
+        try {
+            future2.get();
+            Assert.fail("ExecutionException should have been thrown");
+        } catch (ExecutionException expected) {
+            Assert.assertTrue(expected.getCause() instanceof ConnectionRequestRejectedException);
+        }
+
+        future1.cancel(true);
+        Future<CPoolEntry> future3 = pool.leaseAsync(ROUTE2, null, null);
+        Assert.assertFalse(future3.isDone());
+        pool.release(entry1, true);
+        pool.shutdown();
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testLeaseAfterShutdown() throws Exception {
+        CPool pool = new TestCPoolImpl(2, 2);
+        pool.shutdown();
+        pool.lease(ROUTE1, null);
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.conn.DnsResolver;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestCachingDnsResolver {
+
+    private static final InetAddress IP1 = address(1);
+    private static final InetAddress IP2 = address(2);
+
+    private static InetAddress address(int last) {
+        try {
+            return InetAddress.getByAddress(new byte[] { 10, 0, 0, (byte) last });
+        } catch (UnknownHostException ex) {
+            throw new IllegalStateException(ex.getMessage());
+        }
+    }
+
+    static class DirectExecutor implements Executor {
+
+        public void execute(final Runnable command) {
+            command.run();
+        }
+
+    }
+
+    @Test
+    public void testPositiveCaching() throws Exception {
+        DnsResolver backend = Mockito.mock(DnsResolver.class);
+        Mockito.when(backend.resolve("somehost")).thenReturn(new InetAddress[] { IP1 });
+        CachingDnsResolver resolver = new CachingDnsResolver(
+                backend, 1, 1, TimeUnit.MINUTES, 10, null);
+
+        Assert.assertArrayEquals(new InetAddress[] { IP1 }, resolver.resolve("somehost"));
+        Assert.assertArrayEquals(new InetAddress[] { IP1 }, resolver.resolve("somehost"));
+        Mockito.verify(backend, Mockito.times(1)).resolve("somehost");
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        DnsResolver backend = Mockito.mock(DnsResolver.class);
+        Mockito.when(backend.resolve("somehost")).thenReturn(new InetAddress[] { IP1 });
+        CachingDnsResolver resolver = new CachingDnsResolver(
+                backend, 1, 1, TimeUnit.MINUTES, 10, null);
+        resolver.setTimeToLive("somehost", 10, TimeUnit.MILLISECONDS);
+
+        resolver.resolve("somehost");
+        Thread.sleep(50);
+        resolver.resolve("somehost");
+        Mockito.verify(backend, Mockito.times(2)).resolve("somehost");
+    }
+
+    @Test
+    public void testNegativeCaching() throws Exception {
+        DnsResolver backend = Mockito.mock(DnsResolver.class);
+        Mockito.when(backend.resolve("somehost")).thenThrow(new UnknownHostException("somehost"));
+        CachingDnsResolver resolver = new CachingDnsResolver(
+                backend, 1, 1, TimeUnit.MINUTES, 10, null);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                resolver.resolve("somehost");
+                Assert.fail("UnknownHostException should have been thrown");
+            } catch (UnknownHostException expected) {
+            }
+        }
+        Mockito.verify(backend, Mockito.times(1)).resolve("somehost");
+    }
+
+    @Test
+    public void testNegativeCachingDisabled() throws Exception {
+        DnsResolver backend = Mockito.mock(DnsResolver.class);
+        Mockito.when(backend.resolve("somehost")).thenThrow(new UnknownHostException("somehost"));
+        CachingDnsResolver resolver = new CachingDnsResolver(
+                backend, 1, 0, TimeUnit.MINUTES, 10, null);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                resolver.resolve("somehost");
+                Assert.fail("UnknownHostException should have been thrown");
+            } catch (UnknownHostException expected) {
+            }
+        }
+        Mockito.verify(backend, Mockito.times(2)).resolve("somehost");
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        InMemoryDnsResolver backend = new InMemoryDnsResolver();
+        backend.add("host1", IP1);
+        backend.add("host2", IP1);
+        backend.add("host3", IP1);
+        CachingDnsResolver resolver = new CachingDnsResolver(
+                backend, 1, 1, TimeUnit.MINUTES, 2, null);
+
+        resolver.resolve("host1");
+        resolver.resolve("host2");
+        resolver.resolve("host3");
+        Assert.assertEquals(2, resolver.size());
+    }
+
+    @Test
+    public void testRefreshAhead() throws Exception {
+        InMemoryDnsResolver backend = new InMemoryDnsResolver();
+        backend.add("somehost", IP1);
+        CachingDnsResolver resolver = new CachingDnsResolver(
+                backend, 1, 1, TimeUnit.MINUTES, 10, new DirectExecutor());
+        resolver.setTimeToLive("somehost", 200, TimeUnit.MILLISECONDS);
+
+        Assert.assertArrayEquals(new InetAddress[] { IP1 }, resolver.resolve("somehost"));
+        backend.add("somehost", IP2);
+        Thread.sleep(160);
+        // Cached addresses are returned while the entry is being refreshed
+        Assert.assertArrayEquals(new InetAddress[] { IP1 }, resolver.resolve("somehost"));
+        Assert.assertArrayEquals(new InetAddress[] { IP2 }, resolver.resolve("somehost"));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidTimeToLive() {
+        new CachingDnsResolver(new InMemoryDnsResolver(), 0, 1, TimeUnit.MINUTES, 10, null);
+    }
+
+}
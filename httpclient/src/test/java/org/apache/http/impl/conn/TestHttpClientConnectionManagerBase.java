@@ -28,6 +28,7 @@
 package org.apache.http.impl.conn;
 
 import java.net.Socket;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -37,6 +38,7 @@ import org.apache.http.HttpClientConnection;
 import org.apache.http.HttpHost;
 import org.apache.http.conn.ConnectionPoolTimeoutException;
 import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.ConnectionRequestRejectedException;
 import org.apache.http.conn.DnsResolver;
 import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.scheme.Scheme;
@@ -141,6 +143,19 @@ public class TestHttpClientConnectionManagerBase {
         connRequest1.get(1, TimeUnit.SECONDS);
     }
 
+    @Test(expected=ConnectionRequestRejectedException.class)
+    public void testLeaseRejected() throws Exception {
+        HttpHost target = new HttpHost("localhost");
+        HttpRoute route = new HttpRoute(target);
+
+        Mockito.when(future.get(1, TimeUnit.SECONDS)).thenThrow(
+                new ExecutionException(new ConnectionRequestRejectedException()));
+        Mockito.when(pool.lease(route, null, null)).thenReturn(future);
+
+        ConnectionRequest connRequest1 = mgr.requestConnection(route, null);
+        connRequest1.get(1, TimeUnit.SECONDS);
+    }
+
     @Test
     public void testReleaseReusable() throws Exception {
         HttpHost target = new HttpHost("localhost");
@@ -27,6 +27,8 @@
 
 package org.apache.http.impl.conn;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
@@ -43,9 +45,12 @@ import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 public class TestHttpClientConnectionOperator {
 
@@ -150,6 +155,196 @@ public class TestHttpClientConnectionOperator {
         Mockito.verify(conn).openCompleted(false, params);
     }
 
+    @Test
+    public void testConnectStaggered() throws Exception {
+        HttpContext context = new BasicHttpContext();
+        HttpParams params = new BasicHttpParams();
+        HttpHost host = new HttpHost("somehost");
+        InetAddress ip1 = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        InetAddress ip2 = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+        Socket socket1 = Mockito.mock(Socket.class);
+        Socket socket2 = Mockito.mock(Socket.class);
+
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2 });
+        Mockito.when(plainSocketFactory.createSocket(Mockito.<HttpParams>any())).thenReturn(socket1, socket2);
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.<Socket>any(),
+                Mockito.eq(new HttpInetSocketAddress(host, ip1, 80)),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpParams>any())).thenAnswer(new Answer<Socket>() {
+
+                    public Socket answer(final InvocationOnMock invocation) throws Throwable {
+                        Thread.sleep(2000);
+                        throw new ConnectTimeoutException();
+                    }
+
+                });
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.<Socket>any(),
+                Mockito.eq(new HttpInetSocketAddress(host, ip2, 80)),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpParams>any())).thenReturn(socket2);
+
+        connectionOperator.setConnectAttemptDelay(100);
+        long start = System.currentTimeMillis();
+        connectionOperator.connect(conn, host, null, context, params);
+        Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+
+        Mockito.verify(conn).opening(socket2, host);
+        Mockito.verify(conn).openCompleted(false, params);
+        Mockito.verify(socket1).close();
+        Mockito.verify(socket2, Mockito.never()).close();
+    }
+
+    @Test(expected=ConnectTimeoutException.class)
+    public void testConnectStaggeredFailure() throws Exception {
+        HttpContext context = new BasicHttpContext();
+        HttpParams params = new BasicHttpParams();
+        HttpHost host = new HttpHost("somehost");
+        InetAddress ip1 = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        InetAddress ip2 = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2 });
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.<Socket>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpParams>any())).thenThrow(new ConnectTimeoutException());
+
+        connectionOperator.setConnectAttemptDelay(100);
+        connectionOperator.connect(conn, host, null, context, params);
+    }
+
+    @Test
+    public void testConnectStaggeredNoFailoverOnOtherIOException() throws Exception {
+        HttpContext context = new BasicHttpContext();
+        HttpParams params = new BasicHttpParams();
+        HttpHost host = new HttpHost("somehost");
+        InetAddress ip1 = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        InetAddress ip2 = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+        IOException failure = new IOException("handshake failure");
+
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2 });
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.<Socket>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpParams>any())).thenThrow(failure);
+
+        connectionOperator.setConnectAttemptDelay(5000);
+        try {
+            connectionOperator.connect(conn, host, null, context, params);
+            Assert.fail("IOException should have been thrown");
+        } catch (IOException ex) {
+            Assert.assertSame(failure, ex);
+        }
+        Mockito.verify(plainSocketFactory, Mockito.times(1)).createSocket(params);
+        Mockito.verify(conn, Mockito.never()).opening(Mockito.<Socket>any(), Mockito.<HttpHost>any());
+    }
+
+    @Test
+    public void testConnectStaggeredAbortsAttemptsOnFailure() throws Exception {
+        HttpContext context = new BasicHttpContext();
+        HttpParams params = new BasicHttpParams();
+        HttpHost host = new HttpHost("somehost");
+        InetAddress ip1 = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        InetAddress ip2 = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+        Socket socket1 = Mockito.mock(Socket.class);
+        IOException failure = new IOException("Too many open files");
+
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2 });
+        Mockito.when(plainSocketFactory.createSocket(Mockito.<HttpParams>any()))
+            .thenReturn(socket1).thenThrow(failure);
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.<Socket>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpParams>any())).thenAnswer(new Answer<Socket>() {
+
+                    public Socket answer(final InvocationOnMock invocation) throws Throwable {
+                        Thread.sleep(2000);
+                        throw new ConnectTimeoutException();
+                    }
+
+                });
+
+        connectionOperator.setConnectAttemptDelay(100);
+        try {
+            connectionOperator.connect(conn, host, null, context, params);
+            Assert.fail("IOException should have been thrown");
+        } catch (IOException ex) {
+            Assert.assertSame(failure, ex);
+        }
+        Mockito.verify(socket1).close();
+    }
+
+    @Test
+    public void testConnectStaggeredShutdown() throws Exception {
+        HttpContext context = new BasicHttpContext();
+        HttpParams params = new BasicHttpParams();
+        HttpHost host = new HttpHost("somehost");
+        InetAddress ip1 = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        InetAddress ip2 = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+        Socket socket1 = Mockito.mock(Socket.class);
+        Socket socket2 = Mockito.mock(Socket.class);
+        final DefaultClientConnection realConn = new DefaultClientConnection();
+
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2 });
+        Mockito.when(plainSocketFactory.createSocket(Mockito.<HttpParams>any())).thenReturn(socket1, socket2);
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.<Socket>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpParams>any())).thenAnswer(new Answer<Socket>() {
+
+                    public Socket answer(final InvocationOnMock invocation) throws Throwable {
+                        Thread.sleep(5000);
+                        throw new ConnectTimeoutException();
+                    }
+
+                });
+
+        Thread t = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(300);
+                    realConn.shutdown();
+                } catch (Exception ignore) {
+                }
+            }
+
+        };
+        t.start();
+        connectionOperator.setConnectAttemptDelay(100);
+        long start = System.currentTimeMillis();
+        try {
+            connectionOperator.connect(realConn, host, null, context, params);
+            Assert.fail("InterruptedIOException should have been thrown");
+        } catch (InterruptedIOException expected) {
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+        Mockito.verify(socket1, Mockito.atLeastOnce()).close();
+        Mockito.verify(socket2, Mockito.atLeastOnce()).close();
+        t.join();
+    }
+
+    @Test
+    public void testInterleaveAddressFamilies() throws Exception {
+        InetAddress ip1 = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        InetAddress ip2 = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+        InetAddress ip3 = InetAddress.getByName("::1");
+        InetAddress ip4 = InetAddress.getByName("::2");
+
+        InetAddress[] result = HttpClientConnectionOperator.interleave(
+                new InetAddress[] { ip3, ip4, ip1, ip2 });
+        Assert.assertArrayEquals(new InetAddress[] { ip3, ip1, ip4, ip2 }, result);
+        result = HttpClientConnectionOperator.interleave(
+                new InetAddress[] { ip1, ip2, ip3 });
+        Assert.assertArrayEquals(new InetAddress[] { ip1, ip3, ip2 }, result);
+    }
+
     @Test
     public void testUpgrade() throws Exception {
         HttpContext context = new BasicHttpContext();
@@ -0,0 +1,127 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.conn;
+
+import java.io.ByteArrayInputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.http.HttpHost;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestWire {
+
+    private Log log;
+    private Wire wire;
+
+    @Before
+    public void setup() {
+        this.log = Mockito.mock(Log.class);
+        Mockito.when(this.log.isDebugEnabled()).thenReturn(Boolean.TRUE);
+        this.wire = new Wire(this.log);
+    }
+
+    @Test
+    public void testInputLines() throws Exception {
+        byte[] b = "xxHTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\nxx".getBytes("US-ASCII");
+        this.wire.input(b, 2, b.length - 4);
+        Mockito.verify(this.log).debug("<< \"HTTP/1.1 200 OK[\\r][\\n]\"");
+        Mockito.verify(this.log).debug("<< \"Content-Length: 0[\\r][\\n]\"");
+        Mockito.verify(this.log).debug("<< \"[\\r][\\n]\"");
+        Mockito.verify(this.log, Mockito.times(3)).debug(Mockito.anyObject());
+    }
+
+    @Test
+    public void testOutputPartialLine() throws Exception {
+        this.wire.output(new byte[] { 'a', 9, (byte) 0xe9, 127 });
+        Mockito.verify(this.log).debug(">> \"a[0x9][0xe9]\u007f\"");
+    }
+
+    @Test
+    public void testSingleByte() throws Exception {
+        this.wire.input(10);
+        this.wire.output('z');
+        Mockito.verify(this.log).debug("<< \"[\\n]\"");
+        Mockito.verify(this.log).debug(">> \"z\"");
+    }
+
+    @Test
+    public void testInputStream() throws Exception {
+        this.wire.input(new ByteArrayInputStream("a\nb".getBytes("US-ASCII")));
+        Mockito.verify(this.log).debug("<< \"a[\\n]\"");
+        Mockito.verify(this.log).debug("<< \"b\"");
+    }
+
+    @Test
+    public void testLines() throws Exception {
+        this.wire.outputLine("GET / HTTP/1.1");
+        char[] line = "xHost: localhost".toCharArray();
+        this.wire.inputLine(line, 1, line.length - 1);
+        Mockito.verify(this.log).debug(">> \"GET / HTTP/1.1[\\r][\\n]\"");
+        Mockito.verify(this.log).debug("<< \"Host: localhost[\\r][\\n]\"");
+        Assert.assertTrue(Wire.isAscii(line, 0, line.length));
+        Assert.assertFalse(Wire.isAscii("caf\u00e9"));
+    }
+
+    @Test
+    public void testMuted() throws Exception {
+        Assert.assertTrue(this.wire.enabled());
+        this.wire.setMuted(true);
+        Assert.assertFalse(this.wire.enabled());
+        this.wire.setMuted(false);
+        Assert.assertTrue(this.wire.enabled());
+    }
+
+    @Test
+    public void testSamplerRate() throws Exception {
+        WireLogSampler sampler = new WireLogSampler(3);
+        HttpHost host = new HttpHost("somehost");
+        Assert.assertTrue(sampler.isSampled(host));
+        Assert.assertFalse(sampler.isSampled(host));
+        Assert.assertFalse(sampler.isSampled(host));
+        Assert.assertTrue(sampler.isSampled(host));
+    }
+
+    @Test
+    public void testSamplerHosts() throws Exception {
+        WireLogSampler sampler = new WireLogSampler(1,
+                new HttpHost("somehost"), new HttpHost("otherhost", 8080));
+        Assert.assertTrue(sampler.isSampled(new HttpHost("SomeHost", 443)));
+        Assert.assertTrue(sampler.isSampled(new HttpHost("otherhost", 8080)));
+        Assert.assertFalse(sampler.isSampled(new HttpHost("otherhost", 80)));
+        Assert.assertFalse(sampler.isSampled(new HttpHost("thirdhost")));
+        Assert.assertFalse(sampler.isSampled(null));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSamplerInvalidRate() throws Exception {
+        new WireLogSampler(0);
+    }
+
+}
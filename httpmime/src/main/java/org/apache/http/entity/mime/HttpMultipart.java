@@ -27,7 +27,6 @@
 
 package org.apache.http.entity.mime;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
@@ -36,6 +35,7 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.http.Consts;
 import org.apache.http.entity.mime.content.ContentBody;
 import org.apache.http.util.ByteArrayBuffer;
 
@@ -93,10 +93,29 @@ public class HttpMultipart {
     private static final ByteArrayBuffer CR_LF = encode(MIME.DEFAULT_CHARSET, "\r\n");
     private static final ByteArrayBuffer TWO_DASHES = encode(MIME.DEFAULT_CHARSET, "--");
 
+    /**
+     * Returns the number of bytes the string is encoded to by
+     * {@link #encode(Charset, String)}. Charsets encoding every character
+     * to a single byte, unmappable ones included, are counted without
+     * encoding the string.
+     */
+    private static int encodedLength(final Charset charset, final String string) {
+        if (charset.equals(Consts.ASCII) || charset.equals(Consts.ISO_8859_1)) {
+            return string.codePointCount(0, string.length());
+        }
+        return charset.encode(CharBuffer.wrap(string)).remaining();
+    }
+
+    private static int fieldLength(final MinimalField field, final Charset charset) {
+        return encodedLength(charset, field.getName()) + FIELD_SEP.length()
+            + encodedLength(charset, field.getBody()) + CR_LF.length();
+    }
+
 
     private final String subType;
     private final Charset charset;
     private final String boundary;
+    private final ByteArrayBuffer encodedBoundary;
     private final List<FormBodyPart> parts;
 
     private final HttpMultipartMode mode;
@@ -121,6 +140,7 @@ public class HttpMultipart {
         this.subType = subType;
         this.charset = charset != null ? charset : MIME.DEFAULT_CHARSET;
         this.boundary = boundary;
+        this.encodedBoundary = encode(this.charset, boundary);
         this.parts = new ArrayList<FormBodyPart>();
         this.mode = mode;
     }
@@ -174,7 +194,7 @@ public class HttpMultipart {
         final OutputStream out,
         boolean writeContent) throws IOException {
 
-        ByteArrayBuffer boundary = encode(this.charset, getBoundary());
+        ByteArrayBuffer boundary = this.encodedBoundary;
         for (FormBodyPart part: this.parts) {
             writeBytes(TWO_DASHES, out);
             writeBytes(boundary, out);
@@ -230,33 +250,48 @@ public class HttpMultipart {
      * from one another). If any of the @{link BodyPart}s contained in this object
      * is of a streaming entity of unknown length the total length is also unknown.
      * <p/>
-     * This method buffers only a small amount of data in order to determine the
-     * total length of the entire entity. The content of individual parts is not
-     * buffered.
+     * The length is computed from the encoded size of the delimiters and part
+     * headers without writing out any content.
      *
      * @return total length of the multipart entity if known, <code>-1</code>
      *   otherwise.
      */
     public long getTotalLength() {
-        long contentLen = 0;
+        int delimiterLen = TWO_DASHES.length() + this.encodedBoundary.length() + CR_LF.length();
+        long totalLen = 0;
         for (FormBodyPart part: this.parts) {
             ContentBody body = part.getBody();
             long len = body.getContentLength();
-            if (len >= 0) {
-                contentLen += len;
-            } else {
+            if (len < 0) {
                 return -1;
             }
+            totalLen += delimiterLen + getHeaderLength(this.mode, part) + CR_LF.length()
+                + len + CR_LF.length();
         }
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        try {
-            doWriteTo(this.mode, out, false);
-            byte[] extra = out.toByteArray();
-            return contentLen + extra.length;
-        } catch (IOException ex) {
-            // Should never happen
-            return -1;
+        totalLen += delimiterLen + TWO_DASHES.length();
+        return totalLen;
+    }
+
+    /**
+     * Returns the number of bytes of the part header as written by
+     * {@link #doWriteTo(HttpMultipartMode, OutputStream, boolean)}.
+     */
+    private long getHeaderLength(final HttpMultipartMode mode, final FormBodyPart part) {
+        long len = 0;
+        switch (mode) {
+        case STRICT:
+            for (MinimalField field: part.getHeader()) {
+                len += fieldLength(field, MIME.DEFAULT_CHARSET);
+            }
+            break;
+        case BROWSER_COMPATIBLE:
+            len += fieldLength(part.getHeader().getField(MIME.CONTENT_DISPOSITION), this.charset);
+            if (part.getBody().getFilename() != null) {
+                len += fieldLength(part.getHeader().getField(MIME.CONTENT_TYPE), this.charset);
+            }
+            break;
         }
+        return len;
     }
 
 }
@@ -29,9 +29,13 @@ package org.apache.http.entity.mime.content;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.mime.MIME;
@@ -39,6 +43,14 @@ import org.apache.http.entity.mime.MultipartEntityBuilder;
 
 /**
  * Binary body part backed by a file.
+ * <p/>
+ * If the output stream is a {@link FileOutputStream} or implements
+ * {@link WritableByteChannel} the file content is transferred with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, which lets
+ * the operating system copy the data without passing it through the JVM.
+ * Otherwise the content is copied through a 64 KB buffer. Note that request
+ * entities are written to the content output streams of the HTTP connection,
+ * which expose no channel, so uploads only benefit from the larger buffer.
  *
  * @see MultipartEntityBuilder
  *
@@ -46,6 +58,8 @@ import org.apache.http.entity.mime.MultipartEntityBuilder;
  */
 public class FileBody extends AbstractContentBody {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private final File file;
     private final String filename;
 
@@ -116,12 +130,31 @@ public class FileBody extends AbstractContentBody {
         if (out == null) {
             throw new IllegalArgumentException("Output stream may not be null");
         }
-        InputStream in = new FileInputStream(this.file);
+        FileInputStream in = new FileInputStream(this.file);
         try {
-            byte[] tmp = new byte[4096];
-            int l;
-            while ((l = in.read(tmp)) != -1) {
-                out.write(tmp, 0, l);
+            FileChannel channel = in.getChannel();
+            WritableByteChannel target = getChannel(out);
+            if (target != null) {
+                // Data written to the stream so far must precede the file content
+                out.flush();
+                long size = channel.size();
+                long pos = 0;
+                while (pos < size) {
+                    long n = channel.transferTo(pos, size - pos, target);
+                    if (n <= 0) {
+                        // The file has been truncated
+                        break;
+                    }
+                    pos += n;
+                }
+            } else {
+                byte[] tmp = new byte[BUFFER_SIZE];
+                ByteBuffer buffer = ByteBuffer.wrap(tmp);
+                int l;
+                while ((l = channel.read(buffer)) != -1) {
+                    out.write(tmp, 0, l);
+                    buffer.clear();
+                }
             }
             out.flush();
         } finally {
@@ -129,6 +162,20 @@ public class FileBody extends AbstractContentBody {
         }
     }
 
+    /**
+     * Returns the channel the given stream writes to if the file content can
+     * be transferred to it directly, <code>null</code> otherwise.
+     */
+    private static WritableByteChannel getChannel(final OutputStream out) {
+        if (out instanceof WritableByteChannel) {
+            return (WritableByteChannel) out;
+        }
+        if (out instanceof FileOutputStream) {
+            return ((FileOutputStream) out).getChannel();
+        }
+        return null;
+    }
+
     public String getTransferEncoding() {
         return MIME.ENC_BINARY;
     }
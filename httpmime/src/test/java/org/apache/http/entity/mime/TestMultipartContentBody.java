@@ -28,8 +28,15 @@
 package org.apache.http.entity.mime;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
 
 import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.content.FileBody;
 import org.apache.http.entity.mime.content.InputStreamBody;
 import org.apache.http.entity.mime.content.StringBody;
 import org.junit.Assert;
@@ -90,4 +97,61 @@ public class TestMultipartContentBody {
         Assert.assertEquals(MIME.ENC_BINARY, b2.getTransferEncoding());
     }
 
+    private static byte[] readAll(final File file) throws Exception {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] tmp = new byte[4096];
+            int l;
+            while ((l = in.read(tmp)) != -1) {
+                out.write(tmp, 0, l);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testFileBodyWriteTo() throws Exception {
+        byte[] content = new byte[200 * 1024 + 17];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        File src = File.createTempFile("src", ".bin");
+        File dst = File.createTempFile("dst", ".bin");
+        try {
+            FileOutputStream out = new FileOutputStream(src);
+            try {
+                out.write(content);
+            } finally {
+                out.close();
+            }
+            FileBody body = new FileBody(src);
+
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            body.writeTo(buf);
+            Assert.assertTrue(Arrays.equals(content, buf.toByteArray()));
+
+            out = new FileOutputStream(dst);
+            try {
+                out.write('x');
+                body.writeTo(out);
+                out.write('y');
+            } finally {
+                out.close();
+            }
+            byte[] written = readAll(dst);
+            Assert.assertEquals(content.length + 2, written.length);
+            Assert.assertEquals('x', written[0]);
+            Assert.assertEquals('y', written[written.length - 1]);
+            for (int i = 0; i < content.length; i++) {
+                Assert.assertEquals(content[i], written[i + 1]);
+            }
+        } finally {
+            src.delete();
+            dst.delete();
+        }
+    }
+
 }
@@ -39,6 +39,7 @@ import org.apache.http.entity.ContentType;
 import org.apache.http.entity.mime.FormBodyPart;
 import org.apache.http.entity.mime.HttpMultipart;
 import org.apache.http.entity.mime.HttpMultipartMode;
+import org.apache.http.entity.mime.content.ByteArrayBody;
 import org.apache.http.entity.mime.content.FileBody;
 import org.apache.http.entity.mime.content.InputStreamBody;
 import org.apache.http.entity.mime.content.StringBody;
@@ -322,4 +323,30 @@ public class TestMultipartForm {
         Assert.assertEquals(expected.length, multipart.getTotalLength());
     }
 
+    @Test
+    public void testMultipartFormTotalLength() throws Exception {
+        String s = "caf\u00e9 \u0416\u0416 \ud83d\ude00";
+        HttpMultipartMode[] modes = new HttpMultipartMode[] {
+                HttpMultipartMode.STRICT, HttpMultipartMode.BROWSER_COMPATIBLE };
+        Charset[] charsets = new Charset[] {
+                null, Consts.ASCII, Consts.ISO_8859_1, Consts.UTF_8 };
+        for (HttpMultipartMode mode: modes) {
+            for (Charset charset: charsets) {
+                HttpMultipart multipart = new HttpMultipart("form-data", charset, "foo-" + s, mode);
+                multipart.addBodyPart(new FormBodyPart(
+                        "field-" + s,
+                        new StringBody(s, ContentType.create("text/plain", Consts.UTF_8))));
+                multipart.addBodyPart(new FormBodyPart(
+                        "file-" + s,
+                        new ByteArrayBody(new byte[] { 1, 2, 3 }, ContentType.DEFAULT_BINARY, "name-" + s)));
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                multipart.writeTo(out);
+                out.close();
+                Assert.assertEquals(mode + " " + charset,
+                        out.toByteArray().length, multipart.getTotalLength());
+            }
+        }
+    }
+
 }